@@ -0,0 +1,51 @@
+/*
+ * BenchmarkRunner.java
+ *
+ * This file is part of CajuScript.
+ *
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option)
+ * any later version.
+ *
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cajuscript.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks always with the GC profiler, then the allocation rate
+ * is reported with the throughput.
+ * <p>Accepts the same arguments of the JMH, like the regular expression of
+ * the benchmarks to run:</p>
+ * <p><blockquote><pre>
+ * java -jar dist/benchmarks.jar InterpreterBenchmark -p name=recursion
+ * </pre></blockquote></p>
+ *
+ * @author eduveks
+ */
+public class BenchmarkRunner {
+    /**
+     * Entry point to running.
+     * @param args Arguments of the JMH.
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * CompileBenchmark.java
+ *
+ * This file is part of CajuScript.
+ *
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option)
+ * any later version.
+ *
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cajuscript.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.cajuscript.CajuScript;
+import org.cajuscript.CajuScriptException;
+import org.cajuscript.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of "caju.compile", each operation evaluates the script in a
+ * new CajuScript, executing the class compiled by the first evaluation.
+ *
+ * @author eduveks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CompileBenchmark {
+    @Param({"arithmetic", "concat", "interop", "functions", "recursion", "arrays", "each"})
+    private String name;
+    private String script;
+    private String baseDirectory;
+
+    @Setup
+    public void setup() throws Exception {
+        File dir = File.createTempFile("cajuscript", "benchmark");
+        dir.delete();
+        dir.mkdirs();
+        baseDirectory = dir.getAbsolutePath();
+        script = "caju.compile: Benchmark" + Character.toUpperCase(name.charAt(0)) + name.substring(1) + ";" + Scripts.get(name);
+        create().eval(script);
+    }
+
+    private CajuScript create() throws CajuScriptException {
+        CajuScript caju = new CajuScript();
+        caju.setCompileBaseDirectory(baseDirectory);
+        return caju;
+    }
+
+    @Benchmark
+    public Object eval() throws CajuScriptException {
+        Value value = create().eval(script);
+        return value == null ? null : value.getValue();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Scripts.java
+ *
+ * This file is part of CajuScript.
+ *
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option)
+ * any later version.
+ *
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cajuscript.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Scripts used by the benchmarks, by name.
+ *
+ * @author eduveks
+ */
+public final class Scripts {
+    private static final Map<String, String> scripts = new LinkedHashMap<String, String>();
+
+    static {
+        scripts.put("arithmetic", "x = 0; i = 0; i < 10000 @ x = x + i * 2 - i / 3; i += 1; @; ~ x;");
+        scripts.put("concat", "s = ''; i = 0; i < 1000 @ s += 'a' + i; i += 1; @; ~ s;");
+        scripts.put("interop", "l = java.util.ArrayList(); i = 0; i < 1000 @ l.add(i); x = l.size(); i += 1; @; ~ x;");
+        scripts.put("functions", "add(a, b) # ~ a + b; #; x = 0; i = 0; i < 1000 @ x = add(x, i); i += 1; @; ~ x;");
+        scripts.put("recursion", "fib(n) # n < 2 ? ~ n; ? ~ fib(n - 1) + fib(n - 2); #; ~ fib(15);");
+        scripts.put("arrays", "a = array.create('i', 1000); i = 0; i < 1000 @ array.set(a, i, i); i += 1; @;"
+                + " s = 0; i = 0; i < 1000 @ s += array.get(a, i); i += 1; @; ~ s;");
+        scripts.put("each", "l = java.util.ArrayList(); i = 0; i < 1000 @ l.add(i); i += 1; @;"
+                + " s = 0; caju.each('v', l) @ s += v; @; ~ s;");
+    }
+
+    private Scripts() {
+
+    }
+
+    /**
+     * Get a script.
+     *
+     * @param name
+     *            Name of the script.
+     * @return Script.
+     */
+    public static String get(String name) {
+        String script = scripts.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("Script \"" + name + "\" not found.");
+        }
+        return script;
+    }
+}
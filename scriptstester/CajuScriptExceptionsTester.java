@@ -0,0 +1,39 @@
+public class CajuScriptExceptionsTester {
+    public static void main(String[] args) {
+        try {
+            System.out.println("=============================");
+            System.out.println("CajuScript Exceptions Tester");
+            System.out.println("=============================");
+            runTester(100000, 500);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+    public static void runTester(long times, int vars) throws Exception {
+        long time = 0;
+        // Large context, with many hidden variables of static strings
+        String script = "";
+        for (int i = 0; i < vars; i++) {
+            script += "v"+ i +" = 'value "+ i +"';";
+        }
+        script += "x = 0; errors = 0; x < "+ times +" @ e ^ x += 1; caju.error(); ^^ errors += 1; ^~^ ^; @";
+        // Load classes
+        org.cajuscript.CajuScript caju = new org.cajuscript.CajuScript();
+        caju.eval(script);
+        // Caju
+        time = System.currentTimeMillis();
+        caju = new org.cajuscript.CajuScript();
+        caju.eval(script);
+        System.out.println("Caju: "+ (System.currentTimeMillis() - time) + "ms - "+ caju.get("errors"));
+        // Caju - Compile 1
+        time = System.currentTimeMillis();
+        caju = new org.cajuscript.CajuScript();
+        caju.eval("caju.compile: TestExceptions;"+ script);
+        System.out.println("Caju - Compile First: "+ (System.currentTimeMillis() - time) + "ms - "+ caju.get("errors"));
+        // Caju - Compile 2
+        time = System.currentTimeMillis();
+        caju = new org.cajuscript.CajuScript();
+        caju.eval("caju.compile: TestExceptions;"+ script);
+        System.out.println("Caju - Compile Next: "+ (System.currentTimeMillis() - time) + "ms - "+ caju.get("errors"));
+    }
+}
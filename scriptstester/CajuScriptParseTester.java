@@ -0,0 +1,39 @@
+public class CajuScriptParseTester {
+    public static void main(String[] args) {
+        try {
+            System.out.println("=========================");
+            System.out.println("CajuScript Parse Tester");
+            System.out.println("=========================");
+            runTester(100, 1000, 10);
+            runTester(100, 10000, 100);
+            runTester(10, 100000, 1000);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+    public static void runTester(int times, int stringLength, int lines) throws Exception {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < stringLength; i++) {
+            value.append((char) ('a' + (i % 26)));
+            if (i % 64 == 63) {
+                value.append("\\n");
+            }
+        }
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            script.append("x").append(i).append(" = \"").append(value).append("\"; ");
+            script.append("y").append(i).append(" = 'x").append(i).append("' + x").append(i).append(";\r\n");
+        }
+        String source = script.toString();
+        // Load classes
+        org.cajuscript.CajuScript caju = new org.cajuscript.CajuScript();
+        caju.eval(source, caju.getSyntax(), false);
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < times; i++) {
+            caju = new org.cajuscript.CajuScript();
+            caju.eval(source, caju.getSyntax(), false);
+        }
+        System.out.println("Parse "+ lines +" lines with strings of "+ stringLength +" chars: "
+                + ((System.currentTimeMillis() - time) / (double) times) + "ms");
+    }
+}
@@ -0,0 +1,34 @@
+public class CajuScriptRecursionTester {
+    public static void main(String[] args) {
+        try {
+            System.out.println("============================");
+            System.out.println("CajuScript Recursion Tester");
+            System.out.println("============================");
+            runTester(30);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+    public static void runTester(int n) throws Exception {
+        long time = 0;
+        String script = "fib(n) # n < 2 ? ~ n; ? ~ fib(n - 1) + fib(n - 2); #; x = fib("+ n +");";
+        // Load classes
+        org.cajuscript.CajuScript caju = new org.cajuscript.CajuScript();
+        caju.eval("fib(n) # n < 2 ? ~ n; ? ~ fib(n - 1) + fib(n - 2); #; x = fib(20);");
+        // Caju
+        time = System.currentTimeMillis();
+        caju = new org.cajuscript.CajuScript();
+        caju.eval(script);
+        System.out.println("Caju: "+ (System.currentTimeMillis() - time) + "ms - "+ caju.get("x"));
+        // Caju - Compile 1
+        time = System.currentTimeMillis();
+        caju = new org.cajuscript.CajuScript();
+        caju.eval("caju.compile: TestRecursion;"+ script);
+        System.out.println("Caju - Compile First: "+ (System.currentTimeMillis() - time) + "ms - "+ caju.get("x"));
+        // Caju - Compile 2
+        time = System.currentTimeMillis();
+        caju = new org.cajuscript.CajuScript();
+        caju.eval("caju.compile: TestRecursion;"+ script);
+        System.out.println("Caju - Compile Next: "+ (System.currentTimeMillis() - time) + "ms - "+ caju.get("x"));
+    }
+}
@@ -19,7 +19,7 @@
 
 package org.cajuscript;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -69,54 +69,222 @@ import org.cajuscript.cmd.ScriptCommand;
  * @author eduveks
  */
 public class Array {
-    private ArrayList arrayList = new ArrayList();
-    private HashMap mapRelation = new HashMap();
-    private HashMap map = new HashMap();
+    private static enum Storage {
+        NONE, INT, LONG, DOUBLE, OBJECT
+    }
+    private Storage storage = Storage.NONE;
+    private int[] ints = null;
+    private long[] longs = null;
+    private double[] doubles = null;
+    private Object[] objects = null;
+    private int size = 0;
+    private int length = 0;
+    private Map<Object, Object> hash = null;
 
     public Array() {
         
     }
 
+    /**
+     * Get the value of an index.
+     * @param i Index.
+     * @return Value, or null if the index is lower than the last index set
+     * and was not set.
+     * @throws IndexOutOfBoundsException If the index is negative or greater
+     * than the last index set.
+     */
     public Object get(int i) {
-        return arrayList.get((Integer)i);
+        if (i < 0 || i >= length) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + length);
+        }
+        if (i < size) {
+            return element(i);
+        }
+        return hash == null ? null : hash.get(Integer.valueOf(i));
     }
 
+    /**
+     * Get the value of a key.
+     * @param i Key.
+     * @return Value, or null if the key was not set.
+     */
     public Object get(Object i) {
-        return map.get(i);
+        if (i instanceof Integer) {
+            int index = ((Integer)i).intValue();
+            if (index >= 0 && index < size) {
+                return element(index);
+            }
+        }
+        return hash == null ? null : hash.get(i);
     }
 
+    /**
+     * Set the value of an index. Indexes in sequence are kept in the dense
+     * part, typed by the values, the others in the hash part.
+     * @param i Index.
+     * @param o Value.
+     * @throws IndexOutOfBoundsException If the index is negative.
+     */
     public void set(int i, Object o) {
-        if (i >= arrayList.size()) {
-            for (int j = arrayList.size() - 1; j < i; j++) {
-                arrayList.add(null);
-            }
-            arrayList.add(o);
-            mapRelation.put(i, null);
-            map.put(i, o);
+        if (i < 0) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + length);
+        }
+        if (i < size) {
+            store(i, o);
+        } else if (i == size) {
+            add(o);
         } else {
-            arrayList.set(i, o);
-            mapRelation.put(i, null);
-            map.put(i, o);
+            hash().put(Integer.valueOf(i), o);
+            length = Math.max(length, i + 1);
         }
     }
 
+    /**
+     * Set the value of a key.
+     * @param i Key.
+     * @param o Value.
+     */
     public void set(Object i, Object o) {
         if (i instanceof Integer) {
-            int index = ((Integer)i).intValue();
-            if (index >= arrayList.size()) {
-                for (int j = arrayList.size() - 1; j < index; j++) {
-                    arrayList.add(null);
-                }
-                arrayList.add(o);
+            set(((Integer)i).intValue(), o);
+        } else {
+            hash().put(i, o);
+        }
+    }
+
+    /**
+     * Add a value after the last index in sequence.
+     * @param o Value.
+     */
+    public void add(Object o) {
+        if (storage == Storage.NONE) {
+            if (o instanceof Integer) {
+                storage = Storage.INT;
+                ints = new int[8];
+            } else if (o instanceof Long) {
+                storage = Storage.LONG;
+                longs = new long[8];
+            } else if (o instanceof Double) {
+                storage = Storage.DOUBLE;
+                doubles = new double[8];
             } else {
-                arrayList.set(index, o);
+                storage = Storage.OBJECT;
+                objects = new Object[8];
             }
         }
-        map.put(i, o);
+        grow(size + 1);
+        size++;
+        store(size - 1, o);
+        if (hash != null && !hash.isEmpty()) {
+            Integer next = Integer.valueOf(size);
+            while (hash.containsKey(next)) {
+                Object v = hash.remove(next);
+                grow(size + 1);
+                size++;
+                store(size - 1, v);
+                next = Integer.valueOf(size);
+            }
+        }
+        length = Math.max(length, size);
     }
 
-    public void add(Object o) {
-        arrayList.add(o);
+    /**
+     * Get the count of indexes in sequence, starting by 0.
+     * @return Size.
+     */
+    public int size() {
+        return size;
+    }
+
+    private Object element(int i) {
+        switch (storage) {
+            case INT:
+                return Integer.valueOf(ints[i]);
+            case LONG:
+                return Long.valueOf(longs[i]);
+            case DOUBLE:
+                return Double.valueOf(doubles[i]);
+            default:
+                return objects[i];
+        }
+    }
+
+    private void store(int i, Object o) {
+        switch (storage) {
+            case INT:
+                if (o instanceof Integer) {
+                    ints[i] = ((Integer)o).intValue();
+                    return;
+                }
+                break;
+            case LONG:
+                if (o instanceof Long) {
+                    longs[i] = ((Long)o).longValue();
+                    return;
+                }
+                break;
+            case DOUBLE:
+                if (o instanceof Double) {
+                    doubles[i] = ((Double)o).doubleValue();
+                    return;
+                }
+                break;
+            default:
+                objects[i] = o;
+                return;
+        }
+        Object[] _objects = new Object[capacity()];
+        for (int j = 0; j < size; j++) {
+            _objects[j] = element(j);
+        }
+        ints = null;
+        longs = null;
+        doubles = null;
+        objects = _objects;
+        storage = Storage.OBJECT;
+        objects[i] = o;
+    }
+
+    private int capacity() {
+        switch (storage) {
+            case INT:
+                return ints.length;
+            case LONG:
+                return longs.length;
+            case DOUBLE:
+                return doubles.length;
+            default:
+                return objects.length;
+        }
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = capacity();
+        if (minCapacity <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity * 2, minCapacity);
+        switch (storage) {
+            case INT:
+                ints = Arrays.copyOf(ints, newCapacity);
+                break;
+            case LONG:
+                longs = Arrays.copyOf(longs, newCapacity);
+                break;
+            case DOUBLE:
+                doubles = Arrays.copyOf(doubles, newCapacity);
+                break;
+            default:
+                objects = Arrays.copyOf(objects, newCapacity);
+                break;
+        }
+    }
+
+    private Map<Object, Object> hash() {
+        if (hash == null) {
+            hash = new HashMap<Object, Object>();
+        }
+        return hash;
     }
 
 	/**
@@ -169,6 +337,184 @@ public class Array {
 		return java.lang.reflect.Array.newInstance(Object.class, size);
 	}
 
+	/**
+	 * Access to the positions of an array, specialized by the component type.
+	 * Chosen once with {@link #access(Object)} and used for all positions of
+	 * arrays of the same type, values of another wrapper type are set by
+	 * reflection so widening conversions are kept.
+	 */
+	public static enum Access {
+		OBJECT {
+			public Object get(Object array, int i) {
+				return ((Object[])array)[i];
+			}
+			public void set(Object array, int i, Object v) {
+				((Object[])array)[i] = v;
+			}
+			public void fill(Object array, int from, int to, Object v) {
+				Arrays.fill((Object[])array, from, to, v);
+			}
+		},
+		BYTE {
+			public Object get(Object array, int i) {
+				return Byte.valueOf(((byte[])array)[i]);
+			}
+			public void set(Object array, int i, Object v) {
+				if (v instanceof Byte) {
+					((byte[])array)[i] = ((Byte)v).byteValue();
+				} else {
+					super.set(array, i, v);
+				}
+			}
+			public void fill(Object array, int from, int to, Object v) {
+				if (v instanceof Byte) {
+					Arrays.fill((byte[])array, from, to, ((Byte)v).byteValue());
+				} else {
+					super.fill(array, from, to, v);
+				}
+			}
+		},
+		INT {
+			public Object get(Object array, int i) {
+				return Integer.valueOf(((int[])array)[i]);
+			}
+			public void set(Object array, int i, Object v) {
+				if (v instanceof Integer) {
+					((int[])array)[i] = ((Integer)v).intValue();
+				} else {
+					super.set(array, i, v);
+				}
+			}
+			public void fill(Object array, int from, int to, Object v) {
+				if (v instanceof Integer) {
+					Arrays.fill((int[])array, from, to, ((Integer)v).intValue());
+				} else {
+					super.fill(array, from, to, v);
+				}
+			}
+		},
+		CHAR {
+			public Object get(Object array, int i) {
+				return Character.valueOf(((char[])array)[i]);
+			}
+			public void set(Object array, int i, Object v) {
+				if (v instanceof Character) {
+					((char[])array)[i] = ((Character)v).charValue();
+				} else {
+					super.set(array, i, v);
+				}
+			}
+			public void fill(Object array, int from, int to, Object v) {
+				if (v instanceof Character) {
+					Arrays.fill((char[])array, from, to, ((Character)v).charValue());
+				} else {
+					super.fill(array, from, to, v);
+				}
+			}
+		},
+		DOUBLE {
+			public Object get(Object array, int i) {
+				return Double.valueOf(((double[])array)[i]);
+			}
+			public void set(Object array, int i, Object v) {
+				if (v instanceof Double) {
+					((double[])array)[i] = ((Double)v).doubleValue();
+				} else {
+					super.set(array, i, v);
+				}
+			}
+			public void fill(Object array, int from, int to, Object v) {
+				if (v instanceof Double) {
+					Arrays.fill((double[])array, from, to, ((Double)v).doubleValue());
+				} else {
+					super.fill(array, from, to, v);
+				}
+			}
+		},
+		LONG {
+			public Object get(Object array, int i) {
+				return Long.valueOf(((long[])array)[i]);
+			}
+			public void set(Object array, int i, Object v) {
+				if (v instanceof Long) {
+					((long[])array)[i] = ((Long)v).longValue();
+				} else {
+					super.set(array, i, v);
+				}
+			}
+			public void fill(Object array, int from, int to, Object v) {
+				if (v instanceof Long) {
+					Arrays.fill((long[])array, from, to, ((Long)v).longValue());
+				} else {
+					super.fill(array, from, to, v);
+				}
+			}
+		},
+		REFLECTION;
+
+		/**
+		 * Get the value in determined position.
+		 * @param array The array.
+		 * @param i The position on the array.
+		 * @return Object of this position.
+		 */
+		public Object get(Object array, int i) {
+			return java.lang.reflect.Array.get(array, i);
+		}
+
+		/**
+		 * Defining the value in specific position.
+		 * @param array The array for be affected.
+		 * @param i The position on the array for be affected.
+		 * @param v The new object for the specific position.
+		 */
+		public void set(Object array, int i, Object v) {
+			java.lang.reflect.Array.set(array, i, v);
+		}
+
+		/**
+		 * Defining the value in a range of positions.
+		 * @param array The array for be affected.
+		 * @param from First position, inclusive.
+		 * @param to Last position, exclusive.
+		 * @param v The new object for the positions.
+		 */
+		public void fill(Object array, int from, int to, Object v) {
+			for (int i = from; i < to; i++) {
+				java.lang.reflect.Array.set(array, i, v);
+			}
+		}
+	}
+
+	/**
+	 * Get the access specialized for the type of the array.
+	 * 
+	 * @param array
+	 *            The array.
+	 * @return Access to the positions of arrays of this type.
+	 */
+	public static Access access(Object array) {
+		if (array instanceof Object[]) {
+			return Access.OBJECT;
+		}
+		if (array instanceof byte[]) {
+			return Access.BYTE;
+		}
+		if (array instanceof int[]) {
+			return Access.INT;
+		}
+		if (array instanceof char[]) {
+			return Access.CHAR;
+		}
+		if (array instanceof double[]) {
+			return Access.DOUBLE;
+		}
+		if (array instanceof long[]) {
+			return Access.LONG;
+		}
+		return Access.REFLECTION;
+	}
+
 	/**
 	 * Get the size of array.
 	 * 
@@ -181,7 +527,8 @@ public class Array {
 	}
 
 	/**
-	 * Get the value in determined position.
+	 * Get the value in determined position. To access many positions use
+	 * {@link #access(Object)} once.
 	 * 
 	 * @param array
 	 *            The array.
@@ -190,11 +537,12 @@ public class Array {
 	 * @return Object of this position.
 	 */
 	public static Object get(Object array, int i) {
-		return java.lang.reflect.Array.get(array, i);
+		return access(array).get(array, i);
 	}
 
 	/**
-	 * Defining the value in specific position.
+	 * Defining the value in specific position. To access many positions use
+	 * {@link #access(Object)} once.
 	 * 
 	 * @param array
 	 *            The array for be affected.
@@ -204,6 +552,69 @@ public class Array {
 	 *            The new object for the specific position.
 	 */
 	public static void set(Object array, int i, Object v) {
-		java.lang.reflect.Array.set(array, i, v);
+		access(array).set(array, i, v);
+	}
+
+	/**
+	 * Defining the value in all positions.
+	 * 
+	 * @param array
+	 *            The array for be affected.
+	 * @param v
+	 *            The new object for all positions.
+	 */
+	public static void fill(Object array, Object v) {
+		fill(array, 0, size(array), v);
+	}
+
+	/**
+	 * Defining the value in a range of positions.
+	 * 
+	 * @param array
+	 *            The array for be affected.
+	 * @param from
+	 *            First position, inclusive.
+	 * @param to
+	 *            Last position, exclusive.
+	 * @param v
+	 *            The new object for the positions.
+	 */
+	public static void fill(Object array, int from, int to, Object v) {
+		access(array).fill(array, from, to, v);
+	}
+
+	/**
+	 * Copy positions from an array to another.
+	 * 
+	 * @param src
+	 *            The array source.
+	 * @param srcPos
+	 *            First position in the source.
+	 * @param dest
+	 *            The array destination.
+	 * @param destPos
+	 *            First position in the destination.
+	 * @param length
+	 *            Count of positions.
+	 */
+	public static void copy(Object src, int srcPos, Object dest, int destPos, int length) {
+		System.arraycopy(src, srcPos, dest, destPos, length);
+	}
+
+	/**
+	 * Newly array with a range of positions of the array.
+	 * 
+	 * @param array
+	 *            The array.
+	 * @param from
+	 *            First position, inclusive.
+	 * @param to
+	 *            Last position, exclusive.
+	 * @return Newly array of the same type.
+	 */
+	public static Object slice(Object array, int from, int to) {
+		Object slice = java.lang.reflect.Array.newInstance(array.getClass().getComponentType(), to - from);
+		System.arraycopy(array, from, slice, 0, to - from);
+		return slice;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,209 @@
+/*
+ * Budget.java
+ *
+ * This file is part of CajuScript.
+ *
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option)
+ * any later version.
+ *
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cajuscript;
+
+/**
+ * Limits of the execution of each evaluation, to stop scripts that never
+ * end, like loops always true.
+ * <p>The limits are of loop iterations, nodes executed, time and values
+ * created, and are checked when each loop iteration starts and when each
+ * function is called, interpreted or compiled:</p>
+ * <p><blockquote><pre>
+ * Budget budget = new Budget();
+ * budget.setMaxIterations(100000);
+ * budget.setMaxTime(500);
+ * caju.setBudget(budget);
+ * caju.eval(script);
+ * </pre></blockquote></p>
+ * <p>When a limit is exceeded a CajuScriptException is thrown, the counters
+ * are restarted in each evaluation.</p>
+ * @author eduveks
+ */
+public class Budget {
+    private long maxIterations = -1;
+    private long maxNodes = -1;
+    private long maxTime = -1;
+    private long maxValues = -1;
+    private long iterations = 0;
+    private long nodes = 0;
+    private long values = 0;
+    private long deadline = 0;
+    private int evals = 0;
+
+    /**
+     * Newly budget without limits.
+     */
+    public Budget() {
+
+    }
+
+    /**
+     * Get the max of loop iterations.
+     * @return Max of iterations, -1 is without limit.
+     */
+    public long getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Set the max of loop iterations.
+     * @param maxIterations Max of iterations, -1 is without limit.
+     */
+    public void setMaxIterations(long maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Get the max of nodes executed, counted by the elements of the loops
+     * and of the functions.
+     * @return Max of nodes, -1 is without limit.
+     */
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * Set the max of nodes executed, counted by the elements of the loops
+     * and of the functions.
+     * @param maxNodes Max of nodes, -1 is without limit.
+     */
+    public void setMaxNodes(long maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Get the max time of the evaluation.
+     * @return Max time in milliseconds, -1 is without limit.
+     */
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * Set the max time of the evaluation.
+     * @param maxTime Max time in milliseconds, -1 is without limit.
+     */
+    public void setMaxTime(long maxTime) {
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * Get the max of values created.
+     * @return Max of values, -1 is without limit.
+     */
+    public long getMaxValues() {
+        return maxValues;
+    }
+
+    /**
+     * Set the max of values created.
+     * @param maxValues Max of values, -1 is without limit.
+     */
+    public void setMaxValues(long maxValues) {
+        this.maxValues = maxValues;
+    }
+
+    /**
+     * Loop iterations of the current evaluation.
+     * @return Iterations.
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Nodes executed in the current evaluation.
+     * @return Nodes.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Values created in the current evaluation.
+     * @return Values.
+     */
+    public long getValues() {
+        return values;
+    }
+
+    void start() {
+        if (evals++ == 0) {
+            iterations = 0;
+            nodes = 0;
+            values = 0;
+            deadline = maxTime > -1 ? System.nanoTime() + maxTime * 1000000L : 0;
+        }
+    }
+
+    void end() {
+        evals--;
+    }
+
+    /**
+     * Count a value created.
+     */
+    public void value() {
+        values++;
+    }
+
+    /**
+     * Loop iteration started.
+     * @param caju CajuScript.
+     * @param context Context.
+     * @param nodes Nodes of the iteration.
+     * @throws CajuScriptException Limit exceeded.
+     */
+    public void iteration(CajuScript caju, Context context, int nodes) throws CajuScriptException {
+        iterations++;
+        if (maxIterations > -1 && iterations > maxIterations) {
+            throw exceeded(caju, context, "loop iterations", maxIterations);
+        }
+        check(caju, context, nodes);
+    }
+
+    /**
+     * Function called.
+     * @param caju CajuScript.
+     * @param context Context.
+     * @param nodes Nodes of the function.
+     * @throws CajuScriptException Limit exceeded.
+     */
+    public void call(CajuScript caju, Context context, int nodes) throws CajuScriptException {
+        check(caju, context, nodes);
+    }
+
+    private void check(CajuScript caju, Context context, int nodes) throws CajuScriptException {
+        this.nodes += nodes;
+        if (maxNodes > -1 && this.nodes > maxNodes) {
+            throw exceeded(caju, context, "nodes", maxNodes);
+        }
+        if (maxValues > -1 && values > maxValues) {
+            throw exceeded(caju, context, "values", maxValues);
+        }
+        if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            throw exceeded(caju, context, "milliseconds", maxTime);
+        }
+    }
+
+    private static CajuScriptException exceeded(CajuScript caju, Context context, String limit, long max) throws CajuScriptException {
+        return CajuScriptException.create(caju, context,
+                "Execution budget exceeded, limit of ".concat(Long.toString(max)).concat(" ").concat(limit));
+    }
+}
@@ -19,20 +19,19 @@
 package org.cajuscript;
 
 import java.io.Reader;
-import java.util.Collection;
-import java.util.Enumeration;
 import org.cajuscript.parser.LineDetail;
 
 import java.util.HashMap;
 import java.util.Set;
 import java.util.List;
 import java.util.Map;
-import java.util.Iterator;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
 import org.cajuscript.parser.Function;
 import org.cajuscript.parser.Base;
+import org.cajuscript.parser.Loop;
+import org.cajuscript.parser.Signal;
 import org.cajuscript.compiler.Compiler;
 
 /**
@@ -111,17 +110,25 @@ public class CajuScript {
      */
     public static final String CAJU_VARS_STATIC_STRING = CAJU_VARS.concat("_static_string_");
     /**
-     * Commands embraced by parenthesis are executed and the value is saved on
-     * variables with this name. All parenthesis are replaced by variables with
-     * the final value when the line is interpreted.
+     * Commands embraced by parenthesis are replaced by keys with this name
+     * when the line is parsed, each key refers to the element that gives the
+     * value of the group and never is saved as variable.
      */
     public static final String CAJU_VARS_GROUP = CAJU_VARS.concat("_group_");
     /**
-     * Commands embraced by parenthesis are executed and the value is saved on
-     * variables with this name. All parenthesis are replaced by variables with
-     * the final value when the line is interpreted.
+     * Mathematic operations already parsed were replaced by keys with this
+     * name when the line was parsed.
+     * @deprecated Mathematic operations are parsed directly to trees of
+     *             operations, by the precedence of the operators.
      */
+    @Deprecated
     public static final String CAJU_VARS_MATH = CAJU_VARS.concat("_math_");
+    /**
+     * Values of groups used by commands are given directly to the command,
+     * and inside of the command they are referenced by this name followed
+     * by the index of the argument.
+     */
+    public static final String CAJU_VARS_ARGUMENT = CAJU_VARS.concat("_arg_");
     /**
      * Variable name to configure the base directory to store classes compiled.
      */
@@ -138,8 +145,13 @@ public class CajuScript {
     public static final String LINE_DETAIL_START = "#caju_line$";
     public static final String LINE_DETAIL_END = ":";
     private static final Map<String, Syntax> globalSyntaxs = new HashMap<String, Syntax>();
+    private static final Metrics metrics = new Metrics();
     private Context context = new Context();
     private LineDetail runningLine = new LineDetail(0, "");
+    private Profiler profiler = null;
+    private Budget budget = null;
+    private boolean virtualMachine = false;
+    private Throwable located = null;
     private Syntax syntax = new Syntax();
     private org.cajuscript.parser.Base parserBase = null;
     private Map<String, Syntax> syntaxs = new HashMap<String, Syntax>();
@@ -196,6 +208,15 @@ public class CajuScript {
         return globalSyntaxs.get(name);
     }
 
+    /**
+     * Get the metrics of all instances.
+     *
+     * @return Metrics.
+     */
+    public static Metrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Get default syntax.
      *
@@ -308,6 +329,8 @@ public class CajuScript {
 
     /**
      * Get line detail in execution.
+     * <p>The elements and the compiled classes not define it on each line
+     * executed, is defined with the line of the last error thrown.</p>
      *
      * @return Line detail.
      */
@@ -323,6 +346,93 @@ public class CajuScript {
      */
     public void setRunningLine(LineDetail l) {
         runningLine = l;
+        if (profiler != null) {
+            profiler.line(l);
+        }
+    }
+
+    /**
+     * Locate the line where an error was thrown by the execution, is
+     * defined as the running line. Only the first line of each error is
+     * kept, the line of the deepest element.
+     *
+     * @param error
+     *            Error thrown.
+     * @param context
+     *            Context of the element that thrown the error.
+     * @param l
+     *            Line detail of the element that thrown the error.
+     * @return The same error.
+     */
+    public <T extends Throwable> T located(T error, Context context, LineDetail l) {
+        if (located != error) {
+            located = error;
+            runningLine = l;
+            if (error instanceof CajuScriptException) {
+                ((CajuScriptException) error).locate(l, context);
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Get the profiler of the execution.
+     *
+     * @return Profiler, or null if the execution is not profiled.
+     */
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Set the profiler of the execution, null to stop the profiling.
+     *
+     * @param profiler
+     *            Profiler.
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Get the limits of the execution.
+     *
+     * @return Budget, or null if the execution has no limits.
+     */
+    public Budget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Set the limits of the execution of each evaluation, null to remove
+     * the limits.
+     *
+     * @param budget
+     *            Budget.
+     */
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * If the scripts and functions parsed are executed by the virtual
+     * machine, over the elements lowered to programs.
+     *
+     * @return Is executed by the virtual machine.
+     */
+    public boolean isVirtualMachine() {
+        return virtualMachine;
+    }
+
+    /**
+     * Set if the scripts and functions parsed are executed by the virtual
+     * machine, or else by the elements. Compiled scripts are not changed.
+     *
+     * @param virtualMachine
+     *            Execute by the virtual machine.
+     */
+    public void setVirtualMachine(boolean virtualMachine) {
+        this.virtualMachine = virtualMachine;
     }
 
     /**
@@ -385,24 +495,24 @@ public class CajuScript {
     public Value eval(String script, Syntax syntax, boolean execute)
             throws CajuScriptException {
         Syntax syntaxBackup = getSyntax();
+        metrics.eval();
+        long time = System.nanoTime();
+        Budget evalBudget = budget;
+        if (evalBudget != null) {
+            evalBudget.start();
+        }
         try {
             String originalScript = script;
             if (script.length() == 0) {
                 return null;
             }
-            script = script.concat(LINE_LIMITER);
-            script = script.replace((CharSequence) "\r\n", LINE_LIMITER);
-            script = script.replace((CharSequence) "\n\r", LINE_LIMITER);
-            script = script.replace((CharSequence) "\n", LINE_LIMITER);
-            script = script.replace((CharSequence) "\r", LINE_LIMITER);
-            String[] lines = script.split(LINE_LIMITER);
-            script = "";
-            StringBuilder scriptFinal = new StringBuilder();
-            String staticStringKey = "";
-            String staticStringValue = "";
-            String previousLine = "";
-            boolean isString1 = false;
-            boolean isString2 = false;
+            char[] chars = script.toCharArray();
+            int length = chars.length;
+            StringBuilder scriptFinal = new StringBuilder(length + (length >> 2));
+            StringBuilder subline = new StringBuilder();
+            StringBuilder staticStringValue = new StringBuilder();
+            Map<String, Value> constants = new HashMap<String, Value>();
+            Matcher[] comments = null;
             int lineNumber = 0;
             String cacheId = "";
             boolean config = true;
@@ -410,11 +520,28 @@ public class CajuScript {
             Base cacheParser = null;
             String cacheScript = null;
             String compilePath = null;
+            int lineStart = 0;
             lines:
-            for (String line : lines) {
-                line = line.trim();
+            while (lineStart < length) {
+                int start = lineStart;
+                int end = lineStart;
+                while (end < length && chars[end] != '\n' && chars[end] != '\r') {
+                    end++;
+                }
+                lineStart = end + 1;
+                if (lineStart < length && chars[lineStart] != chars[end]
+                        && (chars[lineStart] == '\n' || chars[lineStart] == '\r')) {
+                    lineStart++;
+                }
                 lineNumber++;
+                while (start < end && chars[start] <= ' ') {
+                    start++;
+                }
+                while (end > start && chars[end - 1] <= ' ') {
+                    end--;
+                }
                 if (config) {
+                    String line = new String(chars, start, end - start);
                     while (true) {
                         int lineLimiter = line.indexOf(SUBLINE_LIMITER);
                         String configLine = line;
@@ -471,153 +598,114 @@ public class CajuScript {
                             continue lines;
                         }
                     }
-                }
-                if (!config && cacheParser != null && originalScript.equals(cacheScript)) {
-                    Set<String> keys = staticContexts.getAllKeys(true);
-                    for (String key : keys) {
-                        context.setVar(key, staticContexts.getVar(key));
+                    start = end - line.length();
+                    while (start < end && chars[start] <= ' ') {
+                        start++;
                     }
-                    keys = staticContexts.getStaticStrings().keySet();
-                    for (String key : keys) {
-                        context.setVar(key, staticContexts.getVar(key));
+                    if (cacheParser != null && originalScript.equals(cacheScript)) {
+                        Set<String> keys = staticContexts.getAllKeys(true);
+                        for (String key : keys) {
+                            context.setVar(key, staticContexts.getVar(key));
+                        }
+                        keys = staticContexts.getStaticStrings().keySet();
+                        for (String key : keys) {
+                            context.setVar(key, staticContexts.getVar(key));
+                        }
+                        Map<String, Function> funcs = staticContexts.getFuncs();
+                        keys = funcs.keySet();
+                        for (String key : keys) {
+                            context.setFunc(key, staticContexts.getFunc(key));
+                        }
+                        parserBase = cacheParser;
+                        metrics.cacheHit();
+                        time = metrics(time, Metrics.Phase.PREPROCESS);
+                        Value finalValue = result(parserBase.execute(this, context, syntax));
+                        parserBase.clear();
+                        metrics(time, Metrics.Phase.EXECUTE);
+                        return finalValue;
                     }
-                    Map<String, Function> funcs = staticContexts.getFuncs();
-                    keys = funcs.keySet();
-                    for (String key : keys) {
-                        context.setFunc(key, staticContexts.getFunc(key));
+                    if (compilePath != null) {
+                        Compiler compiler = new Compiler(this, compilePath);
+                        if (compiler.isLatest(originalScript)) {
+                            time = metrics(time, Metrics.Phase.PREPROCESS);
+                            Value finalValue = compiler.execute(context, syntax);
+                            metrics(time, Metrics.Phase.EXECUTE);
+                            return finalValue;
+                        }
                     }
-                    parserBase = cacheParser;
-                    Value finalValue = parserBase.execute(this, context, syntax);
-                    parserBase.clear();
-                    return finalValue;
-                }
-                if (!config && compilePath != null) {
-                    Compiler compiler = new Compiler(this, compilePath);
-                    if (compiler.isLatest(originalScript)) {
-                        return compiler.execute(context, syntax);
+                    Pattern[] commentPatterns = syntax.getComments();
+                    comments = new Matcher[commentPatterns.length];
+                    CharSequence sequence = java.nio.CharBuffer.wrap(chars);
+                    for (int i = 0; i < comments.length; i++) {
+                        comments[i] = commentPatterns[i].matcher(sequence);
                     }
                 }
-                if (isString1 || isString2) {
-                    setRunningLine(new LineDetail(lineNumber, previousLine));
-                    throw CajuScriptException.create(this, context,
-                            "String not closed");
-                }
-                String lineGarbage = line.trim();
-                if (lineGarbage.length() == 0) {
+                if (start == end) {
                     continue;
                 }
-                for (Pattern comment : syntax.getComments()) {
-                    Matcher m = comment.matcher(lineGarbage);
-                    if (m.find() && m.start() == 0) {
+                for (Matcher comment : comments) {
+                    comment.region(start, end);
+                    if (comment.lookingAt()) {
                         continue lines;
                     }
                 }
-                char[] chars = line.toCharArray();
-                previousLine = line;
-                isString1 = false;
-                isString2 = false;
+                String lineN = LINE_DETAIL_START.concat(Integer.toString(lineNumber)).concat(LINE_DETAIL_END);
+                boolean isString1 = false;
+                boolean isString2 = false;
                 char cO = (char) -1;
-                for (char c : chars) {
-                    switch (c) {
-                        case '\'':
-                            if (cO != '\\' && !isString2) {
-                                if (isString1) {
-                                    isString1 = false;
-                                    Value valueString = new Value(null, null, null);
-                                    valueString.setScript("'".concat(staticStringValue).concat("'"));
-                                    context.setVar(staticStringKey, valueString);
-                                    if (staticContexts != null) {
-                                        Value valueStringStatic = new Value(null, null, null);
-                                        valueStringStatic.setScript("'".concat(staticStringValue).concat("'"));
-                                        staticContexts.setVar(staticStringKey, valueStringStatic);
-                                    }
-                                    line = line.replace(
-                                            (CharSequence) ("'".concat(staticStringValue).concat("'")), staticStringKey);
-                                    staticStringKey = "";
-                                    staticStringValue = "";
-                                } else {
-                                    isString1 = true;
-                                    if (staticVarsStringCounter == Long.MAX_VALUE) {
-                                        staticVarsStringCounter = 0;
-                                    }
-                                    staticStringKey = CAJU_VARS_STATIC_STRING.concat(nextVarsCounter()).concat(
-                                            Long.toString(staticVarsStringCounter));
-                                    staticVarsStringCounter++;
-                                }
-                            } else if (isString2 || cO == '\\') {
-                                staticStringValue = staticStringValue.concat(Character.toString(c));
-                            }
-                            break;
-                        case '"':
-                            if (cO != '\\' && !isString1) {
-                                if (isString2) {
-                                    isString2 = false;
-                                    Value valueString = new Value(null, null, null);
-                                    valueString.setScript("\"".concat(staticStringValue).concat("\""));
-                                    context.setVar(staticStringKey, valueString);
-                                    if (staticContexts != null) {
-                                        Value valueStringStatic = new Value(null, null, null);
-                                        valueStringStatic.setScript("\"".concat(staticStringValue).concat("\""));
-                                        staticContexts.setVar(staticStringKey, valueStringStatic);
-                                    }
-                                    line = line.replace((CharSequence) ("\"".concat(staticStringValue).concat("\"")), staticStringKey);
-                                    staticStringKey = "";
-                                    staticStringValue = "";
-                                } else {
-                                    isString2 = true;
-                                    if (staticVarsStringCounter == Long.MAX_VALUE) {
-                                        staticVarsStringCounter = 0;
-                                    }
-                                    staticStringKey = CAJU_VARS_STATIC_STRING.concat(nextVarsCounter()).concat(
-                                            Long.toString(staticVarsStringCounter));
-                                    staticVarsStringCounter++;
-                                }
-                            } else if (isString1 || cO == '\\') {
-                                staticStringValue = staticStringValue.concat(Character.toString(c));
-                            }
-                            break;
-                        default:
-                            if (isString1 || isString2) {
-                                staticStringValue = staticStringValue.concat(Character.toString(c));
-                            }
-                            break;
+                for (int i = start; i < end; i++) {
+                    char c = chars[i];
+                    if (c == '\'' && cO != '\\' && !isString2) {
+                        isString1 = !isString1;
+                    } else if (c == '"' && cO != '\\' && !isString1) {
+                        isString2 = !isString2;
+                    } else if (isString1 || isString2) {
+                        staticStringValue.append(c);
+                        cO = c;
+                        continue;
+                    } else if (c == ';') {
+                        appendSubline(scriptFinal, lineN, subline, syntax);
+                        cO = c;
+                        continue;
+                    } else {
+                        subline.append(c);
+                        cO = c;
+                        continue;
                     }
-                    cO = c;
-                }
-                scriptFinal.append(LINE_DETAIL_START);
-                scriptFinal.append(Integer.toString(lineNumber));
-                scriptFinal.append(LINE_DETAIL_END);
-                scriptFinal.append(line);
-                scriptFinal.append(SUBLINE_LIMITER);
-            }
-            lines = scriptFinal.toString().split(SUBLINE_LIMITER);
-            scriptFinal = new StringBuilder();
-            for (String line : lines) {
-                String lineN = "";
-                if (line.startsWith(LINE_DETAIL_START)) {
-                    lineN = line.substring(0, line.indexOf(LINE_DETAIL_END) + 1);
-                    line = line.substring(lineN.length()).trim();
-                }
-                while (true) {
-                    line = line.trim();
-                    int p = endLineIndex(line, syntax);
-                    if (p > -1) {
-                        scriptFinal.append(lineN);
-                        scriptFinal.append(line.substring(0, p));
-                        scriptFinal.append(SUBLINE_LIMITER);
-                        line = line.substring(p);
+                    if (isString1 || isString2) {
+                        staticStringValue.setLength(0);
                     } else {
-                        scriptFinal.append(lineN);
-                        scriptFinal.append(line);
-                        scriptFinal.append(SUBLINE_LIMITER);
-                        break;
+                        if (staticVarsStringCounter == Long.MAX_VALUE) {
+                            staticVarsStringCounter = 0;
+                        }
+                        String staticStringKey = CAJU_VARS_STATIC_STRING.concat(nextVarsCounter()).concat(
+                                Long.toString(staticVarsStringCounter));
+                        staticVarsStringCounter++;
+                        Value valueString = new Value(null, null, null);
+                        valueString.setScript(Character.toString(c).concat(staticStringValue.toString()).concat(Character.toString(c)));
+                        context.setVar(staticStringKey, valueString);
+                        constants.put(staticStringKey, valueString);
+                        if (staticContexts != null) {
+                            staticContexts.setVar(staticStringKey, valueString);
+                        }
+                        subline.append(staticStringKey);
                     }
+                    cO = c;
+                }
+                if (isString1 || isString2) {
+                    setRunningLine(new LineDetail(lineNumber, new String(chars, start, end - start)));
+                    throw CajuScriptException.create(this, context,
+                            "String not closed");
                 }
+                appendSubline(scriptFinal, lineN, subline, syntax);
             }
             script = scriptFinal.toString();
+            time = metrics(time, Metrics.Phase.PREPROCESS);
             parserBase = new org.cajuscript.parser.Base(new LineDetail(-1, ""));
-            parserBase.parse(this, script, syntax);
+            parserBase.parse(this, script, syntax, constants);
+            time = metrics(time, Metrics.Phase.PARSE);
             if (!(cacheId.length() == 0)) {
+                metrics.cacheMiss();
                 cacheScripts.put(cacheId, originalScript);
                 cacheParsers.put(cacheId, (Base) parserBase.cloneSerialization());
                 cacheStaticContexts.put(cacheId, staticContexts);
@@ -625,9 +713,11 @@ public class CajuScript {
             if (compilePath != null) {
                 Compiler compiler = new Compiler(this, compilePath);
                 compiler.compile(staticContexts, originalScript, parserBase);
+                time = System.nanoTime();
             }
             if (execute) {
-                Value finalValue = parserBase.execute(this, context, syntax);
+                Value finalValue = result(parserBase.execute(this, context, syntax));
+                metrics(time, Metrics.Phase.EXECUTE);
                 if (!(cacheId.length() == 0)) {
                     Map<String, Function> funcs = context.getFuncs();
                     Set<String> keys = funcs.keySet();
@@ -641,11 +731,48 @@ public class CajuScript {
                 return null;
             }
         } catch (CajuScriptException e) {
+            metrics.exception();
             throw e;
         } catch (Throwable t) {
+            metrics.exception();
             throw CajuScriptException.create(this, context, t.getMessage(), t);
         } finally {
             setSyntax(syntaxBackup);
+            if (profiler != null) {
+                profiler.stop();
+            }
+            if (evalBudget != null) {
+                evalBudget.end();
+            }
+        }
+    }
+
+    private static Value result(Value value) {
+        return value instanceof Signal ? null : value;
+    }
+
+    private static long metrics(long start, Metrics.Phase phase) {
+        long end = System.nanoTime();
+        metrics.time(phase, end - start);
+        return end;
+    }
+
+    private void appendSubline(StringBuilder scriptFinal, String lineN,
+            StringBuilder subline, Syntax syntax) {
+        String line = subline.toString().trim();
+        subline.setLength(0);
+        while (line.length() > 0) {
+            int p = endLineIndex(line, syntax);
+            scriptFinal.append(lineN);
+            if (p > -1) {
+                scriptFinal.append(line, 0, p);
+                scriptFinal.append(SUBLINE_LIMITER);
+                line = line.substring(p).trim();
+            } else {
+                scriptFinal.append(line);
+                scriptFinal.append(SUBLINE_LIMITER);
+                break;
+            }
         }
     }
 
@@ -653,76 +780,31 @@ public class CajuScript {
         if (line.length() == 0) {
             return -1;
         }
-        SyntaxPosition syntaxPosition = null;
-        int l = -1;
-        if ((l = syntax.matcherPosition(line, syntax.getLabel()).getEnd()) > -1) {
+        SyntaxMatcher matcher = syntax.matcher(line, syntax.getLabel());
+        int l = matcher.find() ? matcher.getEnd() : -1;
+        matcher.release();
+        if (l > -1) {
             line = line.substring(l);
         }
-        int[] starts = new int[12];
-        int[] ends = new int[starts.length];
-        for (int i = 0; i < starts.length; i++) {
-            starts[i] = Integer.MAX_VALUE;
-            ends[i] = Integer.MAX_VALUE;
-        }
-        if ((syntaxPosition = syntax.matcherPosition(line, syntax.getIf())).getEnd() > -1) {
-            starts[0] = syntaxPosition.getStart();
-            ends[0] = syntaxPosition.getEnd();
-        }
-        if ((syntaxPosition = syntax.matcherPosition(line, syntax.getElseIf())).getEnd() > -1) {
-            starts[1] = syntaxPosition.getStart();
-            ends[1] = syntaxPosition.getEnd();
-        }
-        if ((syntaxPosition = syntax.matcherPosition(line, syntax.getElse())).getEnd() > -1) {
-            starts[2] = syntaxPosition.getStart();
-            ends[2] = syntaxPosition.getEnd();
-        }
-        if ((syntaxPosition = syntax.matcherPosition(line, syntax.getLoop())).getEnd() > -1) {
-            starts[3] = syntaxPosition.getStart();
-            ends[3] = syntaxPosition.getEnd();
-        }
-        if ((syntaxPosition = syntax.matcherPosition(line, syntax.getFunction())).getEnd() > -1) {
-            starts[4] = syntaxPosition.getStart();
-            ends[4] = syntaxPosition.getEnd();
-        }
-        if ((syntaxPosition = syntax.matcherPosition(line, syntax.getTry())).getEnd() > -1) {
-            starts[5] = syntaxPosition.getStart();
-            ends[5] = syntaxPosition.getEnd();
-        }
-        if ((syntaxPosition = syntax.matcherPosition(line, syntax.getTryCatch())).getEnd() > -1) {
-            starts[6] = syntaxPosition.getStart();
-            ends[6] = syntaxPosition.getEnd();
-        }
-        if ((syntaxPosition = syntax.matcherPosition(line, syntax.getTryFinally())).getEnd() > -1) {
-            starts[7] = syntaxPosition.getStart();
-            ends[7] = syntaxPosition.getEnd();
-        }
-        if ((syntaxPosition = syntax.matcherPosition(line, syntax.getIfEnd())).getEnd() > -1) {
-            starts[8] = syntaxPosition.getStart();
-            ends[8] = syntaxPosition.getEnd();
-        }
-        if ((syntaxPosition = syntax.matcherPosition(line, syntax.getLoopEnd())).getEnd() > -1) {
-            starts[9] = syntaxPosition.getStart();
-            ends[9] = syntaxPosition.getEnd();
-        }
-        if ((syntaxPosition = syntax.matcherPosition(line, syntax.getFunctionEnd())).getEnd() > -1) {
-            starts[10] = syntaxPosition.getStart();
-            ends[10] = syntaxPosition.getEnd();
-        }
-        if ((syntaxPosition = syntax.matcherPosition(line, syntax.getTryEnd())).getEnd() > -1) {
-            starts[11] = syntaxPosition.getStart();
-            ends[11] = syntaxPosition.getEnd();
-        }
+        Pattern[] patterns = syntax.getBlocks();
         int id = -1;
-        for (int i = 0; i < starts.length; i++) {
-            if ((id == -1 && ends[i] < Integer.MAX_VALUE) || (ends[i] < Integer.MAX_VALUE && id > -1 && (ends[i] <= starts[id] || (starts[i] < starts[id] && ends[id] == ends[i])))) {
+        int start = Integer.MAX_VALUE;
+        int end = Integer.MAX_VALUE;
+        for (int i = 0; i < patterns.length; i++) {
+            matcher = syntax.matcher(line, patterns[i]);
+            if (matcher.find() && (id == -1 || matcher.getEnd() <= start
+                    || (matcher.getStart() < start && matcher.getEnd() == end))) {
                 id = i;
+                start = matcher.getStart();
+                end = matcher.getEnd();
             }
+            matcher.release();
         }
         if (id > -1) {
             if (id == 3 && l > -1) {
-                ends[id] += l;
+                end += l;
             }
-            return ends[id];
+            return end;
         }
         return -1;
     }
@@ -1190,10 +1272,8 @@ public class CajuScript {
         }
         return false;
     }
-    private Map<String, Value> eachValues = new HashMap<String, Value>();
-    private Map<String, Integer> eachIndexs = new HashMap<String, Integer>();
-    private Map<String, Iterator<Object>> eachIterators = new HashMap<String, Iterator<Object>>();
-    private Map<String, Enumeration<Object>> eachEnumerations = new HashMap<String, Enumeration<Object>>();
+    private Map<String, Loop.Each> eachLoops = new HashMap<String, Loop.Each>();
+    private Map<String, Integer> eachEnds = new HashMap<String, Integer>();
 
     /**
      * To do loops like "for each":
@@ -1225,102 +1305,17 @@ public class CajuScript {
      *             Exception generated.
      */
     public boolean each(String var, Object array) throws CajuScriptException {
-        boolean isToContinue = false;
-        int index = -1;
-        if (array instanceof Collection) {
-            Integer iIndex = eachIndexs.get(var);
-            Iterator<Object> iterator = eachIterators.get(var);
-            Value value = eachValues.get(var);
-            if (iIndex == null) {
-                iterator = ((Collection<Object>) array).iterator();
-                iIndex = Integer.valueOf(index);
-                value = toValue(null);
-                eachValues.put(var, value);
-                eachIterators.put(var, iterator);
-            }
-            if (iterator.hasNext()) {
-                index = iIndex.intValue() + 1;
-                value = eachValues.get(var);
-                value.setValue(iterator.next());
-                setVar(var, value);
-                isToContinue = true;
-            } else {
-                if (iIndex != null) {
-                    index = iIndex.intValue();
-                }
-            }
-            eachIndexs.put(var, Integer.valueOf(index));
-            return isToContinue;
-        } else if (array instanceof Enumeration) {
-            Integer iIndex = eachIndexs.get(var);
-            Enumeration enumeration = eachEnumerations.get(var);
-            Value value = eachValues.get(var);
-            if (iIndex == null) {
-                enumeration = (Enumeration) array;
-                iIndex = Integer.valueOf(index);
-                value = toValue(null);
-                eachValues.put(var, value);
-                eachEnumerations.put(var, enumeration);
-            }
-            if (enumeration.hasMoreElements()) {
-                index = iIndex.intValue() + 1;
-                value = eachValues.get(var);
-                value.setValue(enumeration.nextElement());
-                setVar(var, value);
-                isToContinue = true;
-            } else {
-                if (iIndex != null) {
-                    index = iIndex.intValue();
-                }
-            }
-            eachIndexs.put(var, Integer.valueOf(index));
-            return isToContinue;
-        } else if (array instanceof Map) {
-            String iteratorKey = CajuScript.CAJU_VARS.concat("_").concat(var).concat("_iterator");
-            Value valueIterator = getVar(iteratorKey);
-            if (valueIterator == null) {
-                set(iteratorKey, ((Map) array).keySet().iterator());
-            }
-            Iterator iterator = (Iterator) get(iteratorKey);
-            Integer iIndex = eachIndexs.get(var);
-            if (iterator.hasNext()) {
-                if (iIndex == null) {
-                    iIndex = Integer.valueOf(index);
-                    eachIndexs.put(var, iIndex);
-                }
-                index = iIndex.intValue();
-                index++;
-                Object key = iterator.next();
-                set(
-                        CajuScript.CAJU_VARS.concat("_").concat(var).concat(
-                        "_key"), key);
-                set(var, ((Map) array).get(key));
-                isToContinue = true;
-            } else {
-                if (iIndex != null) {
-                    index = iIndex.intValue();
-                }
-            }
-            eachIndexs.put(var, Integer.valueOf(index));
-            return isToContinue;
-        } else {
-            int len = Array.size(array);
-            if (len > 0) {
-                Integer iIndex = eachIndexs.get(var);
-                if (iIndex == null) {
-                    iIndex = Integer.valueOf(index);
-                    eachIndexs.put(var, iIndex);
-                }
-                index = iIndex.intValue();
-                if (index < len - 1) {
-                    index++;
-                    set(var, Array.get(array, index));
-                    isToContinue = true;
-                }
-            }
-            eachIndexs.put(var, Integer.valueOf(index));
-            return isToContinue;
+        Loop.Each each = eachLoops.get(var);
+        if (each == null) {
+            each = new Loop.Each(array);
+            eachLoops.put(var, each);
         }
+        if (each.next()) {
+            set(var, each.getValue());
+            return true;
+        }
+        setEach(var, null);
+        return false;
     }
 
     /**
@@ -1328,10 +1323,16 @@ public class CajuScript {
      *
      * @param var
      *            Name of variable to be catch the index.
-     * @return Index from the current interaction.
+     * @return Index from the current interaction, the last index after the
+     *         loop ends or -1 if was not executed.
      */
     public int index(String var) {
-        return eachIndexs.get(var);
+        Loop.Each each = eachLoops.get(var);
+        if (each != null) {
+            return each.getIndex();
+        }
+        Integer index = eachEnds.get(var);
+        return index == null ? -1 : index.intValue();
     }
 
     /**
@@ -1344,7 +1345,11 @@ public class CajuScript {
      *             Variable with the key not been found.
      */
     public Object key(String var) throws CajuScriptException {
-        return get(CajuScript.CAJU_VARS.concat("_").concat(var).concat("_key"));
+        Loop.Each each = eachLoops.get(var);
+        if (each != null) {
+            return each.getKey();
+        }
+        return null;
     }
 
     /**
@@ -1353,11 +1358,35 @@ public class CajuScript {
      *            Name of variable to be clean.
      */
     public void clear(String var) throws CajuScriptException {
-        set(CajuScript.CAJU_VARS.concat("_").concat(var).concat("_key"), null);
-        eachIndexs.put(var, null);
-        eachValues.put(var, null);
-        eachIterators.put(var, null);
-        eachEnumerations.put(var, null);
+        eachLoops.remove(var);
+        eachEnds.remove(var);
+    }
+
+    /**
+     * Get the state of the "for each" loop of a variable.
+     * @param var Name of the variable of the loop.
+     * @return State of the loop, or null if was not executed.
+     */
+    public Loop.Each getEach(String var) {
+        return eachLoops.get(var);
+    }
+
+    /**
+     * Define the state of the "for each" loop of a variable, used by the
+     * loop when starts and when ends.
+     * @param var Name of the variable of the loop.
+     * @param each State of the loop, null to remove it when ends, keeping
+     *             only the last index.
+     */
+    public void setEach(String var, Loop.Each each) {
+        if (each != null) {
+            eachLoops.put(var, each);
+            return;
+        }
+        Loop.Each ended = eachLoops.remove(var);
+        if (ended != null) {
+            eachEnds.put(var, Integer.valueOf(ended.getIndex()));
+        }
     }
 
     /**
@@ -19,11 +19,18 @@
 
 package org.cajuscript;
 
+import org.cajuscript.parser.LineDetail;
+
 /**
  * Exceptions of the CajuScript.
  * @author eduveks
  */
 public class CajuScriptException extends Exception {
+    private String error = null;
+    private int line = 0;
+    private String script = null;
+    private boolean locatable = false;
+
     /**
      * Newly exception.
      */
@@ -69,6 +76,9 @@ public class CajuScriptException extends Exception {
     
     /**
      * Create an newly exception.
+     * <p>Only the hidden variables of the running line are read from the
+     * context, the message is joined when is requested, then exceptions
+     * that are caught by the script not spend time with it.</p>
      * @param caju CajuScript instance.
      * @param message Message of the exception.
      * @param cause More exceptions.
@@ -76,23 +86,71 @@ public class CajuScriptException extends Exception {
      * @throws org.cajuscript.CajuScriptException Creating exception.
      */
     public static CajuScriptException create(CajuScript caju, Context context, String message, Throwable cause) throws CajuScriptException {
-        if (message == null) {
-            if (caju != null && context != null) {
-                message = Integer.toString(caju.getRunningLine().getNumber()).concat(": ").concat(formatScript(context, caju.getRunningLine().getContent()));
-            } else if (caju != null) {
-                message = Integer.toString(caju.getRunningLine().getNumber()).concat(": ").concat(formatScript(caju.getContext(), caju.getRunningLine().getContent()));
-            }
+        if (caju == null) {
             return new CajuScriptException(message, cause);
         }
-        return new CajuScriptException(message.concat(" > ").concat(Integer.toString(caju.getRunningLine().getNumber())).concat(": ").concat(formatScript(context, caju.getRunningLine().getContent())), cause);
+        if (context == null) {
+            context = caju.getContext();
+        }
+        CajuScriptException e = new CajuScriptException(null, cause);
+        e.error = message;
+        e.line = caju.getRunningLine().getNumber();
+        e.script = formatScript(context, caju.getRunningLine().getContent());
+        e.locatable = true;
+        return e;
+    }
+
+    /**
+     * Define the line where the exception was thrown, if was created with
+     * the running line.
+     * @param lineDetail Line detail.
+     * @param context Context of the line.
+     */
+    void locate(LineDetail lineDetail, Context context) {
+        if (locatable) {
+            line = lineDetail.getNumber();
+            script = formatScript(context, lineDetail.getContent());
+        }
+    }
+
+    /**
+     * Get the message.
+     * @return Message.
+     */
+    @Override
+    public String getMessage() {
+        if (!locatable) {
+            return super.getMessage();
+        }
+        String message = Integer.toString(line).concat(": ");
+        if (error != null) {
+            message = error.concat(" > ").concat(message);
+        }
+        return message.concat(script);
     }
     
-    private static String formatScript(Context context, String script) throws CajuScriptException {
-        for (String key : context.getAllKeys(true)) {
-            if (key.startsWith(CajuScript.CAJU_VARS)) {
-                script = script.replace(key, "\"".concat(context.getVar(key).toString()).concat("\""));
+    private static String formatScript(Context context, String script) {
+        int start = script.indexOf(CajuScript.CAJU_VARS);
+        if (start == -1 || context == null) {
+            return script;
+        }
+        StringBuilder formatted = new StringBuilder(script.length());
+        int end = 0;
+        while (start != -1) {
+            formatted.append(script, end, start);
+            end = start;
+            while (end < script.length() && Character.isJavaIdentifierPart(script.charAt(end))) {
+                end++;
+            }
+            String key = script.substring(start, end);
+            Value value = key.startsWith(CajuScript.CAJU_VARS_STATIC_STRING) ? null : context.getVars().get(key);
+            if (value != null) {
+                formatted.append('"').append(value.toString()).append('"');
+            } else {
+                formatted.append(key);
             }
+            start = script.indexOf(CajuScript.CAJU_VARS, end);
         }
-        return script;
+        return formatted.append(script, end, script.length()).toString();
     }
-}
\ No newline at end of file
+}
@@ -23,8 +23,10 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Set;
 import java.util.HashSet;
+import org.cajuscript.parser.Element;
 import org.cajuscript.parser.Function;
 
 /**
@@ -33,19 +35,42 @@ import org.cajuscript.parser.Function;
  * @author eduveks
  */
 public class Context {
-    private List<String> imports = new ArrayList<String>();
-    private Map<String, Value> vars = new HashMap<String, Value>();
-    private Map<String, Function> funcs = new HashMap<String, Function>();
-    private Map<String, Class> classCache = new HashMap<String, Class>();
-    private Value staticString = null;
-    private Map<String, String> staticStrings = new HashMap<String, String>();
+    private List<String> imports = null;
+    private Map<String, Value> vars = null;
+    private Map<String, Function> funcs = null;
+    private Map<String, Class> classCache = null;
+    private Map<String, Value> staticStrings = null;
+    private Map<Element, Value> elementsValues = null;
 
     /**
      * New context instance.
      */
     public Context() {
-        staticString = new Value(null, null, null);
+        imports = new ArrayList<String>();
         imports.add("java.lang");
+        vars = new HashMap<String, Value>();
+        funcs = new HashMap<String, Function>();
+        classCache = new HashMap<String, Class>();
+        staticStrings = new HashMap<String, Value>();
+    }
+
+    /**
+     * New activation frame of a function. Only the variables are local, the
+     * imports, functions, classes and static strings are the same maps of the
+     * parent context, not copies, so an import or a function defined in the
+     * frame is defined in the parent too, like the imports and functions of
+     * the scripts that are always defined in the root context.
+     * <p>The map of variables is created with the capacity to keep the size
+     * without rehashing, more variables are accepted.</p>
+     * @param parent Parent context, usually the root context.
+     * @param size Count of local variables expected.
+     */
+    public Context(Context parent, int size) {
+        imports = parent.imports;
+        vars = new HashMap<String, Value>(size < 3 ? 4 : size * 4 / 3 + 1);
+        funcs = parent.funcs;
+        classCache = parent.classCache;
+        staticStrings = parent.staticStrings;
     }
     
     /**
@@ -136,7 +161,7 @@ public class Context {
      */
     public void setVar(String key, Value value) {
         if (key.startsWith(CajuScript.CAJU_VARS_STATIC_STRING)) {
-            setStaticString(key, value.toString());
+            staticStrings.put(key, value);
         } else {
             vars.put(key.trim(), value);
         }
@@ -195,22 +220,69 @@ public class Context {
         return c;
     }
 
-    public void setStaticString(String key, String value) {
-        staticStrings.put(key, value);
+    /**
+     * Define a static string, kept as a value that is shared by all
+     * elements using it and never changed.
+     * @param key Static string key.
+     * @param value Content of the static string.
+     * @throws CajuScriptException Errors creating the value.
+     */
+    public void setStaticString(String key, String value) throws CajuScriptException {
+        Value v = new Value(null, null, null);
+        v.setValue(value);
+        staticStrings.put(key, v);
     }
+
+    /**
+     * Get the content of a static string.
+     * @param key Static string key.
+     * @return Content of the static string.
+     */
     public String getStaticString(String key) {
-        return staticStrings.get(key);
+        Value v = staticStrings.get(key);
+        return v == null ? null : v.toString();
     }
 
-    public Map<String, String> getStaticStrings() {
+    /**
+     * All static strings.
+     * @return Values of the static strings by key.
+     */
+    public Map<String, Value> getStaticStrings() {
         return staticStrings;
     }
 
+    /**
+     * Get value of the static string.
+     * @param key Static string key.
+     * @return Shared value of the static string, must not be changed.
+     * @throws CajuScriptException Errors getting the value.
+     */
     public Value getStaticStringValue(String key) throws CajuScriptException {
-        if (!staticStrings.containsKey(key)) {
+        return staticStrings.get(key);
+    }
+
+    /**
+     * Get the value used by an element to give his result in this context.
+     * This values are not variables of the script.
+     * @param element Element.
+     * @return Value of the element, or null if not defined yet.
+     */
+    public Value getElementValue(Element element) {
+        if (elementsValues == null) {
             return null;
         }
-        staticString.setValue(staticStrings.get(key));
-        return staticString;
+        return elementsValues.get(element);
+    }
+
+    /**
+     * Define the value used by an element to give his result in this context.
+     * @param element Element.
+     * @param value Value of the element.
+     */
+    public void setElementValue(Element element, Value value) {
+        if (elementsValues == null) {
+            elementsValues = new IdentityHashMap<Element, Value>();
+        }
+        elementsValues.put(element, value);
     }
 }
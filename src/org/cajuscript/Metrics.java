@@ -0,0 +1,216 @@
+/*
+ * Metrics.java
+ *
+ * This file is part of CajuScript.
+ *
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option)
+ * any later version.
+ *
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cajuscript;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of all CajuScript instances, like evaluations, time of each
+ * phase, cache and reflection misses.
+ * <p>Is shared by all threads and is got by CajuScript.getMetrics(), can be
+ * exposed by JMX with register():</p>
+ * <p><blockquote><pre>
+ * CajuScript.getMetrics().register();
+ * </pre></blockquote></p>
+ * @author eduveks
+ */
+public class Metrics implements MetricsMBean {
+    /**
+     * Name of the metrics in JMX.
+     */
+    public static final String OBJECT_NAME = "org.cajuscript:type=Metrics";
+    /**
+     * Phases of the evaluation.
+     */
+    static enum Phase {
+        PREPROCESS, PARSE, EXECUTE
+    }
+    private final AtomicLong evals = new AtomicLong();
+    private final AtomicLong preprocessTime = new AtomicLong();
+    private final AtomicLong parseTime = new AtomicLong();
+    private final AtomicLong executeTime = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong compilations = new AtomicLong();
+    private final AtomicLong classLoads = new AtomicLong();
+    private final AtomicLong reflectionMisses = new AtomicLong();
+    private final AtomicLong scriptCommands = new AtomicLong();
+    private final AtomicLong exceptions = new AtomicLong();
+
+    Metrics() {
+
+    }
+
+    /**
+     * Expose the metrics by JMX in the platform MBean server.
+     * @throws CajuScriptException Registration errors.
+     */
+    public void register() throws CajuScriptException {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (Exception e) {
+            throw new CajuScriptException(e);
+        }
+    }
+
+    /**
+     * Remove the metrics of the platform MBean server.
+     * @throws CajuScriptException Unregistration errors.
+     */
+    public void unregister() throws CajuScriptException {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            throw new CajuScriptException(e);
+        }
+    }
+
+    void eval() {
+        evals.incrementAndGet();
+    }
+
+    void time(Phase phase, long time) {
+        switch (phase) {
+            case PREPROCESS:
+                preprocessTime.addAndGet(time);
+                break;
+            case PARSE:
+                parseTime.addAndGet(time);
+                break;
+            default:
+                executeTime.addAndGet(time);
+        }
+    }
+
+    void cacheHit() {
+        cacheHits.incrementAndGet();
+    }
+
+    void cacheMiss() {
+        cacheMisses.incrementAndGet();
+    }
+
+    void exception() {
+        exceptions.incrementAndGet();
+    }
+
+    /**
+     * Count a script compiled.
+     */
+    public void compilation() {
+        compilations.incrementAndGet();
+    }
+
+    /**
+     * Count a class of compiled script loaded.
+     */
+    public void classLoad() {
+        classLoads.incrementAndGet();
+    }
+
+    /**
+     * Count a method or constructor searched by reflection.
+     */
+    public void reflectionMiss() {
+        reflectionMisses.incrementAndGet();
+    }
+
+    /**
+     * Count a command resolved by his script on execution, because was not
+     * split by the parse.
+     */
+    public void scriptCommand() {
+        scriptCommands.incrementAndGet();
+    }
+
+    public long getEvals() {
+        return evals.get();
+    }
+
+    public long getPreprocessTime() {
+        return preprocessTime.get();
+    }
+
+    public long getParseTime() {
+        return parseTime.get();
+    }
+
+    public long getExecuteTime() {
+        return executeTime.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    public double getCacheHitRate() {
+        long hits = cacheHits.get();
+        long total = hits + cacheMisses.get();
+        return total == 0 ? 0 : (double)hits / total;
+    }
+
+    public long getCompilations() {
+        return compilations.get();
+    }
+
+    public long getClassLoads() {
+        return classLoads.get();
+    }
+
+    public long getReflectionMisses() {
+        return reflectionMisses.get();
+    }
+
+    public long getScriptCommands() {
+        return scriptCommands.get();
+    }
+
+    public long getExceptions() {
+        return exceptions.get();
+    }
+
+    public void reset() {
+        evals.set(0);
+        preprocessTime.set(0);
+        parseTime.set(0);
+        executeTime.set(0);
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        compilations.set(0);
+        classLoads.set(0);
+        reflectionMisses.set(0);
+        scriptCommands.set(0);
+        exceptions.set(0);
+    }
+}
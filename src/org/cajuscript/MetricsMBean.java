@@ -0,0 +1,105 @@
+/*
+ * MetricsMBean.java
+ *
+ * This file is part of CajuScript.
+ *
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option)
+ * any later version.
+ *
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cajuscript;
+
+/**
+ * Management interface of the metrics, used by JMX.
+ * @author eduveks
+ */
+public interface MetricsMBean {
+    /**
+     * Number of scripts evaluated.
+     * @return Evaluations.
+     */
+    long getEvals();
+
+    /**
+     * Time spent in the preparation of the scripts before the parse, in
+     * nanoseconds.
+     * @return Time.
+     */
+    long getPreprocessTime();
+
+    /**
+     * Time spent in the parse of the scripts, in nanoseconds.
+     * @return Time.
+     */
+    long getParseTime();
+
+    /**
+     * Time spent in the execution of the scripts, in nanoseconds.
+     * @return Time.
+     */
+    long getExecuteTime();
+
+    /**
+     * Scripts executed from the cache.
+     * @return Cache hits.
+     */
+    long getCacheHits();
+
+    /**
+     * Scripts with cache that needed to be parsed.
+     * @return Cache misses.
+     */
+    long getCacheMisses();
+
+    /**
+     * Rate of scripts executed from the cache.
+     * @return Rate between 0 and 1.
+     */
+    double getCacheHitRate();
+
+    /**
+     * Scripts compiled.
+     * @return Compilations.
+     */
+    long getCompilations();
+
+    /**
+     * Classes of compiled scripts loaded.
+     * @return Class loads.
+     */
+    long getClassLoads();
+
+    /**
+     * Methods and constructors searched by reflection because was not in
+     * the cache of the command.
+     * @return Reflection misses.
+     */
+    long getReflectionMisses();
+
+    /**
+     * Commands resolved by matching the syntax on execution, because the
+     * parse not split them in command paths, like the array calls.
+     * @return Script commands.
+     */
+    long getScriptCommands();
+
+    /**
+     * Exceptions thrown by the scripts.
+     * @return Exceptions.
+     */
+    long getExceptions();
+
+    /**
+     * Clean all metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,306 @@
+/*
+ * Profiler.java
+ *
+ * This file is part of CajuScript.
+ *
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option)
+ * any later version.
+ *
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cajuscript;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.cajuscript.parser.LineDetail;
+
+/**
+ * Profiler of the execution, counts the hits and the wall time of each line
+ * and of each function.
+ * <p>Is fed by the elements executed and by the calls of functions, only
+ * when is defined in the CajuScript, without profiler nothing is
+ * measured:</p>
+ * <p><blockquote><pre>
+ * Profiler profiler = new Profiler();
+ * caju.setProfiler(profiler);
+ * caju.eval(script);
+ * System.out.println(profiler.getReport());
+ * </pre></blockquote></p>
+ * <p>The exclusive time of a line is the time while it was the running
+ * line, the inclusive time adds the functions called by it. The lines of
+ * compiled scripts are not seen, only their functions.</p>
+ * <p>Must be used by only one thread.</p>
+ * @author eduveks
+ */
+public class Profiler {
+    private static final String ROOT = "script";
+    private Map<LineDetail, Stats> lines = new IdentityHashMap<LineDetail, Stats>();
+    private Map<String, Stats> functions = new HashMap<String, Stats>();
+    private Map<String, Map<LineDetail, Stats>> stacks = new HashMap<String, Map<LineDetail, Stats>>();
+    private Map<String, int[]> depths = new HashMap<String, int[]>();
+    private List<Frame> frames = new ArrayList<Frame>();
+
+    /**
+     * Newly profiler.
+     */
+    public Profiler() {
+        reset();
+    }
+
+    private static class Stats {
+        private long hits = 0;
+        private long inclusive = 0;
+        private long exclusive = 0;
+        private int active = 0;
+    }
+
+    private static class Frame {
+        private String function = null;
+        private String name = null;
+        private Map<LineDetail, Stats> stack = null;
+        private LineDetail line = null;
+        private Stats lineStats = null;
+        private long start = 0;
+        private long mark = 0;
+        private long lineStart = 0;
+        private long children = 0;
+    }
+
+    /**
+     * Clean all measures.
+     */
+    public void reset() {
+        lines.clear();
+        functions.clear();
+        stacks.clear();
+        depths.clear();
+        frames.clear();
+        frames.add(frame(ROOT, ROOT, System.nanoTime()));
+    }
+
+    private Frame frame(String function, String stack, long now) {
+        Frame frame = new Frame();
+        frame.function = function;
+        frame.name = stack;
+        frame.stack = stacks.get(stack);
+        if (frame.stack == null) {
+            frame.stack = new IdentityHashMap<LineDetail, Stats>();
+            stacks.put(stack, frame.stack);
+        }
+        frame.start = now;
+        frame.mark = now;
+        return frame;
+    }
+
+    private static Stats stats(Map<LineDetail, Stats> map, LineDetail line) {
+        Stats stats = map.get(line);
+        if (stats == null) {
+            stats = new Stats();
+            map.put(line, stats);
+        }
+        return stats;
+    }
+
+    private void closeLine(Frame frame, long now) {
+        if (frame.line != null) {
+            frame.lineStats.exclusive += now - frame.mark;
+            stats(frame.stack, frame.line).exclusive += now - frame.mark;
+            frame.lineStats.active--;
+            if (frame.lineStats.active == 0) {
+                frame.lineStats.inclusive += now - frame.lineStart;
+            }
+        }
+    }
+
+    private void flush() {
+        long now = System.nanoTime();
+        Frame top = frames.get(frames.size() - 1);
+        if (top.line != null) {
+            top.lineStats.exclusive += now - top.mark;
+            stats(top.stack, top.line).exclusive += now - top.mark;
+        }
+        top.mark = now;
+        Map<Stats, Stats> counted = new IdentityHashMap<Stats, Stats>();
+        for (Frame frame : frames) {
+            if (frame.line != null && !counted.containsKey(frame.lineStats)) {
+                counted.put(frame.lineStats, frame.lineStats);
+                frame.lineStats.inclusive += now - frame.lineStart;
+            }
+            frame.lineStart = now;
+        }
+    }
+
+    /**
+     * Line started to be executed.
+     * @param line Line detail.
+     */
+    public void line(LineDetail line) {
+        Frame frame = frames.get(frames.size() - 1);
+        if (frame.line == line) {
+            return;
+        }
+        long now = System.nanoTime();
+        closeLine(frame, now);
+        frame.line = line;
+        frame.lineStats = stats(lines, line);
+        frame.lineStats.hits++;
+        frame.lineStats.active++;
+        frame.lineStart = now;
+        frame.mark = now;
+    }
+
+    /**
+     * Function started to be executed.
+     * @param function Name of the function.
+     */
+    public void enter(String function) {
+        long now = System.nanoTime();
+        Frame parent = frames.get(frames.size() - 1);
+        if (parent.line != null) {
+            parent.lineStats.exclusive += now - parent.mark;
+            stats(parent.stack, parent.line).exclusive += now - parent.mark;
+        }
+        parent.mark = now;
+        String stack = parent.name.concat(";").concat(function);
+        frames.add(frame(function, stack, now));
+        int[] depth = depths.get(function);
+        if (depth == null) {
+            depth = new int[1];
+            depths.put(function, depth);
+        }
+        depth[0]++;
+    }
+
+    /**
+     * Function ended.
+     */
+    public void exit() {
+        if (frames.size() == 1) {
+            return;
+        }
+        long now = System.nanoTime();
+        Frame frame = frames.remove(frames.size() - 1);
+        closeLine(frame, now);
+        Stats stats = functions.get(frame.function);
+        if (stats == null) {
+            stats = new Stats();
+            functions.put(frame.function, stats);
+        }
+        stats.hits++;
+        stats.exclusive += now - frame.start - frame.children;
+        int[] depth = depths.get(frame.function);
+        depth[0]--;
+        if (depth[0] == 0) {
+            stats.inclusive += now - frame.start;
+        }
+        Frame parent = frames.get(frames.size() - 1);
+        parent.children += now - frame.start;
+        parent.mark = now;
+    }
+
+    /**
+     * Execution ended, closes the running line and the functions not ended,
+     * so the time until the next execution is not measured.
+     */
+    public void stop() {
+        while (frames.size() > 1) {
+            exit();
+        }
+        long now = System.nanoTime();
+        Frame root = frames.get(0);
+        closeLine(root, now);
+        root.line = null;
+        root.lineStats = null;
+        root.mark = now;
+        root.lineStart = now;
+    }
+
+    /**
+     * Flat report of the lines and of the functions, ordered by the
+     * exclusive time. Times are in milliseconds.
+     * @return Report.
+     */
+    public String getReport() {
+        flush();
+        Map<String, Stats> byLine = new HashMap<String, Stats>();
+        for (Map.Entry<LineDetail, Stats> entry : lines.entrySet()) {
+            String key = Integer.toString(entry.getKey().getNumber()).concat(": ").concat(entry.getKey().getContent().trim());
+            Stats stats = byLine.get(key);
+            if (stats == null) {
+                stats = new Stats();
+                byLine.put(key, stats);
+            }
+            stats.hits += entry.getValue().hits;
+            stats.inclusive += entry.getValue().inclusive;
+            stats.exclusive += entry.getValue().exclusive;
+        }
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%12s %12s %12s  %s%n", "hits", "inclusive", "exclusive", "line"));
+        for (Map.Entry<String, Stats> entry : sorted(byLine)) {
+            append(report, entry.getValue(), entry.getKey());
+        }
+        report.append(String.format("%n%12s %12s %12s  %s%n", "calls", "inclusive", "exclusive", "function"));
+        for (Map.Entry<String, Stats> entry : sorted(functions)) {
+            append(report, entry.getValue(), entry.getKey());
+        }
+        return report.toString();
+    }
+
+    private static void append(StringBuilder report, Stats stats, String name) {
+        report.append(String.format("%12d %12.3f %12.3f  %s%n", stats.hits,
+                stats.inclusive / 1000000d, stats.exclusive / 1000000d, name));
+    }
+
+    private static List<Map.Entry<String, Stats>> sorted(Map<String, Stats> map) {
+        List<Map.Entry<String, Stats>> entries = new ArrayList<Map.Entry<String, Stats>>(map.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Stats>>() {
+            public int compare(Map.Entry<String, Stats> e1, Map.Entry<String, Stats> e2) {
+                return Long.compare(e2.getValue().exclusive, e1.getValue().exclusive);
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Collapsed stacks of the functions and lines, with the exclusive time
+     * in microseconds, the format used to create flame graphs.
+     * @return One stack by line, like "script;func;line 3 120".
+     */
+    public String getCollapsedStacks() {
+        flush();
+        StringBuilder collapsed = new StringBuilder();
+        for (Map.Entry<String, Map<LineDetail, Stats>> stack : stacks.entrySet()) {
+            Map<Integer, long[]> byNumber = new HashMap<Integer, long[]>();
+            for (Map.Entry<LineDetail, Stats> line : stack.getValue().entrySet()) {
+                Integer number = Integer.valueOf(line.getKey().getNumber());
+                long[] time = byNumber.get(number);
+                if (time == null) {
+                    time = new long[1];
+                    byNumber.put(number, time);
+                }
+                time[0] += line.getValue().exclusive;
+            }
+            for (Map.Entry<Integer, long[]> line : byNumber.entrySet()) {
+                long micros = line.getValue()[0] / 1000;
+                if (micros > 0) {
+                    collapsed.append(stack.getKey()).append(";line ").append(line.getKey())
+                            .append(' ').append(micros).append('\n');
+                }
+            }
+        }
+        return collapsed.toString();
+    }
+}
@@ -19,8 +19,12 @@
 
 package org.cajuscript;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import org.cajuscript.parser.Operation.Operator;
 
 /**
  * Script syntax.
@@ -92,15 +96,15 @@ public class Syntax {
     private Pattern operatorLessEqual = Pattern.compile("\\<\\s*\\=");
     private Pattern operatorGreaterEqual = Pattern.compile("\\>\\s*\\=");
     private Pattern number = Pattern.compile("\\-*\\d+[\\.\\d+]*");
-    private Pattern ifStart = Pattern.compile("([^\\?\\@\\#\\^]+)\\?");
+    private Pattern ifStart = Pattern.compile("(?<![^\\?\\@\\#\\^])([^\\?\\@\\#\\^]++)\\?");
     private Pattern elseIfStart = Pattern.compile("\\?\\s*(.+)\\s*\\?");
     private Pattern elseStart = Pattern.compile("\\?\\s*\\?");
     private Pattern ifEnd = Pattern.compile("\\?");
-    private Pattern loopStart = Pattern.compile("([^\\?\\@\\#\\^]+)\\@");
+    private Pattern loopStart = Pattern.compile("(?<![^\\?\\@\\#\\^])([^\\?\\@\\#\\^]++)\\@");
     private Pattern loopEnd = Pattern.compile("\\@");
-    private Pattern functionStart = Pattern.compile("([^\\?\\@\\#\\^]+)\\s*(.+)\\s*\\#");
+    private Pattern functionStart = Pattern.compile("(?<![^\\?\\@\\#\\^])(?=.*\\#)([^\\?\\@\\#\\^]+)\\s*(.+)\\s*\\#");
     private Pattern functionEnd = Pattern.compile("\\#");
-    private Pattern tryStart = Pattern.compile("([^\\?\\@\\#\\^]+)\\^");
+    private Pattern tryStart = Pattern.compile("(?<![^\\?\\@\\#\\^])([^\\?\\@\\#\\^]++)\\^");
     private Pattern tryCatchStart = Pattern.compile("\\^\\s*\\^");
     private Pattern tryFinallyStart = Pattern.compile("\\^\\s*\\~\\s*\\^");
     private Pattern tryEnd = Pattern.compile("\\^");
@@ -123,6 +127,11 @@ public class Syntax {
     private Pattern arrayCallParametersBegin = Pattern.compile("\\[");
     private Pattern arrayCallParametersSeparator = Pattern.compile("\\,");
     private Pattern arrayCallParametersEnd = Pattern.compile("\\]");
+    private static final Pattern empty = Pattern.compile("");
+    private Pattern[] blocks = null;
+    private Pattern[] operators = null;
+    private Map<Pattern, Operator> operatorsByPattern = null;
+    private ThreadLocal<Map<Pattern, SyntaxMatcher>> matchers = new ThreadLocal<Map<Pattern, SyntaxMatcher>>();
 
     /**
      * Create new Syntax.
@@ -132,7 +141,7 @@ public class Syntax {
     }
 
     /**
-     * Get If. Default "([^\\?\\@\\#\\^]+)\\?".
+     * Get If. Default "(?&lt;![^\\?\\@\\#\\^])([^\\?\\@\\#\\^]++)\\?".
      * Basic: "^[\\s+i|i]f\\s*([\\s+|[\\s*\\(]].+)\\s*".
      * Java: "if\\s*([\\s+|[\\s*\\(]][^\\{]+)\\{".
      * @return If.
@@ -172,7 +181,7 @@ public class Syntax {
     }
 
     /**
-     * Get Loop. Default "([^\\?\\@\\#\\^]+)\\@".
+     * Get Loop. Default "(?&lt;![^\\?\\@\\#\\^])([^\\?\\@\\#\\^]++)\\@".
      * Basic: "^[\\s+w|w]hile\\s*([\\s+|[\\s*\\(]].+)\\s*".
      * Java: "while\\s*([\\s+|[\\s*\\(]][^\\{]+)\\{".
      * @return Loop.
@@ -192,7 +201,7 @@ public class Syntax {
     }
 
     /**
-     * Get Function. Default "([^\\?\\@\\#\\^]+)\\s*(.+)\\s*\\#".
+     * Get Function. Default "(?&lt;![^\\?\\@\\#\\^])(?=.*\\#)([^\\?\\@\\#\\^]+)\\s*(.+)\\s*\\#".
      * Basic: "^[\\s+f|f]unction\\s*([\\s+|[\\s*\\(]].+)\\s*".
      * Java: "function\\s*([\\s+|[\\s*\\(]][^\\{]+)\\{".
      * @return Function.
@@ -212,7 +221,7 @@ public class Syntax {
     }
 
     /**
-     * Get Try. Default "([^\\?\\@\\#\\^]+)\\^".
+     * Get Try. Default "(?&lt;![^\\?\\@\\#\\^])([^\\?\\@\\#\\^]++)\\^".
      * Basic: "^[\\s+t|t]ry\\s*([\\s+|[\\s*\\(]].+)\\s*".
      * Java: "try\\s*([\\s+|[\\s*\\(]][^\\{]+)\\{".
      * @return Try.
@@ -311,6 +320,62 @@ public class Syntax {
         return rootContext;
     }
 
+    /**
+     * Get all starts and ends of blocks, if, else if, else, loop, function,
+     * try, catch, finally and the ends of if, loop, function and try.
+     * The array is shared by all calls and must not be changed.
+     * @return Blocks.
+     */
+    public Pattern[] getBlocks() {
+        if (blocks == null) {
+            blocks = new Pattern[] {
+                getIf(), getElseIf(), getElse(), getLoop(),
+                getFunction(), getTry(), getTryCatch(), getTryFinally(),
+                getIfEnd(), getLoopEnd(), getFunctionEnd(), getTryEnd()
+            };
+        }
+        return blocks;
+    }
+
+    /**
+     * Get all operators, logicals, conditionals and mathematics.
+     * The array is shared by all calls and must not be changed.
+     * @return Operators.
+     */
+    public Pattern[] getOperators() {
+        if (operators == null) {
+            operators = new Pattern[] {
+                getOperatorAnd(), getOperatorOr(),
+                getOperatorEqual(), getOperatorNotEqual(), getOperatorGreater(), getOperatorLess(), getOperatorGreaterEqual(), getOperatorLessEqual(),
+                getOperatorAddition(), getOperatorSubtraction(), getOperatorMultiplication(), getOperatorDivision(), getOperatorModules()
+            };
+        }
+        return operators;
+    }
+
+    /**
+     * Get the operator of a pattern.
+     * @param pattern Pattern.
+     * @return Operator, or null if the pattern is not an operator.
+     */
+    public Operator getOperator(Pattern pattern) {
+        Map<Pattern, Operator> map = operatorsByPattern;
+        if (map == null) {
+            map = new IdentityHashMap<Pattern, Operator>();
+            Operator[] values = new Operator[] {
+                Operator.AND, Operator.OR,
+                Operator.EQUAL, Operator.NOT_EQUAL, Operator.GREATER, Operator.LESS, Operator.GREATER_EQUAL, Operator.LESS_EQUAL,
+                Operator.ADDITION, Operator.SUBTRACTION, Operator.MULTIPLICATION, Operator.DIVISION, Operator.MODULES
+            };
+            Pattern[] patterns = getOperators();
+            for (int i = patterns.length - 1; i >= 0; i--) {
+                map.put(patterns[i], values[i]);
+            }
+            operatorsByPattern = map;
+        }
+        return map.get(pattern);
+    }
+
     /**
      * Get Addition operator. Default: "\\+".
      * @return Addition operator.
@@ -528,13 +593,14 @@ public class Syntax {
     }
 
     /**
-     * Set If. Default "([^\\?\\@\\#\\^]+)\\?".
+     * Set If. Default "(?&lt;![^\\?\\@\\#\\^])([^\\?\\@\\#\\^]++)\\?".
      * Basic: "^[\\s+i|i]f\\s*([\\s+|[\\s*\\(]].+)\\s*".
      * Java: "if\\s*([\\s+|[\\s*\\(]][^\\{]+)\\{".
      * @param ifStart If.
      */
     public void setIf(Pattern ifStart) {
         this.ifStart = ifStart;
+        blocks = null;
     }
 
     /**
@@ -545,6 +611,7 @@ public class Syntax {
      */
     public void setIfEnd(Pattern ifEnd) {
         this.ifEnd = ifEnd;
+        blocks = null;
     }
 
     /**
@@ -555,6 +622,7 @@ public class Syntax {
      */
     public void setElseIf(Pattern elseIfStart) {
         this.elseIfStart = elseIfStart;
+        blocks = null;
     }
 
     /**
@@ -565,16 +633,18 @@ public class Syntax {
      */
     public void setElse(Pattern elseStart) {
         this.elseStart = elseStart;
+        blocks = null;
     }
 
     /**
-     * Set Loop. Default "([^\\?\\@\\#\\^]+)\\@".
+     * Set Loop. Default "(?&lt;![^\\?\\@\\#\\^])([^\\?\\@\\#\\^]++)\\@".
      * Basic: "^[\\s+w|w]hile\\s*([\\s+|[\\s*\\(]].+)\\s*".
      * Java: "while\\s*([\\s+|[\\s*\\(]][^\\{]+)\\{".
      * @param loopStart Loop.
      */
     public void setLoop(Pattern loopStart) {
         this.loopStart = loopStart;
+        blocks = null;
     }
 
     /**
@@ -585,16 +655,18 @@ public class Syntax {
      */
     public void setLoopEnd(Pattern loopEnd) {
         this.loopEnd = loopEnd;
+        blocks = null;
     }
 
     /**
-     * Set Function. Default "([^\\?\\@\\#\\^]+)\\s*(.+)\\s*\\#".
+     * Set Function. Default "(?&lt;![^\\?\\@\\#\\^])(?=.*\\#)([^\\?\\@\\#\\^]+)\\s*(.+)\\s*\\#".
      * Basic: "^[\\s+f|f]unction\\s*([\\s+|[\\s*\\(]].+)\\s*".
      * Java: "function\\s*([\\s+|[\\s*\\(]][^\\{]+)\\{".
      * @param functionStart Function.
      */
     public void setFunction(Pattern functionStart) {
         this.functionStart = functionStart;
+        blocks = null;
     }
 
     /**
@@ -605,16 +677,18 @@ public class Syntax {
      */
     public void setFunctionEnd(Pattern functionEnd) {
         this.functionEnd = functionEnd;
+        blocks = null;
     }
 
     /**
-     * Set Try. Default "([^\\?\\@\\#\\^]+)\\^".
+     * Set Try. Default "(?&lt;![^\\?\\@\\#\\^])([^\\?\\@\\#\\^]++)\\^".
      * Basic: "^[\\s+t|t]ry\\s*([\\s+|[\\s*\\(]].+)\\s*".
      * Java: "try\\s*([\\s+|[\\s*\\(]][^\\{]+)\\{".
      * @param tryStart Try.
      */
     public void setTry(Pattern tryStart) {
         this.tryStart = tryStart;
+        blocks = null;
     }
 
     /**
@@ -625,6 +699,7 @@ public class Syntax {
      */
     public void setTryEnd(Pattern tryEnd) {
         this.tryEnd = tryEnd;
+        blocks = null;
     }
 
     /**
@@ -635,6 +710,7 @@ public class Syntax {
      */
     public void setTryCatch(Pattern catchStart) {
         this.tryCatchStart = catchStart;
+        blocks = null;
     }
 
     /**
@@ -645,6 +721,7 @@ public class Syntax {
      */
     public void setTryFinally(Pattern finallyStart) {
         this.tryFinallyStart = finallyStart;
+        blocks = null;
     }
 
     /**
@@ -713,6 +790,8 @@ public class Syntax {
      */
     public void setOperatorAddition(Pattern operatorAddition) {
         this.operatorAddition = operatorAddition;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -721,6 +800,8 @@ public class Syntax {
      */
     public void setOperatorSubtraction(Pattern operatorSubtraction) {
         this.operatorSubtraction = operatorSubtraction;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -729,6 +810,8 @@ public class Syntax {
      */
     public void setOperatorMultiplication(Pattern operatorMultiplication) {
         this.operatorMultiplication = operatorMultiplication;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -737,6 +820,8 @@ public class Syntax {
      */
     public void setOperatorDivision(Pattern operatorDivision) {
         this.operatorDivision = operatorDivision;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -745,6 +830,8 @@ public class Syntax {
      */
     public void setOperatorModules(Pattern operatorModules) {
         this.operatorModules = operatorModules;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -753,6 +840,8 @@ public class Syntax {
      */
     public void setOperatorAnd(Pattern operatorAnd) {
         this.operatorAnd = operatorAnd;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -761,6 +850,8 @@ public class Syntax {
      */
     public void setOperatorOr(Pattern operatorOr) {
         this.operatorOr = operatorOr;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -769,6 +860,8 @@ public class Syntax {
      */
     public void setOperatorEqual(Pattern operatorEqual) {
         this.operatorEqual = operatorEqual;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -777,6 +870,8 @@ public class Syntax {
      */
     public void setOperatorNotEqual(Pattern operatorNotEqual) {
         this.operatorNotEqual = operatorNotEqual;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -785,6 +880,8 @@ public class Syntax {
      */
     public void setOperatorLess(Pattern operatorLess) {
         this.operatorLess = operatorLess;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -793,6 +890,8 @@ public class Syntax {
      */
     public void setOperatorGreater(Pattern operatorGreater) {
         this.operatorGreater = operatorGreater;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -801,6 +900,8 @@ public class Syntax {
      */
     public void setOperatorLessEqual(Pattern operatorLessEqual) {
         this.operatorLessEqual = operatorLessEqual;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -809,6 +910,8 @@ public class Syntax {
      */
     public void setOperatorGreaterEqual(Pattern operatorGreaterEqual) {
         this.operatorGreaterEqual = operatorGreaterEqual;
+        operators = null;
+        operatorsByPattern = null;
     }
 
     /**
@@ -923,6 +1026,51 @@ public class Syntax {
         this.arrayCallParametersSeparator = arrayCallParametersSeparator;
     }
 
+    /**
+     * Matcher cursor of a pattern over a text. The cursor is taken from the
+     * cursors of the current thread and must be released after used, then
+     * is reused by the next match of the same pattern.
+     * @param line Text.
+     * @param pattern Pattern.
+     * @return Cursor.
+     */
+    public SyntaxMatcher matcher(CharSequence line, Pattern pattern) {
+        Map<Pattern, SyntaxMatcher> map = matchers.get();
+        if (map == null) {
+            map = new IdentityHashMap<Pattern, SyntaxMatcher>();
+            matchers.set(map);
+        }
+        SyntaxMatcher matcher = map.remove(pattern);
+        if (matcher == null) {
+            matcher = new SyntaxMatcher(pattern, map);
+        }
+        return matcher.reset(line);
+    }
+
+    /**
+     * Matcher start, without create a position.
+     * @param line Command line.
+     * @param pattern Pattern.
+     * @return Start index, or -1 if not found.
+     */
+    public int matcherStart(String line, Pattern pattern) {
+        SyntaxMatcher matcher = matcher(line, pattern);
+        matcher.find();
+        int start = matcher.getStart();
+        matcher.release();
+        return start;
+    }
+
+    /**
+     * Matcher if the command line starts with the pattern.
+     * @param line Command line.
+     * @param pattern Pattern.
+     * @return Is starts.
+     */
+    public boolean matcherStarts(String line, Pattern pattern) {
+        return matcherStart(line, pattern) == 0;
+    }
+
     /**
      * Matcher position.
      * @param line Command line.
@@ -930,25 +1078,16 @@ public class Syntax {
      * @return Position.
      */
     public SyntaxPosition matcherPosition(String line, Pattern pattern) {
-        SyntaxPosition position = null;
-        Matcher matcher = pattern.matcher(line);
+        SyntaxMatcher matcher = matcher(line, pattern);
+        SyntaxPosition position = new SyntaxPosition(this, pattern);
         if (matcher.find()) {
-            position = new SyntaxPosition(this, pattern);
-            position.setAllContent(matcher.group());
-            if (matcher.groupCount() > 0) {
-                position.setGroup(matcher.group(1));
-            } else {
-                position.setGroup(matcher.group());
-            }
-            position.setStart(matcher.start());
-            position.setEnd(matcher.end());
-            return position;
-        } else {
-            position = new SyntaxPosition(this, pattern);
-            position.setStart(-1);
-            position.setEnd(-1);
-            return position;
+            position.setAllContent(matcher.getAllContent());
+            position.setGroup(matcher.getGroup());
         }
+        position.setStart(matcher.getStart());
+        position.setEnd(matcher.getEnd());
+        matcher.release();
+        return position;
     }
 
     /**
@@ -957,17 +1096,26 @@ public class Syntax {
      * @return Position.
      */
     public SyntaxPosition matcherLastPosition(String script, Pattern pattern) {
-        SyntaxPosition syntaxPosition = null;
-        SyntaxPosition syntaxPositionFinal = new SyntaxPosition(this, Pattern.compile(""));
-        while (true) {
-            syntaxPosition = matcherPosition(script, pattern);
-            if (syntaxPosition.getStart() != -1) {
-                script = script.substring(syntaxPosition.getEnd());
-                syntaxPositionFinal = syntaxPosition;
-            } else {
-                return syntaxPositionFinal;
-            }
+        SyntaxMatcher matcher = matcher(script, pattern);
+        int start = -1;
+        int end = -1;
+        String group = "";
+        String allContent = "";
+        int from = 0;
+        while (from <= script.length() && matcher.find(from)) {
+            start = matcher.getStart();
+            end = matcher.getEnd();
+            group = matcher.getGroup();
+            allContent = matcher.getAllContent();
+            from = Math.max(end, start + 1);
         }
+        matcher.release();
+        SyntaxPosition position = new SyntaxPosition(this, start == -1 ? empty : pattern);
+        position.setAllContent(allContent);
+        position.setGroup(group);
+        position.setStart(start);
+        position.setEnd(end);
+        return position;
     }
 
     /**
@@ -977,10 +1125,10 @@ public class Syntax {
      * @return Is equals.
      */
     public boolean matcherEquals(String line, Pattern pattern) {
-        Boolean b = null;
-        Matcher matcher = pattern.matcher(line);
-        b = Boolean.valueOf(matcher.matches());
-        return b;
+        SyntaxMatcher matcher = matcher(line, pattern);
+        boolean matches = matcher.matches();
+        matcher.release();
+        return matches;
     }
 
     /**
@@ -1047,19 +1195,29 @@ public class Syntax {
      * @return Position.
      */
     public SyntaxPosition firstOperator(String script, Pattern... patterns) {
-        SyntaxPosition first = null;
-        SyntaxPosition[] syntaxPositions = new SyntaxPosition[patterns.length];
+        int first = -1;
+        int start = -1;
+        int end = -1;
+        String group = "";
+        String allContent = "";
         for (int i = 0; i < patterns.length; i++) {
-            syntaxPositions[i] = matcherPosition(script, patterns[i]);
-        }
-        first = new SyntaxPosition(this, Pattern.compile(""));
-        for (int i = 0; i < syntaxPositions.length; i++) {
-            if ((syntaxPositions[i].getStart() > -1 && (first.getStart() == -1 || syntaxPositions[i].getStart() < first.getStart()))
-                    || (syntaxPositions[i].getStart() == first.getStart() && syntaxPositions[i].getEnd() > first.getEnd())) {
-                first = syntaxPositions[i];
+            SyntaxMatcher matcher = matcher(script, patterns[i]);
+            if (matcher.find() && (start == -1 || matcher.getStart() < start
+                    || (matcher.getStart() == start && matcher.getEnd() > end))) {
+                first = i;
+                start = matcher.getStart();
+                end = matcher.getEnd();
+                group = matcher.getGroup();
+                allContent = matcher.getAllContent();
             }
+            matcher.release();
         }
-        return first;
+        SyntaxPosition position = new SyntaxPosition(this, first == -1 ? empty : patterns[first]);
+        position.setAllContent(allContent);
+        position.setGroup(group);
+        position.setStart(start);
+        position.setEnd(end);
+        return position;
     }
 
     /**
@@ -1068,22 +1226,54 @@ public class Syntax {
      * @return Position.
      */
     public SyntaxPosition lastOperator(String script, Pattern... patterns) {
-        SyntaxPosition syntaxPositionFinal = null;
-        syntaxPositionFinal = new SyntaxPosition(this, Pattern.compile(""));
+        List<SyntaxPosition> syntaxPositions = operators(script, patterns);
+        if (syntaxPositions.isEmpty()) {
+            return new SyntaxPosition(this, empty);
+        }
+        return syntaxPositions.get(syntaxPositions.size() - 1);
+    }
+
+    /**
+     * Find all operators, in the order that they are in the script. When
+     * operators starts in the same position the longest is used, and the
+     * next operator is searched after the end of the previous.
+     * Each pattern goes through the script only once.
+     * @param script Script where find the operators.
+     * @param patterns Patterns of the operators.
+     * @return Positions.
+     */
+    public List<SyntaxPosition> operators(String script, Pattern... patterns) {
+        List<SyntaxPosition> syntaxPositions = new ArrayList<SyntaxPosition>();
+        SyntaxMatcher[] matchers = new SyntaxMatcher[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            matchers[i] = matcher(script, patterns[i]);
+            matchers[i].find();
+        }
+        int from = 0;
         while (true) {
-            SyntaxPosition syntaxPosition = firstOperator(script, patterns);
-            String spaces = "";
-            if (syntaxPosition.getStart() != -1) {
-                for (int k = syntaxPosition.getStart(); k < syntaxPosition.getEnd(); k++) {
-                    spaces = spaces.concat(" ");
+            int first = -1;
+            for (int i = 0; i < patterns.length; i++) {
+                if (matchers[i].getStart() > -1 && matchers[i].getStart() < from) {
+                    matchers[i].find(from);
+                }
+                if (matchers[i].getStart() > -1 && (first == -1 || matchers[i].getStart() < matchers[first].getStart()
+                        || (matchers[i].getStart() == matchers[first].getStart() && matchers[i].getEnd() > matchers[first].getEnd()))) {
+                    first = i;
                 }
             }
-            if (syntaxPosition.getStart() != -1) {
-                script = script.substring(0, syntaxPosition.getStart()) + spaces + script.substring(syntaxPosition.getEnd());
-                syntaxPositionFinal = syntaxPosition;
-            } else {
-                return syntaxPositionFinal;
+            if (first == -1) {
+                for (SyntaxMatcher matcher : matchers) {
+                    matcher.release();
+                }
+                return syntaxPositions;
             }
+            SyntaxPosition syntaxPosition = new SyntaxPosition(this, patterns[first]);
+            syntaxPosition.setAllContent(matchers[first].getAllContent());
+            syntaxPosition.setGroup(matchers[first].getAllContent());
+            syntaxPosition.setStart(matchers[first].getStart());
+            syntaxPosition.setEnd(matchers[first].getEnd());
+            syntaxPositions.add(syntaxPosition);
+            from = Math.max(matchers[first].getEnd(), matchers[first].getStart() + 1);
         }
     }
 }
\ No newline at end of file
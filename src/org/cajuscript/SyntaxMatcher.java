@@ -0,0 +1,183 @@
+/*
+ * SyntaxMatcher.java
+ *
+ * This file is part of CajuScript.
+ *
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option)
+ * any later version.
+ *
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cajuscript;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cursor over the matches of a syntax pattern. Is reused by the syntax to
+ * the matches of the same pattern in the same thread, then positions are
+ * given without allocations.
+ * <p>The cursor is owned by who requested it until is released, then
+ * nested matches of the same pattern get other cursor. A cursor not
+ * released is only not reused.</p>
+ *
+ * @author eduveks
+ */
+public class SyntaxMatcher {
+
+    private Pattern pattern = null;
+    private Matcher matcher = null;
+    private Map<Pattern, SyntaxMatcher> pool = null;
+    private int start = -1;
+    private int end = -1;
+
+    /**
+     * Newly cursor of a pattern.
+     *
+     * @param pattern
+     *            Pattern.
+     * @param pool
+     *            Cursors of the thread, where the cursor is released.
+     */
+    SyntaxMatcher(Pattern pattern, Map<Pattern, SyntaxMatcher> pool) {
+        this.pattern = pattern;
+        this.matcher = pattern.matcher("");
+        this.pool = pool;
+    }
+
+    /**
+     * Start to use the cursor over a new text.
+     *
+     * @param text
+     *            Text.
+     * @return This cursor.
+     */
+    public SyntaxMatcher reset(CharSequence text) {
+        matcher.reset(text);
+        start = -1;
+        end = -1;
+        return this;
+    }
+
+    /**
+     * Release the cursor to be reused by the next match of the same
+     * pattern, and the text is not referenced more. The cursor must not be
+     * used after released.
+     */
+    public void release() {
+        reset("");
+        if (pool != null) {
+            pool.put(pattern, this);
+        }
+    }
+
+    /**
+     * Find the next match.
+     *
+     * @return If was found.
+     */
+    public boolean find() {
+        return load(matcher.find());
+    }
+
+    /**
+     * Find the first match after a position.
+     *
+     * @param from
+     *            Position where start to find.
+     * @return If was found.
+     */
+    public boolean find(int from) {
+        return load(matcher.find(from));
+    }
+
+    /**
+     * Match only if the text starts with the pattern.
+     *
+     * @return If was matched.
+     */
+    public boolean lookingAt() {
+        return load(matcher.lookingAt());
+    }
+
+    /**
+     * Match only if all text is the pattern.
+     *
+     * @return If was matched.
+     */
+    public boolean matches() {
+        return load(matcher.matches());
+    }
+
+    private boolean load(boolean found) {
+        if (found) {
+            start = matcher.start();
+            end = matcher.end();
+        } else {
+            start = -1;
+            end = -1;
+        }
+        return found;
+    }
+
+    /**
+     * Get start of the last match.
+     *
+     * @return Start index, or -1 if was not matched.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Get end of the last match.
+     *
+     * @return End index, or -1 if was not matched.
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * Get text group of the last match, the first group of the pattern or
+     * all the content if the pattern has no groups.
+     *
+     * @return Text group.
+     */
+    public String getGroup() {
+        if (start == -1) {
+            return "";
+        }
+        return matcher.groupCount() > 0 ? matcher.group(1) : matcher.group();
+    }
+
+    /**
+     * Get all content of the last match.
+     *
+     * @return Content.
+     */
+    public String getAllContent() {
+        if (start == -1) {
+            return "";
+        }
+        return matcher.group();
+    }
+
+    /**
+     * Get pattern.
+     *
+     * @return Pattern.
+     */
+    public Pattern getPattern() {
+        return pattern;
+    }
+}
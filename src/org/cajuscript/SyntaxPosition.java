@@ -46,50 +46,7 @@ public class SyntaxPosition {
      */
     public SyntaxPosition(Syntax syntax, Pattern pattern) {
         this.pattern = pattern.pattern().hashCode();
-        operator = getOperator(syntax);
-    }
-
-    private Operator getOperator(Syntax syntax) {
-        if (pattern == syntax.getOperatorAnd().pattern().hashCode()) {
-            return Operator.AND;
-        }
-        if (pattern == syntax.getOperatorOr().pattern().hashCode()) {
-            return Operator.OR;
-        }
-        if (pattern == syntax.getOperatorEqual().pattern().hashCode()) {
-            return Operator.EQUAL;
-        }
-        if (pattern == syntax.getOperatorNotEqual().pattern().hashCode()) {
-            return Operator.NOT_EQUAL;
-        }
-        if (pattern == syntax.getOperatorGreater().pattern().hashCode()) {
-            return Operator.GREATER;
-        }
-        if (pattern == syntax.getOperatorLess().pattern().hashCode()) {
-            return Operator.LESS;
-        }
-        if (pattern == syntax.getOperatorGreaterEqual().pattern().hashCode()) {
-            return Operator.GREATER_EQUAL;
-        }
-        if (pattern == syntax.getOperatorLessEqual().pattern().hashCode()) {
-            return Operator.LESS_EQUAL;
-        }
-        if (pattern == syntax.getOperatorAddition().pattern().hashCode()) {
-            return Operator.ADDITION;
-        }
-        if (pattern == syntax.getOperatorSubtraction().pattern().hashCode()) {
-            return Operator.SUBTRACTION;
-        }
-        if (pattern == syntax.getOperatorMultiplication().pattern().hashCode()) {
-            return Operator.MULTIPLICATION;
-        }
-        if (pattern == syntax.getOperatorDivision().pattern().hashCode()) {
-            return Operator.DIVISION;
-        }
-        if (pattern == syntax.getOperatorModules().pattern().hashCode()) {
-            return Operator.MODULES;
-        }
-        return null;
+        operator = syntax.getOperator(pattern);
     }
 
     /**
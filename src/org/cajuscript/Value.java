@@ -19,8 +19,10 @@
 
 package org.cajuscript;
 
+import java.lang.reflect.Method;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.cajuscript.cmd.CommandPath;
 import org.cajuscript.cmd.Reflection;
 import org.cajuscript.cmd.ScriptCommand;
 import org.cajuscript.parser.Function;
@@ -61,6 +63,7 @@ public class Value implements Cloneable {
     private float valueNumberFloat = 0;
     private double valueNumberDouble = 0;
     private String valueString = "";
+    private StringBuilder valueBuilder = null;
     private boolean valueBoolean = false;
     private TypeNumber typeNumber = null;
     private Type type = Type.NULL;
@@ -72,7 +75,9 @@ public class Value implements Cloneable {
     private Syntax syntax = null;
     private String flag = "";
     private ScriptCommand scriptCommand = null;
+    private Value[] arguments = null;
     private String script = null;
+    private boolean readOnly = false;
     private static Pattern unicodePattern = Pattern.compile("\\\\u[a-fA-F0-9][a-fA-F0-9][a-fA-F0-9][a-fA-F0-9]");
 
     /**
@@ -90,6 +95,9 @@ public class Value implements Cloneable {
         cajuScript = caju;
         this.context = context;
         this.syntax = syntax;
+        if (caju != null && caju.getBudget() != null) {
+            caju.getBudget().value();
+        }
     }
 
     /**
@@ -106,6 +114,7 @@ public class Value implements Cloneable {
      * @throws org.cajuscript.CajuScriptException Errors loading the script.
      */
     public final void setScript(String s) throws CajuScriptException {
+        writable();
         try {
             if (script != null && script.equals(s)) {
                 if (isCommand()) {
@@ -114,6 +123,7 @@ public class Value implements Cloneable {
                 return;
             }
             _isCommand = false;
+            valueBuilder = null;
             script = s;
             script = script.trim();
             if (script.length() == 0) {
@@ -136,22 +146,22 @@ public class Value implements Cloneable {
             } else if (syntax.matcherEquals(script, syntax.getNull())) {
                 value = null;
             } else {
-                try {
-                    loadNumberValue(script, true);
-                } catch (Exception e) {
-                    if (script.toLowerCase().equals("true")) {
-                        value = true;
-                        valueBoolean = true;
-                        valueString = "true";
-                        type = Type.BOOLEAN;
-                    } else if (script.toLowerCase().equals("false")) {
-                        value = false;
-                        valueBoolean = false;
-                        valueString = "false";
-                        type = Type.BOOLEAN;
-                    } else {
-                        setCommand(script);
-                    }
+                Number number = parseNumber(script);
+                if (number != null) {
+                    value = number;
+                    loadNumberValue(number);
+                } else if (script.equalsIgnoreCase("true")) {
+                    value = true;
+                    valueBoolean = true;
+                    valueString = "true";
+                    type = Type.BOOLEAN;
+                } else if (script.equalsIgnoreCase("false")) {
+                    value = false;
+                    valueBoolean = false;
+                    valueString = "false";
+                    type = Type.BOOLEAN;
+                } else {
+                    setCommand(script);
                 }
             }
         } catch (CajuScriptException e) {
@@ -174,6 +184,7 @@ public class Value implements Cloneable {
      * @param context Context.
      */
     public void setContext(Context context) {
+        writable();
         this.context = context;
     }
     
@@ -190,6 +201,7 @@ public class Value implements Cloneable {
      * @param syntax Syntax.
      */
     public void setSyntax(Syntax syntax) {
+        writable();
         this.syntax = syntax;
     }
     
@@ -210,14 +222,24 @@ public class Value implements Cloneable {
     }
     
     /**
-     * Set command.
+     * Set command, resolved by matching the syntax.
+     * <p>Is used only by the commands that the parse not split in a command
+     * path, like the array calls "name[index]" and the commands with
+     * parameters that are not arguments, and by values created directly by
+     * the Java API. Each use is counted in the script commands of the
+     * metrics.</p>
      * @param script Command script.
      * @throws org.cajuscript.CajuScriptException Errors loading command.
      */
     public void setCommand(String script) throws CajuScriptException {
+        writable();
+        CajuScript.getMetrics().scriptCommand();
         _isCommand = true;
         Value v = null;
         boolean varMode = false;
+        if (scriptCommand != null && scriptCommand.getCommandPath() != null) {
+            scriptCommand = null;
+        }
         if (scriptCommand == null || !scriptCommand.getScript().equals(script)) {
             script = script.trim();
             script = script.replace((CharSequence)" ", (CharSequence)"");
@@ -226,28 +248,37 @@ public class Value implements Cloneable {
             if (scriptCommand != null && !script.equals(scriptCommand.getScript())) {
                 scriptCommand = null;
             }
-            SyntaxPosition syntaxRootContext = syntax.matcherPosition(script, syntax.getRootContext());
-            SyntaxPosition syntaxPathSeparator = syntax.matcherPosition(script, syntax.getFunctionCallPathSeparator());
-            SyntaxPosition syntaxParamBegin = syntax.matcherPosition(script, syntax.getFunctionCallParametersBegin());
-            SyntaxPosition syntaxParamEnd = syntax.matcherPosition(script, syntax.getFunctionCallParametersEnd());
-            SyntaxPosition syntaxArrayParamBegin = syntax.matcherPosition(script, syntax.getArrayCallParametersBegin());
-            SyntaxPosition syntaxArrayParamEnd = syntax.matcherPosition(script, syntax.getArrayCallParametersEnd());
-            SyntaxPosition syntaxArrayParamSeparator = syntax.matcherPosition(script, syntax.getArrayCallParametersSeparator());
-            if ((syntaxParamBegin.getStart() > -1 && syntaxParamBegin.getStart() < syntaxParamEnd.getStart()) || (syntaxPathSeparator.getStart() > -1 && syntaxArrayParamBegin.getStart() == -1 && syntaxArrayParamEnd.getStart() == -1)) {
-                String path = syntaxParamBegin.getStart() > -1 ? script.substring(0, syntaxParamBegin.getStart()) : script;
-                if (syntaxRootContext.getStart() == 0) {
-                    path = path.substring(syntaxRootContext.getEnd());
-                    syntaxPathSeparator = syntax.matcherPosition(path, syntax.getFunctionCallPathSeparator());
-                    script = script.substring(syntaxRootContext.getEnd());
+            SyntaxMatcher matcher = syntax.matcher(script, syntax.getRootContext());
+            int rootContextEnd = matcher.lookingAt() ? matcher.getEnd() : -1;
+            matcher.release();
+            matcher = syntax.matcher(script, syntax.getFunctionCallPathSeparator());
+            matcher.find();
+            int pathSeparatorStart = matcher.getStart();
+            int pathSeparatorEnd = matcher.getEnd();
+            matcher.release();
+            int paramBeginStart = syntax.matcherStart(script, syntax.getFunctionCallParametersBegin());
+            int paramEndStart = syntax.matcherStart(script, syntax.getFunctionCallParametersEnd());
+            int arrayParamBeginStart = syntax.matcherStart(script, syntax.getArrayCallParametersBegin());
+            int arrayParamEndStart = syntax.matcherStart(script, syntax.getArrayCallParametersEnd());
+            if ((paramBeginStart > -1 && paramBeginStart < paramEndStart) || (pathSeparatorStart > -1 && arrayParamBeginStart == -1 && arrayParamEndStart == -1)) {
+                String path = paramBeginStart > -1 ? script.substring(0, paramBeginStart) : script;
+                if (rootContextEnd > -1) {
+                    path = path.substring(rootContextEnd);
+                    matcher = syntax.matcher(path, syntax.getFunctionCallPathSeparator());
+                    matcher.find();
+                    pathSeparatorStart = matcher.getStart();
+                    pathSeparatorEnd = matcher.getEnd();
+                    matcher.release();
+                    script = script.substring(rootContextEnd);
                 }
                 path = path.trim();
-                String name = syntaxPathSeparator.getStart() > -1 && syntaxPathSeparator.getEnd() < syntaxParamBegin.getStart() ? path.substring(0, syntaxPathSeparator.getStart()) : path;
+                String name = pathSeparatorStart > -1 && pathSeparatorEnd < paramBeginStart ? path.substring(0, pathSeparatorStart) : path;
                 name = name.trim();
                 Function func = cajuScript.getFunc(path);
                 Value val = null;
                 boolean isRootContext = false;
-                if (syntaxRootContext.getStart() != 0) {
-                    val = context.getVar(name);
+                if (rootContextEnd == -1) {
+                    val = getVar(name);
                     if (val == null) {
                         val = cajuScript.getVar(name);
                     }
@@ -258,26 +289,29 @@ public class Value implements Cloneable {
                 }
                 if (func != null) {
                     scriptCommand = new ScriptCommand(script, ScriptCommand.Type.FUNCTION);
+                    scriptCommand.setArguments(arguments);
                     //script = script.substring(path.length());
                     Reflection.invokeFunctionValues(cajuScript, context, syntax, script, scriptCommand);
                     scriptCommand.setClassPath(path);
                 } else if (val != null) {
                     String _script = script;
-                    if (syntaxPathSeparator.getStart() == -1) {
+                    if (pathSeparatorStart == -1) {
                         _script = "";
                     }
                     scriptCommand = new ScriptCommand(_script, isRootContext ? ScriptCommand.Type.NATIVE_OBJECT_ROOT : ScriptCommand.Type.NATIVE_OBJECT);
+                    scriptCommand.setArguments(arguments);
                     scriptCommand.setVar(name);
                     scriptCommand.setValue(val);
                 } else {
                     scriptCommand = new ScriptCommand(script, ScriptCommand.Type.NATIVE_CLASS);
+                    scriptCommand.setArguments(arguments);
                 }
             } else {
-                if ((syntaxArrayParamBegin.getStart() > -1 && syntaxArrayParamBegin.getStart() < syntaxArrayParamEnd.getStart()) || syntaxArrayParamSeparator.getStart() > -1) {
-                    String path = syntaxArrayParamBegin.getStart() > -1 ? script.substring(0, syntaxArrayParamBegin.getStart()) : script;
+                if ((arrayParamBeginStart > -1 && arrayParamBeginStart < arrayParamEndStart) || syntax.matcherStart(script, syntax.getArrayCallParametersSeparator()) > -1) {
+                    String path = arrayParamBeginStart > -1 ? script.substring(0, arrayParamBeginStart) : script;
                     Value val = null;
-                    if (syntaxRootContext.getStart() != 0) {
-                        val = context.getVar(path);
+                    if (rootContextEnd == -1) {
+                        val = getVar(path);
                         if (val == null) {
                             val = cajuScript.getVar(path);
                         }
@@ -287,14 +321,17 @@ public class Value implements Cloneable {
                     }
                     path = path.trim();
                     scriptCommand = new ScriptCommand(script, ScriptCommand.Type.ARRAY);
+                    scriptCommand.setArguments(arguments);
                     Reflection.invokeArrayValues(cajuScript, context, syntax, script, scriptCommand);
                     scriptCommand.setValue(val);
                 } else {
                     varMode = true;
-                    if (syntaxRootContext.getStart() == 0) {
-                        scriptCommand = new ScriptCommand(script.substring(syntaxRootContext.getEnd()), ScriptCommand.Type.VARIABLE_ROOT);
+                    if (rootContextEnd > -1) {
+                        scriptCommand = new ScriptCommand(script.substring(rootContextEnd), ScriptCommand.Type.VARIABLE_ROOT);
+                        scriptCommand.setArguments(arguments);
                     } else {
                         scriptCommand = new ScriptCommand(script, ScriptCommand.Type.VARIABLE);
+                        scriptCommand.setArguments(arguments);
                     }
                 }
             }
@@ -317,12 +354,14 @@ public class Value implements Cloneable {
                     value = Reflection.invokeNative(cajuScript, context, syntax, scriptCommand.getValue().getValue(), scriptCommand.getScript(), scriptCommand);
                     break;
                 case NATIVE_OBJECT:
-                    scriptCommand.setValue(context.getVar(scriptCommand.getVar()));
+                    scriptCommand.setValue(scriptCommand.getVarValue(context));
                     String _script = scriptCommand.getScript();
                     if (scriptCommand.getFinalScript().length() == 0) {
                         if (scriptCommand.getValue() != null) {
-                            SyntaxPosition syntaxPathSeparator = syntax.matcherPosition(_script, syntax.getFunctionCallPathSeparator());
-                            _script = _script.substring(syntaxPathSeparator.getEnd());
+                            SyntaxMatcher pathSeparator = syntax.matcher(_script, syntax.getFunctionCallPathSeparator());
+                            pathSeparator.find();
+                            _script = _script.substring(pathSeparator.getEnd());
+                            pathSeparator.release();
                             scriptCommand.setFinalScript(_script);
                         }
                     } else {
@@ -334,8 +373,8 @@ public class Value implements Cloneable {
                     value = Reflection.invokeNative(cajuScript, context, syntax, null, scriptCommand.getScript(), scriptCommand);
                     break;
                 case FUNCTION:
-                    Context funcContext = new Context();
                     Function func = cajuScript.getFunc(scriptCommand.getClassPath());
+                    Context funcContext = func.createContext(cajuScript);
                     Reflection.invokeValues(cajuScript, context, syntax, script, scriptCommand, null, null, null);
                     value = func.invoke(cajuScript, funcContext, syntax, Reflection.invokeValues(cajuScript, context, syntax, null, scriptCommand, null, null, null)).getValue();
                     break;
@@ -350,9 +389,8 @@ public class Value implements Cloneable {
         }
         if (varMode) {
             if (v == null) {
-                SyntaxPosition syntaxParamBegin = syntax.matcherPosition(script, syntax.getFunctionCallParametersBegin());
-                SyntaxPosition syntaxParamEnd = syntax.matcherPosition(script, syntax.getFunctionCallParametersEnd());
-                if (script.indexOf(' ') > -1 || syntaxParamBegin.getStart() > -1 || syntaxParamEnd.getStart() > -1) {
+                if (script.indexOf(' ') > -1 || syntax.matcherStart(script, syntax.getFunctionCallParametersBegin()) > -1
+                        || syntax.matcherStart(script, syntax.getFunctionCallParametersEnd()) > -1) {
                     throw CajuScriptException.create(cajuScript, context, "Syntax error");
                 }
                 throw CajuScriptException.create(cajuScript, context, script.concat(" is not defined"));
@@ -362,11 +400,120 @@ public class Value implements Cloneable {
         setValue(value);
     }
     
+    /**
+     * Set command split by the parse, that is executed without match the
+     * syntax.
+     * @param commandPath Command path.
+     * @throws org.cajuscript.CajuScriptException Errors executing the command.
+     */
+    public void setCommand(CommandPath commandPath) throws CajuScriptException {
+        writable();
+        _isCommand = true;
+        script = commandPath.getScript();
+        command = script;
+        if (commandPath.getType() == CommandPath.Type.VARIABLE) {
+            String name = commandPath.getNames()[0];
+            Value v = commandPath.isRootContext() ? cajuScript.getVar(name) : getVar(name);
+            if (v == null && !commandPath.isRootContext()) {
+                v = cajuScript.getVar(name);
+            }
+            if (v == null) {
+                throw CajuScriptException.create(cajuScript, context, script.concat(" is not defined"));
+            }
+            copyValue(v);
+            return;
+        }
+        if (scriptCommand == null || scriptCommand.getCommandPath() != commandPath) {
+            scriptCommand = new ScriptCommand(commandPath);
+            scriptCommand.setArguments(arguments);
+        }
+        setValue(Reflection.invokePath(cajuScript, context, syntax, scriptCommand));
+    }
+
+    /**
+     * Set command path of a call, starting by the method cached by others
+     * executions of the same command, and execute it.
+     * @param commandPath Command path.
+     * @param method Method cached, or null.
+     * @return Method invoked, or null if the command not invoked a method.
+     * @throws CajuScriptException Errors ocurred on command execution.
+     */
+    public Method setCommand(CommandPath commandPath, Method method) throws CajuScriptException {
+        writable();
+        if (scriptCommand == null || scriptCommand.getCommandPath() != commandPath) {
+            scriptCommand = new ScriptCommand(commandPath);
+            scriptCommand.setArguments(arguments);
+        }
+        if (scriptCommand.getMethod() == null) {
+            scriptCommand.setMethod(method);
+        }
+        setCommand(commandPath);
+        return scriptCommand.getMethod();
+    }
+
+    /**
+     * Get values of the arguments given directly by the command.
+     * @return Values of the arguments.
+     */
+    public Value[] getArguments() {
+        return arguments;
+    }
+    
+    /**
+     * Set value of an argument given directly by the command, inside of the
+     * command the argument is referenced by the name of arguments followed
+     * by the index.
+     * @param index Index of the argument.
+     * @param value Value of the argument.
+     */
+    public void setArgument(int index, Value value) {
+        writable();
+        if (arguments == null || arguments.length <= index) {
+            Value[] _arguments = new Value[index + 1];
+            if (arguments != null) {
+                System.arraycopy(arguments, 0, _arguments, 0, arguments.length);
+            }
+            arguments = _arguments;
+            if (scriptCommand != null) {
+                scriptCommand.setArguments(arguments);
+            }
+        }
+        arguments[index] = value;
+    }
+    
+    private Value getVar(String name) throws CajuScriptException {
+        int index = ScriptCommand.argumentIndex(name);
+        if (index > -1 && arguments != null) {
+            return arguments[index];
+        }
+        return context.getVar(name);
+    }
+    
     /**
      * Get value in string.
      * @return String value.
      */
     public String getStringValue() {
+        if (valueString == null) {
+            if (type == Type.STRING) {
+                valueString = valueBuilder.toString();
+                value = valueString;
+                return valueString;
+            }
+            switch (typeNumber) {
+                case INTEGER:
+                    valueString = Integer.toString(valueNumberInteger);
+                    break;
+                case FLOAT:
+                    valueString = Float.toString(valueNumberFloat);
+                    break;
+                case LONG:
+                    valueString = Long.toString(valueNumberLong);
+                    break;
+                default:
+                    valueString = Double.toString(valueNumberDouble);
+            }
+        }
         return valueString;
     }
     
@@ -442,19 +589,90 @@ public class Value implements Cloneable {
      * @return Value.
      */
     public Object getValue() {
+        if (value == null && type == Type.NUMBER) {
+            if (typeNumber == TypeNumber.INTEGER) {
+                value = Integer.valueOf(valueNumberInteger);
+            } else {
+                value = Long.valueOf(valueNumberLong);
+            }
+        } else if (value == null && type == Type.STRING) {
+            getStringValue();
+        }
         return value;
     }
+
+    /**
+     * Append a text to the string value. The text is kept in a builder and
+     * the string is created only if is requested, then repeated appends to
+     * the same value not copy all the string each time.
+     * @param s Text.
+     * @return If was appended, false if the value is not a string.
+     */
+    public boolean appendValue(String s) {
+        writable();
+        if (type != Type.STRING) {
+            return false;
+        }
+        if (valueBuilder == null) {
+            String current = getStringValue();
+            valueBuilder = new StringBuilder(current.length() + s.length() + 16).append(current);
+        }
+        valueBuilder.append(s);
+        value = null;
+        valueString = null;
+        return true;
+    }
+
+    /**
+     * Define an integer value, the object of the value and the string are
+     * created only if are requested.
+     * @param value Integer.
+     */
+    public void setNumberValue(int value) {
+        writable();
+        this.value = null;
+        valueBuilder = null;
+        valueNumberInteger = value;
+        valueNumberLong = (long)value;
+        valueNumberFloat = (float)value;
+        valueNumberDouble = (double)value;
+        valueString = null;
+        type = Type.NUMBER;
+        typeNumber = TypeNumber.INTEGER;
+        classType = Integer.class;
+    }
+
+    /**
+     * Define a long value, the object of the value and the string are
+     * created only if are requested.
+     * @param value Long.
+     */
+    public void setNumberValue(long value) {
+        writable();
+        this.value = null;
+        valueBuilder = null;
+        valueNumberInteger = 0;
+        valueNumberLong = value;
+        valueNumberFloat = 0;
+        valueNumberDouble = (double)value;
+        valueString = null;
+        type = Type.NUMBER;
+        typeNumber = TypeNumber.LONG;
+        classType = Long.class;
+    }
     
     /**
      * Define the value.
      * @param value Objet to be the value.
      */
     public void setValue(Object value) throws CajuScriptException {
+        writable();
         valueNumberInteger = 0;
         valueNumberLong = 0;
         valueNumberFloat = 0;
         valueNumberDouble = 0;
         valueString = "";
+        valueBuilder = null;
         type = Type.NULL;
         typeNumber = null;
         this.value = value;
@@ -476,7 +694,7 @@ public class Value implements Cloneable {
             valueNumberLong = (long)valueNumberInteger;
             valueNumberFloat = (float)valueNumberInteger;
             valueNumberDouble = (double)valueNumberInteger;
-            valueString = Integer.toString(valueNumberInteger);
+            valueString = null;
             type = Type.NUMBER;
             typeNumber = TypeNumber.INTEGER;
             classType = Integer.class;
@@ -484,7 +702,7 @@ public class Value implements Cloneable {
         } else if (value instanceof Float) {
             valueNumberFloat = ((Float)value).floatValue();
             valueNumberDouble = (double)valueNumberFloat;
-            valueString = Float.toString(valueNumberFloat);
+            valueString = null;
             type = Type.NUMBER;
             typeNumber = TypeNumber.FLOAT;
             classType = Float.class;
@@ -492,14 +710,14 @@ public class Value implements Cloneable {
         } else if (value instanceof Long) {
             valueNumberLong = ((Long)value).longValue();
             valueNumberDouble = (double)valueNumberLong;
-            valueString = Long.toString(valueNumberLong);
+            valueString = null;
             type = Type.NUMBER;
             typeNumber = TypeNumber.LONG;
             classType = Long.class;
             return;
         } else if (value instanceof Double) {
             valueNumberDouble = (float)((Double)value).doubleValue();
-            valueString = Double.toString(valueNumberDouble);
+            valueString = null;
             type = Type.NUMBER;
             typeNumber = TypeNumber.DOUBLE;
             classType = Double.class;
@@ -519,6 +737,55 @@ public class Value implements Cloneable {
         valueNumberDouble = 0;
     }
     
+    /**
+     * Define the value of other value, numbers and strings are copied
+     * without check the type of the object again.
+     * @param v Value.
+     * @throws CajuScriptException Errors ocurred on definition.
+     */
+    public void copyValue(Value v) throws CajuScriptException {
+        writable();
+        if (v == this) {
+            return;
+        }
+        valueBuilder = null;
+        if (v.type == Type.NUMBER) {
+            value = v.value;
+            valueNumberInteger = v.valueNumberInteger;
+            valueNumberLong = v.valueNumberLong;
+            valueNumberFloat = v.valueNumberFloat;
+            valueNumberDouble = v.valueNumberDouble;
+            valueString = v.valueString;
+            type = Type.NUMBER;
+            typeNumber = v.typeNumber;
+            switch (typeNumber) {
+                case INTEGER:
+                    classType = Integer.class;
+                    break;
+                case FLOAT:
+                    classType = Float.class;
+                    break;
+                case LONG:
+                    classType = Long.class;
+                    break;
+                default:
+                    classType = Double.class;
+            }
+        } else if (v.type == Type.STRING && v.value instanceof String) {
+            value = v.value;
+            valueNumberInteger = 0;
+            valueNumberLong = 0;
+            valueNumberFloat = 0;
+            valueNumberDouble = 0;
+            valueString = (String) v.value;
+            type = Type.STRING;
+            typeNumber = null;
+            classType = String.class;
+        } else {
+            setValue(v.getValue());
+        }
+    }
+
     /**
      * Get the type internal of value.
      * Types: Type.NULL = 0, Type.NUMBER = 1, Type.STRING = 2, Type.OBJECT = 3.
@@ -550,6 +817,7 @@ public class Value implements Cloneable {
      * @param classType Class type.
      */
     public void setClassType(Class classType) {
+        writable();
         this.classType = classType;
     }
 
@@ -559,6 +827,7 @@ public class Value implements Cloneable {
      * @throws CajuScriptException Exception if the class not found.
      */
     public void setClassType(String path) throws CajuScriptException {
+        writable();
         if (path.length() != 0) {
             Class c = cajuScript.getContext().findClass(path);
             if (c == null) {
@@ -568,6 +837,28 @@ public class Value implements Cloneable {
         }
     }
 
+    /**
+     * If the value is read only, like the values of the constants that are
+     * shared by all executions.
+     * @return Is read only.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Turn the value read only, after any change throws an exception.
+     */
+    public void setReadOnly() {
+        readOnly = true;
+    }
+
+    private void writable() {
+        if (readOnly) {
+            throw new IllegalStateException("Value is read only.");
+        }
+    }
+
     /**
      * Get flag definition.
      * @return Information.
@@ -581,6 +872,7 @@ public class Value implements Cloneable {
      * @param flag Information.
      */
     public void setFlag(String flag) {
+        writable();
         this.flag = flag;
     }
     
@@ -590,71 +882,113 @@ public class Value implements Cloneable {
      */
     @Override
     public String toString() {
-        if (value == null) {
+        if (getValue() == null) {
             return "";
         }
-        return value.toString();
+        return getValue().toString();
     }
     
-    private void loadNumberValue(Object o, boolean loadValue) throws Exception {
+    private void loadNumberValue(Number o) {
         if (o instanceof Integer) {
             valueNumberInteger = ((Integer)o).intValue();
             valueNumberLong = (long)valueNumberInteger;
             valueNumberFloat = (float)valueNumberInteger;
             valueNumberDouble = (double)valueNumberInteger;
-            valueString = Integer.toString(valueNumberInteger);
+            valueString = null;
             type = Type.NUMBER;
             typeNumber = TypeNumber.INTEGER;
             return;
         } else if (o instanceof Float) {
             valueNumberFloat = ((Float)o).floatValue();
             valueNumberDouble = (double)valueNumberFloat;
-            valueString = Float.toString(valueNumberFloat);
+            valueString = null;
             type = Type.NUMBER;
             typeNumber = TypeNumber.FLOAT;
             return;
         } else if (o instanceof Long) {
             valueNumberLong = ((Long)o).longValue();
             valueNumberDouble = (double)valueNumberLong;
-            valueString = Long.toString(valueNumberLong);
+            valueString = null;
             type = Type.NUMBER;
             typeNumber = TypeNumber.LONG;
             return;
         } else if (o instanceof Double) {
             valueNumberDouble = (float)((Double)o).doubleValue();
-            valueString = Double.toString(valueNumberDouble);
+            valueString = null;
             type = Type.NUMBER;
             typeNumber = TypeNumber.DOUBLE;
             return;
         }
-        Double v = (Double)cajuScript.cast(o, "d");
-        double d = v.doubleValue();
+    }
+
+    /**
+     * Parse a number literal, without exceptions when the script is not a
+     * number. Integers are Integer or Long, or Double when out of the long
+     * range, decimals are Float when can be a positive float or else Double.
+     * @param script Script of the literal.
+     * @return Number, or null if the script is not a number.
+     */
+    public static Number parseNumber(String script) {
+        int length = script.length();
+        int i = 0;
+        if (length > 0 && (script.charAt(0) == '-' || script.charAt(0) == '+')) {
+            i++;
+        }
+        if (i == length) {
+            return null;
+        }
+        char c = script.charAt(i);
+        if (Character.isJavaIdentifierStart(c)) {
+            if (!script.startsWith("NaN", i) && !script.startsWith("Infinity", i)) {
+                return null;
+            }
+        } else if ((c < '0' || c > '9') && c != '.') {
+            return null;
+        }
+        long integer = 0;
+        int digits = 0;
+        for (; i < length && digits < 18; i++, digits++) {
+            c = script.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            integer = integer * 10 + (c - '0');
+        }
+        if (i == length && digits > 0) {
+            if (script.charAt(0) == '-') {
+                integer = -integer;
+            }
+            if (integer <= Integer.MAX_VALUE && integer >= Integer.MIN_VALUE) {
+                return Integer.valueOf((int)integer);
+            }
+            return Long.valueOf(integer);
+        }
+        while (i < length && script.charAt(i) >= '0' && script.charAt(i) <= '9') {
+            i++;
+        }
+        if (i == length && digits > 0) {
+            try {
+                return Long.valueOf(Long.parseLong(script));
+            } catch (NumberFormatException e) {
+                return Double.valueOf(Double.parseDouble(script));
+            }
+        }
+        double d = 0;
+        try {
+            d = Double.parseDouble(script);
+        } catch (NumberFormatException e) {
+            return null;
+        }
         if ((long)d == d) {
             if (d <= Integer.MAX_VALUE && d >= Integer.MIN_VALUE) {
-                if (loadValue) {
-                   value = Integer.valueOf((int)d);
-                }
-                loadNumberValue(Integer.valueOf((int)d), false);
-            } else {
-                if (loadValue) {
-                   value = Long.valueOf((long)d);
-                }
-                loadNumberValue(Long.valueOf((long)d), false);
+                return Integer.valueOf((int)d);
             }
-        } else {
-            if (Double.doubleToLongBits(d) >= Double.doubleToLongBits(Float.MIN_VALUE)
+            return Long.valueOf((long)d);
+        } else if (Double.doubleToLongBits(d) >= Double.doubleToLongBits(Float.MIN_VALUE)
                 && Double.doubleToLongBits(d) <= Double.doubleToLongBits(Float.MAX_VALUE)) {
-                if (loadValue) {
-                   value = Float.valueOf((float)d);
-                }
-                loadNumberValue(Float.valueOf((float)d), false);
-            } else {
-                if (loadValue) {
-                   value = Double.valueOf(v);
-                }
-                loadNumberValue(v, false);
-            }
+            return Float.valueOf((float)d);
         }
+        return Double.valueOf(d);
     }
     
     /**
@@ -664,7 +998,7 @@ public class Value implements Cloneable {
     @Override
     public Value clone() {
         Value v = new Value();
-        v.value = this.value;
+        v.value = this.getValue();
         v.valueNumberInteger = this.valueNumberInteger;
         v.valueNumberLong = this.valueNumberLong;
         v.valueNumberFloat = this.valueNumberFloat;
@@ -680,6 +1014,7 @@ public class Value implements Cloneable {
         v.syntax = this.syntax;
         v.flag = this.flag;
         v.scriptCommand = this.scriptCommand;
+        v.arguments = this.arguments;
         v.script = this.script;
         return v;
     }
@@ -0,0 +1,210 @@
+/*
+ * CommandPath.java
+ *
+ * This file is part of CajuScript.
+ *
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option)
+ * any later version.
+ *
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cajuscript.cmd;
+
+import org.cajuscript.Syntax;
+import org.cajuscript.SyntaxMatcher;
+
+/**
+ * Command split by the parse in the names of the path and the arguments of
+ * the parameters, then the execution not need to match the syntax again.
+ * <p>Is created only for commands like "name", "name.name" and
+ * "name.name(argument, argument)", where all parameters are arguments of
+ * the command. The others, like the array calls "name[index]", still are
+ * resolved by matching the syntax on each execution.</p>
+ * @author eduveks
+ */
+public class CommandPath implements java.io.Serializable {
+    /**
+     * Types of command paths.
+     */
+    public static enum Type {
+        VARIABLE, FIELD, CALL
+    }
+    private String script = "";
+    private String path = "";
+    private boolean rootContext = false;
+    private String[] names = null;
+    private int nameArgument = -1;
+    private int[] params = null;
+    private Type type = null;
+
+    /**
+     * Create new command path.
+     * @param script Script of the command.
+     * @param rootContext If the first name is of the root context.
+     * @param names Names of the path.
+     * @param params Indexes of the arguments used as parameters, or null if
+     *               the command is not a call.
+     */
+    public CommandPath(String script, boolean rootContext, String[] names, int[] params) {
+        this.script = script;
+        this.rootContext = rootContext;
+        this.names = names;
+        this.params = params;
+        StringBuilder _path = new StringBuilder(names[0]);
+        for (int i = 1; i < names.length; i++) {
+            _path.append('.').append(names[i]);
+        }
+        path = _path.toString();
+        nameArgument = ScriptCommand.argumentIndex(names[0]);
+        if (params != null) {
+            type = Type.CALL;
+        } else if (names.length == 1) {
+            type = Type.VARIABLE;
+        } else {
+            type = Type.FIELD;
+        }
+    }
+
+    /**
+     * Split the command.
+     * @param script Script of the command.
+     * @param syntax Syntax.
+     * @return Command path, or null if the command is not a simple path.
+     */
+    public static CommandPath create(String script, Syntax syntax) {
+        script = script.trim();
+        script = script.replace((CharSequence)" ", (CharSequence)"");
+        script = script.replace((CharSequence)"\t", (CharSequence)"");
+        if (script.length() == 0 || script.equalsIgnoreCase("true") || script.equalsIgnoreCase("false")
+                || syntax.matcherEquals(script, syntax.getNull())) {
+            return null;
+        }
+        String pathScript = script;
+        boolean root = false;
+        SyntaxMatcher matcher = syntax.matcher(pathScript, syntax.getRootContext());
+        if (matcher.lookingAt()) {
+            root = true;
+            pathScript = pathScript.substring(matcher.getEnd());
+        }
+        matcher.release();
+        int[] params = null;
+        matcher = syntax.matcher(pathScript, syntax.getFunctionCallParametersBegin());
+        boolean found = matcher.find();
+        int begin = matcher.getStart();
+        int end = matcher.getEnd();
+        matcher.release();
+        if (found) {
+            String paramsScript = pathScript.substring(end);
+            pathScript = pathScript.substring(0, begin);
+            if (syntax.matcherStart(paramsScript, syntax.getFunctionCallParametersBegin()) > -1) {
+                return null;
+            }
+            matcher = syntax.matcher(paramsScript, syntax.getFunctionCallParametersEnd());
+            found = matcher.find();
+            begin = matcher.getStart();
+            end = matcher.getEnd();
+            matcher.release();
+            if (!found || end != paramsScript.length()) {
+                return null;
+            }
+            paramsScript = paramsScript.substring(0, begin);
+            if (paramsScript.length() == 0) {
+                params = new int[0];
+            } else {
+                String[] paramsKeys = syntax.getFunctionCallParametersSeparator().split(paramsScript, -1);
+                params = new int[paramsKeys.length];
+                for (int i = 0; i < paramsKeys.length; i++) {
+                    params[i] = ScriptCommand.argumentIndex(paramsKeys[i]);
+                    if (params[i] == -1) {
+                        return null;
+                    }
+                }
+            }
+        }
+        String[] names = syntax.getFunctionCallPathSeparator().split(pathScript, -1);
+        for (String name : names) {
+            if (!isName(name)) {
+                return null;
+            }
+        }
+        return new CommandPath(script, root, names, params);
+    }
+
+    private static boolean isName(String name) {
+        if (name.length() == 0 || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the script of the command.
+     * @return Script.
+     */
+    public String getScript() {
+        return script;
+    }
+
+    /**
+     * Get the path, names joined by dots.
+     * @return Path.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * If the first name is of the root context.
+     * @return Is root context.
+     */
+    public boolean isRootContext() {
+        return rootContext;
+    }
+
+    /**
+     * Get the names of the path.
+     * @return Names.
+     */
+    public String[] getNames() {
+        return names;
+    }
+
+    /**
+     * Index of the argument referenced by the first name.
+     * @return Index of the argument or -1 if the first name is not an
+     *         argument.
+     */
+    public int getNameArgument() {
+        return nameArgument;
+    }
+
+    /**
+     * Get the indexes of the arguments used as parameters.
+     * @return Indexes of arguments, or null if the command is not a call.
+     */
+    public int[] getParams() {
+        return params;
+    }
+
+    /**
+     * Get the type of the command path.
+     * @return Type.
+     */
+    public Type getType() {
+        return type;
+    }
+}
@@ -20,6 +20,7 @@
 package org.cajuscript.cmd;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.regex.Pattern;
@@ -29,6 +30,7 @@ import org.cajuscript.Context;
 import org.cajuscript.Syntax;
 import org.cajuscript.SyntaxPosition;
 import org.cajuscript.Value;
+import org.cajuscript.parser.Function;
 
 /**
  * Java invoke with reflection.
@@ -102,7 +104,7 @@ public class Reflection {
                         c = cajuScript.getContext().findClass(path);
                         if (c == null) {
                             boolean isRootContext = false;
-                            Value _value = context.getVar(path);
+                            Value _value = scriptCommand.getVarValue(context, path);
                             if (_value == null) {
                                 isRootContext = true;
                                 _value = cajuScript.getVar(path);
@@ -131,7 +133,9 @@ public class Reflection {
                 }
                 if (cName.length() != 0 && value == null) {
                     Object[] values = invokeFunctionValues(cajuScript, context, syntax, scriptPart.substring(cName.length()), scriptCommand);
-                    return invokeConstructor(cajuScript, c, values, script, scriptCommand);
+                    Object o = invokeConstructor(cajuScript, c, values, script, scriptCommand);
+                    scriptCommand.setType(ScriptCommand.Type.NATIVE_OBJECT);
+                    return o;
                 } else if (cName.length() != 0 && value != null) {
                     Object[] values = invokeFunctionValues(cajuScript, context, syntax, script, scriptCommand);
                     return invokeMethod(cajuScript, c, value, cName, values, script, scriptCommand);
@@ -159,6 +163,7 @@ public class Reflection {
                         if (value != null) {
                             scriptCommand.setParamName(paramName);
                             ScriptCommand sc = new ScriptCommand(script, ScriptCommand.Type.NATIVE_OBJECT);
+                            sc.setArguments(scriptCommand.getArguments());
                             sc.setVar(scriptCommand.getVar());
                             Object oParam = c.getField(paramName).get(value);
                             if (oParam != null) {
@@ -181,6 +186,7 @@ public class Reflection {
                             } catch (Exception e) {
                                 scriptCommand.setParamName(paramName);
                                 ScriptCommand sc = new ScriptCommand(script, ScriptCommand.Type.NATIVE_OBJECT);
+                                sc.setArguments(scriptCommand.getArguments());
                                 Object oParam = c.getField(paramName).get(c);
                                 if (oParam != null) {
                                     sc.setClassReference(oParam.getClass());
@@ -224,6 +230,162 @@ public class Reflection {
         }
     }
 
+    /**
+     * Invoke a command path. The function, variable or class invoked by the
+     * path is found on the first invocation, next invocations use directly
+     * the names and arguments split by the parse. The binding is checked
+     * on each invocation, then a function or variable defined after with
+     * the same name takes the place of a variable or class.
+     * @param cajuScript CajuScript instance
+     * @param context Context
+     * @param syntax Syntax
+     * @param scriptCommand ScriptCommand instance of the command path, to
+     *                      save the procedure in cache
+     * @return Object returned by invokation
+     * @throws org.cajuscript.CajuScriptException Invocation exceptions
+     */
+    public static Object invokePath(CajuScript cajuScript, Context context, Syntax syntax, ScriptCommand scriptCommand) throws CajuScriptException {
+        CommandPath commandPath = scriptCommand.getCommandPath();
+        try {
+            if (scriptCommand.getType() == null || !isBound(cajuScript, context, scriptCommand)) {
+                bindPath(cajuScript, context, scriptCommand);
+            }
+            Object o = null;
+            Class<?> c = null;
+            boolean isStatic = false;
+            switch (scriptCommand.getType()) {
+                case FUNCTION:
+                    Function func = cajuScript.getFunc(commandPath.getPath());
+                    return func.invoke(cajuScript, func.createContext(cajuScript), syntax, pathValues(scriptCommand)).getValue();
+                case NATIVE_CLASS:
+                    c = scriptCommand.getClassReference();
+                    isStatic = true;
+                    break;
+                default:
+                    Value v = pathVariable(cajuScript, context, scriptCommand);
+                    if (v == null) {
+                        scriptCommand.setType(null);
+                        return invokePath(cajuScript, context, syntax, scriptCommand);
+                    }
+                    o = v.getValue();
+                    c = o == null ? null : o.getClass();
+                    break;
+            }
+            String[] names = commandPath.getNames();
+            boolean isCall = commandPath.getParams() != null;
+            int i = scriptCommand.getPathIndex();
+            if (i == names.length) {
+                if (isStatic && isCall) {
+                    return invokeConstructor(cajuScript, c, pathValues(scriptCommand), null, scriptCommand);
+                }
+                return isStatic ? c : o;
+            }
+            for (; i < names.length; i++) {
+                if (c == null) {
+                    throw new Exception("Cannot invoke ".concat(commandPath.getScript()));
+                }
+                if (isCall && i == names.length - 1) {
+                    if (scriptCommand.getMethod() != null && !scriptCommand.getMethod().getDeclaringClass().isAssignableFrom(c)) {
+                        scriptCommand.setMethod(null);
+                    }
+                    return invokeMethod(cajuScript, c, o, names[i], pathValues(scriptCommand), null, scriptCommand);
+                }
+                if (isStatic && names[i].equals("class")) {
+                    o = c;
+                } else {
+                    Field field = scriptCommand.getField(i);
+                    if (field == null || !field.getDeclaringClass().isAssignableFrom(c)) {
+                        field = c.getField(names[i]);
+                        scriptCommand.setField(i, field);
+                    }
+                    o = field.get(o);
+                }
+                c = o == null ? null : o.getClass();
+                isStatic = false;
+            }
+            return o;
+        } catch (CajuScriptException e) {
+            throw e;
+        } catch (Exception e) {
+            throw CajuScriptException.create(cajuScript, context, e.getMessage(), e);
+        }
+    }
+
+    private static boolean isBound(CajuScript cajuScript, Context context, ScriptCommand scriptCommand) throws CajuScriptException {
+        CommandPath commandPath = scriptCommand.getCommandPath();
+        boolean isFunc = commandPath.getParams() != null && cajuScript.getFunc(commandPath.getPath()) != null;
+        switch (scriptCommand.getType()) {
+            case FUNCTION:
+                return isFunc;
+            case NATIVE_CLASS:
+                return !isFunc && pathVariable(cajuScript, context, scriptCommand) == null;
+            default:
+                return !isFunc;
+        }
+    }
+
+    private static void bindPath(CajuScript cajuScript, Context context, ScriptCommand scriptCommand) throws Exception {
+        CommandPath commandPath = scriptCommand.getCommandPath();
+        String[] names = commandPath.getNames();
+        boolean isCall = commandPath.getParams() != null;
+        if (isCall && cajuScript.getFunc(commandPath.getPath()) != null) {
+            scriptCommand.setType(ScriptCommand.Type.FUNCTION);
+            return;
+        }
+        if (pathVariable(cajuScript, context, scriptCommand) != null) {
+            scriptCommand.setType(commandPath.isRootContext() ? ScriptCommand.Type.NATIVE_OBJECT_ROOT : ScriptCommand.Type.NATIVE_OBJECT);
+            scriptCommand.setPathIndex(1);
+            return;
+        }
+        String path = "";
+        for (int i = 0; i < names.length; i++) {
+            path = i == 0 ? names[i] : path.concat(".").concat(names[i]);
+            Class<?> c = cajuScript.getContext().findClass(path);
+            if (c == null) {
+                continue;
+            }
+            for (i++; i < names.length && (!isCall || i < names.length - 1); i++) {
+                try {
+                    c = Class.forName(c.getName().concat("$").concat(names[i]));
+                } catch (ClassNotFoundException e) {
+                    break;
+                }
+            }
+            scriptCommand.setType(ScriptCommand.Type.NATIVE_CLASS);
+            scriptCommand.setClassPath(c.getName());
+            scriptCommand.setClassReference(c);
+            scriptCommand.setPathIndex(i);
+            return;
+        }
+        throw new ClassNotFoundException(commandPath.getPath());
+    }
+
+    private static Value pathVariable(CajuScript cajuScript, Context context, ScriptCommand scriptCommand) throws CajuScriptException {
+        CommandPath commandPath = scriptCommand.getCommandPath();
+        String name = commandPath.getNames()[0];
+        if (commandPath.isRootContext()) {
+            return cajuScript.getVar(name);
+        }
+        if (commandPath.getNameArgument() > -1 && scriptCommand.getArguments() != null) {
+            return scriptCommand.getArguments()[commandPath.getNameArgument()];
+        }
+        Value v = context.getVar(name);
+        if (v == null) {
+            v = cajuScript.getVar(name);
+        }
+        return v;
+    }
+
+    private static Object[] pathValues(ScriptCommand scriptCommand) {
+        int[] params = scriptCommand.getCommandPath().getParams();
+        Value[] arguments = scriptCommand.getArguments();
+        Object[] values = new Object[params.length];
+        for (int x = 0; x < params.length; x++) {
+            values[x] = arguments[params[x]].getValue();
+        }
+        return values;
+    }
+
     private static boolean foundMethod(CajuScript cajuScript, Object[] values, Class<?>[] cx, boolean allowAutoPrimitiveCast, ScriptCommand scriptCommand) {
         int count = 0;
         for (int x = 0; x < values.length; x++) {
@@ -260,6 +422,7 @@ public class Reflection {
                 return scriptCommand.getConstructor().newInstance(getParams(cajuScript, values, scriptCommand.getConstructor().getParameterTypes(), scriptCommand));
             } catch (ClassCastException e) { }
         }
+        CajuScript.getMetrics().reflectionMiss();
         Constructor<?>[] cn = c.getDeclaredConstructors();
         boolean allowAutoPrimitiveCast = true;
         for (int i = 0; i < cn.length; i++) {
@@ -280,7 +443,6 @@ public class Reflection {
             }
             if (foundMethod(cajuScript, values, cx, allowAutoPrimitiveCast, scriptCommand)) {
                 scriptCommand.setConstructor(cn[x]);
-                scriptCommand.setType(ScriptCommand.Type.NATIVE_OBJECT);
                 return cn[x].newInstance(getParams(cajuScript, values, cx, scriptCommand));
             }
         }
@@ -297,6 +459,7 @@ public class Reflection {
         if (name == null) {
             name = scriptCommand.getMethod().getName();
         }
+        CajuScript.getMetrics().reflectionMiss();
         Class<?>[] classes = null;
         if (c.isMemberClass()) {
             Class<?>[] interfaces = c.getInterfaces();
@@ -379,7 +542,7 @@ public class Reflection {
             String[] paramsVal = scriptCommand.getParams();
             Object[] values = new Object[paramsVal.length];
             for (int x = 0; x < paramsVal.length; x++) {
-                values[x] = context.getVar(paramsVal[x]).getValue();
+                values[x] = scriptCommand.getParamValue(context, x).getValue();
             }
             return values;
         }
@@ -399,7 +562,7 @@ public class Reflection {
                 paramsKeys[x] = paramsKeys[x].substring(syntaxRootContext.getEnd());
                 values[x] = cajuScript.getVar(paramsKeys[x]);
             } else {
-                values[x] = context.getVar(paramsKeys[x]);
+                values[x] = scriptCommand.getVarValue(context, paramsKeys[x]);
                 if (values[x] == null) {
                     values[x] = cajuScript.getVar(paramsKeys[x]);
                 }
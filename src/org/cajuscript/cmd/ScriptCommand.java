@@ -20,7 +20,11 @@
 package org.cajuscript.cmd;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import org.cajuscript.CajuScript;
+import org.cajuscript.CajuScriptException;
+import org.cajuscript.Context;
 import org.cajuscript.Value;
 
 /**
@@ -38,17 +42,23 @@ public class ScriptCommand {
     private String finalScript = "";
     private Type type = null;
     private String[] params = null;
+    private int[] paramsArguments = null;
     private Object[] paramsValues = null;
     private Object[] paramsFinal = null;
     private String function = "";
     private String classPath = "";
     private String var = "";
+    private int varArgument = -1;
+    private Value[] arguments = null;
     private String paramName = "";
     private Class<?> classReference = null;
     private Value value = null;
     private Constructor<?> constructor = null;
     private Method method = null;
     private ScriptCommand nextScriptCommand = null;
+    private CommandPath commandPath = null;
+    private int pathIndex = 0;
+    private Field[] fields = null;
 
     /**
      * Create new script command with an script and type.
@@ -60,6 +70,63 @@ public class ScriptCommand {
         this.type = type;
     }
 
+    /**
+     * Create new script command of a command path, the type is defined on
+     * the first invocation.
+     * @param commandPath Command path.
+     */
+    public ScriptCommand(CommandPath commandPath) {
+        this.script = commandPath.getScript();
+        this.commandPath = commandPath;
+        this.fields = new Field[commandPath.getNames().length];
+    }
+
+    /**
+     * Get the command path.
+     * @return Command path, or null if the command was not split by the
+     *         parse.
+     */
+    public CommandPath getCommandPath() {
+        return commandPath;
+    }
+
+    /**
+     * Get index of the first name of the command path used after the
+     * variable or class invoked.
+     * @return Index.
+     */
+    public int getPathIndex() {
+        return pathIndex;
+    }
+
+    /**
+     * Set index of the first name of the command path used after the
+     * variable or class invoked.
+     * @param pathIndex Index.
+     */
+    public void setPathIndex(int pathIndex) {
+        this.pathIndex = pathIndex;
+    }
+
+    /**
+     * Get the field of a name of the command path, cached by the last
+     * invocation.
+     * @param index Index of the name.
+     * @return Field.
+     */
+    public Field getField(int index) {
+        return fields[index];
+    }
+
+    /**
+     * Set the field of a name of the command path.
+     * @param index Index of the name.
+     * @param field Field.
+     */
+    public void setField(int index, Field field) {
+        fields[index] = field;
+    }
+
     /**
      * Get the script.
      * @return Script.
@@ -115,7 +182,7 @@ public class ScriptCommand {
      */
     public void setFunction(String function, String[] params) {
         this.function = function;
-        this.params = params;
+        setParams(params);
     }
 
     /**
@@ -127,7 +194,7 @@ public class ScriptCommand {
     public void setStatic(String classPath, Method method, String[] params) {
         this.classPath = classPath;
         this.method = method;
-        this.params = params;
+        setParams(params);
     }
 
     /**
@@ -137,7 +204,7 @@ public class ScriptCommand {
      */
     public void setMethod(Method method, String[] params) {
         this.method = method;
-        this.params = params;
+        setParams(params);
     }
 
     /**
@@ -149,7 +216,7 @@ public class ScriptCommand {
     public void setNewInstance(String classPath, Constructor<?> constructor, String[] params) {
         this.classPath = classPath;
         this.constructor = constructor;
-        this.params = params;
+        setParams(params);
     }
 
     /**
@@ -230,6 +297,27 @@ public class ScriptCommand {
      */
     public void setParams(String[] params) {
         this.params = params;
+        if (params != null) {
+            paramsArguments = new int[params.length];
+            for (int x = 0; x < params.length; x++) {
+                paramsArguments[x] = argumentIndex(params[x]);
+            }
+        }
+    }
+
+    /**
+     * Get the value of a parameter, from the arguments when the parameter
+     * is an argument or else from the variables of the context.
+     * @param context Context.
+     * @param index Index of the parameter.
+     * @return Value of the parameter.
+     * @throws CajuScriptException Errors getting the variable.
+     */
+    public Value getParamValue(Context context, int index) throws CajuScriptException {
+        if (paramsArguments[index] > -1 && arguments != null) {
+            return arguments[paramsArguments[index]];
+        }
+        return context.getVar(params[index]);
     }
 
     /**
@@ -326,6 +414,69 @@ public class ScriptCommand {
      */
     public void setVar(String var) {
         this.var = var;
+        varArgument = argumentIndex(var);
+    }
+
+    /**
+     * Get the value of the variable, from the arguments when the variable
+     * is an argument or else from the variables of the context.
+     * @param context Context.
+     * @return Value of the variable.
+     * @throws CajuScriptException Errors getting the variable.
+     */
+    public Value getVarValue(Context context) throws CajuScriptException {
+        if (varArgument > -1 && arguments != null) {
+            return arguments[varArgument];
+        }
+        return context.getVar(var);
+    }
+
+    /**
+     * Get the value of a variable, from the arguments when the name is of
+     * an argument or else from the variables of the context.
+     * @param context Context.
+     * @param name Variable name.
+     * @return Value of the variable.
+     * @throws CajuScriptException Errors getting the variable.
+     */
+    public Value getVarValue(Context context, String name) throws CajuScriptException {
+        int index = argumentIndex(name);
+        if (index > -1 && arguments != null) {
+            return arguments[index];
+        }
+        return context.getVar(name);
+    }
+
+    /**
+     * Get values of the arguments, given directly by the command.
+     * @return Values of the arguments.
+     */
+    public Value[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Set values of the arguments, given directly by the command.
+     * @param arguments Values of the arguments.
+     */
+    public void setArguments(Value[] arguments) {
+        this.arguments = arguments;
+    }
+
+    /**
+     * Index of the argument referenced by the name.
+     * @param name Name.
+     * @return Index of the argument or -1 if the name is not of an argument.
+     */
+    public static int argumentIndex(String name) {
+        if (name == null || !name.startsWith(CajuScript.CAJU_VARS_ARGUMENT)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(CajuScript.CAJU_VARS_ARGUMENT.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 
     /**
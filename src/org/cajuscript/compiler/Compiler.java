@@ -26,6 +26,7 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import org.apache.bcel.Constants;
@@ -41,14 +42,19 @@ import org.apache.bcel.generic.ATHROW;
 import org.apache.bcel.generic.ArrayType;
 import org.apache.bcel.generic.BranchHandle;
 import org.apache.bcel.generic.DUP;
+import org.apache.bcel.generic.FieldGen;
 import org.apache.bcel.generic.GOTO;
 import org.apache.bcel.generic.ICONST;
 import org.apache.bcel.generic.IFEQ;
 import org.apache.bcel.generic.IFNE;
+import org.apache.bcel.generic.IFNONNULL;
+import org.apache.bcel.generic.IFNULL;
+import org.apache.bcel.generic.IF_ACMPNE;
 import org.apache.bcel.generic.IF_ICMPGE;
 import org.apache.bcel.generic.IINC;
 import org.apache.bcel.generic.ILOAD;
 import org.apache.bcel.generic.ISTORE;
+import org.apache.bcel.generic.Instruction;
 import org.apache.bcel.generic.InstructionConstants;
 import org.apache.bcel.generic.InstructionFactory;
 import org.apache.bcel.generic.InstructionHandle;
@@ -56,6 +62,7 @@ import org.apache.bcel.generic.InstructionList;
 import org.apache.bcel.generic.LocalVariableGen;
 import org.apache.bcel.generic.MethodGen;
 import org.apache.bcel.generic.ObjectType;
+import org.apache.bcel.generic.POP;
 import org.apache.bcel.generic.PUSH;
 import org.apache.bcel.generic.Type;
 import org.cajuscript.CajuScript;
@@ -63,9 +70,11 @@ import org.cajuscript.CajuScriptException;
 import org.cajuscript.Context;
 import org.cajuscript.Syntax;
 import org.cajuscript.Value;
+import org.cajuscript.cmd.CommandPath;
 import org.cajuscript.parser.Base;
 import org.cajuscript.parser.Break;
 import org.cajuscript.parser.Command;
+import org.cajuscript.parser.Constant;
 import org.cajuscript.parser.Continue;
 import org.cajuscript.parser.Element;
 import org.cajuscript.parser.Function;
@@ -94,8 +103,15 @@ public class Compiler {
     private File classFile = null;
     private CajuScript caju = null;
     private long varCount = 1;
+    private long appendCount = 1;
+    private long gotoCount = 1;
     private Map<String, Integer> valuesIndexes = new HashMap<String, Integer>();
+    private long commandsPathsCount = 1;
+    private boolean functionBody = false;
+    private InstructionHandle functionStart = null;
     private LineDetail lastLiteDetail = null;
+    private int lineNumberIndex = 0;
+    private int lineContentIndex = 0;
 
     /**
      * Compiler an script.
@@ -132,17 +148,40 @@ public class Compiler {
                 loadClass(context);
             }
             return ((org.cajuscript.compiler.Executable) classes.get(path).newInstance()).execute(caju, context, syntax);
+        } catch (CajuScriptException e) {
+            throw e;
         } catch (Exception e) {
             throw CajuScriptException.create(caju, context, e.getMessage(), e);
         }
     }
 
+    /**
+     * Locate the line of the script where an error was thrown by a compiled
+     * class.
+     * <p>Compiled classes not define the running line, each method keeps the
+     * number and the content of the running line in local variables and
+     * define it here only when an error is caught or thrown.</p>
+     * @param error Error thrown
+     * @param caju CajuScript instance
+     * @param context Context
+     * @param number Number of the running line
+     * @param content Content of the running line
+     * @return The same error
+     */
+    public static Throwable located(Throwable error, CajuScript caju, Context context, int number, String content) {
+        if (content == null) {
+            return error;
+        }
+        return caju.located(error, context, new LineDetail(number, content));
+    }
+
     private void loadClass(Context context) throws CajuScriptException {
         try {
             String path = packagePath.length() > 0 ? packagePath.concat(".").concat(className) : className;
             URLClassLoader urlClassLoader = new URLClassLoader(new URL[]{baseDir.toURI().toURL()}, CajuScript.class.getClassLoader());
             Executable parserExecute = (Executable) urlClassLoader.loadClass(path).newInstance();
             classes.put(path, parserExecute.getClass());
+            CajuScript.getMetrics().classLoad();
         } catch (Exception e) {
             throw CajuScriptException.create(caju, context, e.getMessage(), e);
         }
@@ -175,7 +214,10 @@ public class Compiler {
                 }
             }
         }
-        return scriptClass.equals(script);
+        if (scriptClass.equals(script)) {
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -187,9 +229,10 @@ public class Compiler {
      */
     public void compile(Context staticContext, String script, Element base) throws CajuScriptException {
         packageDir.mkdirs();
+        CajuScript.getMetrics().compilation();
         try {
             ClassGen cg = new ClassGen(packagePath.length() > 0 ? packagePath.concat(".").concat(className) : className, "java.lang.Object",
-                    "<generated>", Constants.ACC_PUBLIC | Constants.ACC_SUPER,
+                    scriptFile.getName(), Constants.ACC_PUBLIC | Constants.ACC_SUPER,
                     new String[]{"org.cajuscript.compiler.Executable"});
             ConstantPoolGen cp = cg.getConstantPool();
             InstructionList il = new InstructionList();
@@ -209,7 +252,7 @@ public class Compiler {
             for (String key : staticContext.getStaticStrings().keySet()) {
                 il.append(new ALOAD(1));
                 il.append(new PUSH(cp, key));
-                il.append(new PUSH(cp, staticContext.getStaticStrings().get(key)));
+                il.append(new PUSH(cp, staticContext.getStaticStrings().get(key).toString()));
                 il.append(factory.createInvoke("org.cajuscript.CajuScript", "set", Type.VOID,
                     new Type[]{Type.STRING, Type.OBJECT},
                     Constants.INVOKEVIRTUAL));
@@ -243,6 +286,7 @@ public class Compiler {
                 LocalVariableGen lgI = mgFunc.addLocalVariable("i", Type.INT, null, null);
                 valuesIndexes.put("i", lgI.getIndex());
                 List<String> funcValueKeys = new ArrayList<String>();
+                functionBody = true;
                 launchCompileElements(cg, cp, ilFunc, mgFunc, factoryFunc, funcValueKeys, function, 0, true);
                 for (String valueKey : funcValueKeys) {
                     ilFunc.append(factoryFunc.createNew(new ObjectType("org.cajuscript.Value")));
@@ -262,11 +306,17 @@ public class Compiler {
                     ilFunc.append(new ASTORE(i));
                     valuesIndexes.put(valueKey, i);
                 }
+                InstructionHandle linesStart = lineLocals(cp, ilFunc, mgFunc);
+                functionStart = ilFunc.append(InstructionConstants.NOP);
+                budget(cp, ilFunc, factoryFunc, "call", function.getElements().size());
                 String returnFunc = launchCompileElements(cg, cp, ilFunc, mgFunc, factoryFunc, funcValueKeys, function, 0, false);
+                functionBody = false;
+                functionStart = null;
                 if (!returnFunc.equals("__return")) {
                     ilFunc.append(new ACONST_NULL());
                     ilFunc.append(new ARETURN());
                 }
+                lineHandler(ilFunc, mgFunc, factoryFunc, linesStart);
                 mgFunc.setMaxStack();
                 cg.addMethod(mgFunc.getMethod());
                 ilFunc.dispose();
@@ -327,10 +377,13 @@ public class Compiler {
 
             valuesKeys = new ArrayList<String>();
 
+            InstructionHandle linesStart = lineLocals(cp, il, mg);
+
             launchCompileElements(cg, cp, il, mg, factory, valuesKeys, base, 0, false);
 
             il.append(new ACONST_NULL());
             il.append(new ARETURN());
+            lineHandler(il, mg, factory, linesStart);
             
             mg.setMaxStack();
             cg.addMethod(mg.getMethod());
@@ -358,6 +411,139 @@ public class Compiler {
         loadClass(staticContext);
     }
 
+    /**
+     * Loads the command path from a static field, created only on the first
+     * execution, then the same command path is used by all executions.
+     */
+    private void commandPath(ClassGen cg, ConstantPoolGen cp, InstructionList il, InstructionFactory factory, CommandPath commandPath) {
+        String fieldName = "commandPath".concat(Long.toString(commandsPathsCount++));
+        ObjectType commandPathType = new ObjectType("org.cajuscript.cmd.CommandPath");
+        cg.addField(new FieldGen(Constants.ACC_PRIVATE | Constants.ACC_STATIC, commandPathType, fieldName, cp).getField());
+        il.append(factory.createFieldAccess(cg.getClassName(), fieldName, commandPathType, Constants.GETSTATIC));
+        il.append(new DUP());
+        BranchHandle created = il.append(new IFNONNULL(null));
+        il.append(new POP());
+        il.append(factory.createNew(commandPathType));
+        il.append(new DUP());
+        il.append(new PUSH(cp, commandPath.getScript()));
+        il.append(new PUSH(cp, commandPath.isRootContext()));
+        il.append(new ICONST(commandPath.getNames().length));
+        il.append(new ANEWARRAY(cp.addClass(Type.STRING)));
+        for (int i = 0; i < commandPath.getNames().length; i++) {
+            il.append(new DUP());
+            il.append(new ICONST(i));
+            il.append(new PUSH(cp, commandPath.getNames()[i]));
+            il.append(new AASTORE());
+        }
+        if (commandPath.getParams() == null) {
+            il.append(InstructionConstants.ACONST_NULL);
+        } else {
+            il.append(new PUSH(cp, commandPath.getParams().length));
+            il.append(factory.createNewArray(Type.INT, (short) 1));
+            for (int i = 0; i < commandPath.getParams().length; i++) {
+                il.append(new DUP());
+                il.append(new PUSH(cp, i));
+                il.append(new PUSH(cp, commandPath.getParams()[i]));
+                il.append(InstructionConstants.IASTORE);
+            }
+        }
+        il.append(factory.createInvoke("org.cajuscript.cmd.CommandPath", "<init>",
+                Type.VOID, new Type[] {
+                    Type.STRING, Type.BOOLEAN, new ArrayType(Type.STRING, 1), new ArrayType(Type.INT, 1)
+                },
+                Constants.INVOKESPECIAL));
+        il.append(new DUP());
+        il.append(factory.createFieldAccess(cg.getClassName(), fieldName, commandPathType, Constants.PUTSTATIC));
+        created.setTarget(il.append(InstructionConstants.NOP));
+    }
+
+    /**
+     * Emit the specialization of the operation, before the generic
+     * operation.
+     * <p>The integer arithmetic is done by primitive instructions when the
+     * values are integers, the others specializations are executed by the
+     * operation. Both jump over the generic operation when applied.</p>
+     * @return Branches to the end of the operation.
+     */
+    private List<BranchHandle> specialization(ConstantPoolGen cp, InstructionList il, InstructionFactory factory, Operation operation, int v, int v1, int v2) {
+        List<BranchHandle> specialized = new ArrayList<BranchHandle>();
+        Operation.Specialization specialization = operation.getSpecialization();
+        if (specialization == null) {
+            return specialized;
+        }
+        Instruction arithmetic = null;
+        if (specialization == Operation.Specialization.INTEGER) {
+            switch (operation.getOperator()) {
+                case ADDITION:
+                    arithmetic = InstructionConstants.IADD;
+                    break;
+                case SUBTRACTION:
+                    arithmetic = InstructionConstants.ISUB;
+                    break;
+                case MULTIPLICATION:
+                    arithmetic = InstructionConstants.IMUL;
+                    break;
+                case DIVISION:
+                    arithmetic = InstructionConstants.IDIV;
+                    break;
+                case MODULES:
+                    arithmetic = InstructionConstants.IREM;
+                    break;
+            }
+        }
+        ObjectType valueType = new ObjectType("org.cajuscript.Value");
+        ObjectType typeNumber = new ObjectType("org.cajuscript.Value$TypeNumber");
+        if (arithmetic != null) {
+            List<BranchHandle> generic = new ArrayList<BranchHandle>();
+            ObjectType valueTypeEnum = new ObjectType("org.cajuscript.Value$Type");
+            for (int operand : new int[] { v1, v2 }) {
+                il.append(new ALOAD(operand));
+                il.append(factory.createInvoke("org.cajuscript.Value", "getType",
+                        valueTypeEnum, new Type[] { }, Constants.INVOKEVIRTUAL));
+                il.append(factory.createFieldAccess("org.cajuscript.Value$Type", "NUMBER",
+                        valueTypeEnum, Constants.GETSTATIC));
+                generic.add(il.append(new IF_ACMPNE(null)));
+                il.append(new ALOAD(operand));
+                il.append(factory.createInvoke("org.cajuscript.Value", "getTypeNumber",
+                        typeNumber, new Type[] { }, Constants.INVOKEVIRTUAL));
+                il.append(factory.createFieldAccess("org.cajuscript.Value$TypeNumber", "INTEGER",
+                        typeNumber, Constants.GETSTATIC));
+                generic.add(il.append(new IF_ACMPNE(null)));
+            }
+            il.append(new ALOAD(v));
+            for (int operand : new int[] { v1, v2 }) {
+                il.append(new ALOAD(operand));
+                il.append(factory.createInvoke("org.cajuscript.Value", "getNumberIntegerValue",
+                        Type.INT, new Type[] { }, Constants.INVOKEVIRTUAL));
+            }
+            il.append(arithmetic);
+            il.append(factory.createInvoke("org.cajuscript.Value", "setNumberValue",
+                    Type.VOID, new Type[] { Type.INT }, Constants.INVOKEVIRTUAL));
+            specialized.add(il.append(new GOTO(null)));
+            InstructionHandle start = il.append(InstructionConstants.NOP);
+            for (BranchHandle branch : generic) {
+                branch.setTarget(start);
+            }
+        } else {
+            il.append(factory.createFieldAccess("org.cajuscript.parser.Operation$Specialization",
+                    specialization.name(), new ObjectType("org.cajuscript.parser.Operation$Specialization"),
+                    Constants.GETSTATIC));
+            il.append(factory.createFieldAccess("org.cajuscript.parser.Operation$Operator",
+                    operation.getOperator().name(), new ObjectType("org.cajuscript.parser.Operation$Operator"),
+                    Constants.GETSTATIC));
+            il.append(new ALOAD(v));
+            il.append(new ALOAD(v1));
+            il.append(new ALOAD(v2));
+            il.append(factory.createInvoke("org.cajuscript.parser.Operation$Specialization", "execute",
+                    Type.BOOLEAN, new Type[] {
+                        new ObjectType("org.cajuscript.parser.Operation$Operator"), valueType, valueType, valueType
+                    },
+                    Constants.INVOKEVIRTUAL));
+            specialized.add(il.append(new IFNE(null)));
+        }
+        return specialized;
+    }
+
     private String compileElement(ClassGen cg, ConstantPoolGen cp, InstructionList il, MethodGen mg, InstructionFactory factory, List<String> valueKeys, Element element, int level, boolean onlyValues, Map<String, GOTO> gotosContinue, Map<String, GOTO> gotosBreak) {
         String key = "";
         if (element == null) {
@@ -368,18 +554,48 @@ public class Compiler {
         boolean isBreak = false;
         boolean isContinue = false;
         int nextLevel = level + 1;
-        if (element instanceof Command) {
+        if (element instanceof Constant) {
             lineDetail(cp, il, mg, factory, element.getLineDetail(), onlyValues);
-            compileElements(cg, cp, il, mg, factory, valueKeys, element, nextLevel, onlyValues, gotosContinue, gotosBreak);
-            key = "c".concat(Integer.toString(level)).concat("_").concat(Long.toString(varCount++));
+            key = "k".concat(Integer.toString(level)).concat("_").concat(Long.toString(varCount++));
             if (!onlyValues) {
-                Command command = (Command) element;
                 il.append(new ALOAD(valuesIndexes.get(key)));
-                il.append(new PUSH(cp, command.getCommand()));
-                il.append(factory.createInvoke("org.cajuscript.Value", "setScript",
-                        Type.VOID, new Type[] { Type.STRING },
+                constant(cp, il, factory, ((Constant) element).getConstant());
+                il.append(factory.createInvoke("org.cajuscript.Value", "setValue",
+                        Type.VOID, new Type[] { Type.OBJECT },
                         Constants.INVOKEVIRTUAL));
             }
+        } else if (element instanceof Command) {
+            lineDetail(cp, il, mg, factory, element.getLineDetail(), onlyValues);
+            compileElements(cg, cp, il, mg, factory, valueKeys, element, nextLevel, onlyValues, gotosContinue, gotosBreak);
+            Command command = (Command) element;
+            List<String> argumentsKeys = new ArrayList<String>();
+            for (Element argument : command.getArguments()) {
+                argumentsKeys.add(compileElement(cg, cp, il, mg, factory, valueKeys, argument, nextLevel, onlyValues, gotosContinue, gotosBreak));
+            }
+            key = "c".concat(Integer.toString(level)).concat("_").concat(Long.toString(varCount++));
+            if (!onlyValues) {
+                for (int i = 0; i < argumentsKeys.size(); i++) {
+                    il.append(new ALOAD(valuesIndexes.get(key)));
+                    il.append(new PUSH(cp, i));
+                    il.append(new ALOAD(valuesIndexes.get(argumentsKeys.get(i))));
+                    il.append(factory.createInvoke("org.cajuscript.Value", "setArgument",
+                            Type.VOID, new Type[] { Type.INT, new ObjectType("org.cajuscript.Value") },
+                            Constants.INVOKEVIRTUAL));
+                }
+                if (command.getCommandPath() != null) {
+                    il.append(new ALOAD(valuesIndexes.get(key)));
+                    commandPath(cg, cp, il, factory, command.getCommandPath());
+                    il.append(factory.createInvoke("org.cajuscript.Value", "setCommand",
+                            Type.VOID, new Type[] { new ObjectType("org.cajuscript.cmd.CommandPath") },
+                            Constants.INVOKEVIRTUAL));
+                } else {
+                    il.append(new ALOAD(valuesIndexes.get(key)));
+                    il.append(new PUSH(cp, command.getCommand()));
+                    il.append(factory.createInvoke("org.cajuscript.Value", "setScript",
+                            Type.VOID, new Type[] { Type.STRING },
+                            Constants.INVOKEVIRTUAL));
+                }
+            }
         } else if (element instanceof Variable) {
             lineDetail(cp, il, mg, factory, element.getLineDetail(), onlyValues);
             compileElements(cg, cp, il, mg, factory, valueKeys, element, nextLevel, onlyValues, gotosContinue, gotosBreak);
@@ -400,9 +616,11 @@ public class Compiler {
                     il.append(InstructionConstants.ACONST_NULL);
                 }  else {
                     il.append(new ALOAD(valuesIndexes.get(keyValue)));
-                    il.append(factory.createInvoke("org.cajuscript.Value", "clone",
-                            new ObjectType("org.cajuscript.Value"), new Type[] { },
-                            Constants.INVOKEVIRTUAL));
+                    if (!(variable.getValue() instanceof Operation) || ((Operation) variable.getValue()).getAppend() == null) {
+                        il.append(factory.createInvoke("org.cajuscript.Value", "clone",
+                                new ObjectType("org.cajuscript.Value"), new Type[] { },
+                                Constants.INVOKEVIRTUAL));
+                    }
                 }
                 il.append(factory.createInvoke(
                         variable.isKeyRootContext(caju.getSyntax()) ? "org.cajuscript.CajuScript" : "org.cajuscript.Context",
@@ -412,11 +630,34 @@ public class Compiler {
         } else if (element instanceof Operation) {
             lineDetail(cp, il, mg, factory, element.getLineDetail(), onlyValues);
             compileElements(cg, cp, il, mg, factory, valueKeys, element, nextLevel, onlyValues, gotosContinue, gotosBreak);
-            key = "o".concat(Integer.toString(level)).concat("_").concat(Long.toString(varCount++));
             Operation operation = (Operation) element;
-            String firstCommand = compileElement(cg, cp, il, mg, factory, valueKeys, operation.getFirstCommand(), nextLevel, onlyValues, gotosContinue, gotosBreak);
-            String secondCommand = compileElement(cg, cp, il, mg, factory, valueKeys, operation.getSecondCommand(), nextLevel, onlyValues, gotosContinue, gotosBreak);
+            BranchHandle appended = null;
+            String firstCommand = null;
+            String secondCommand = null;
+            if (operation.getAppend() != null) {
+                key = "a".concat(Long.toString(appendCount++));
+                secondCommand = compileElement(cg, cp, il, mg, factory, valueKeys, operation.getSecondCommand(), nextLevel, onlyValues, gotosContinue, gotosBreak);
+                if (!onlyValues) {
+                    il.append(new ALOAD(2));
+                    il.append(new PUSH(cp, operation.getAppend()));
+                    il.append(new ALOAD(valuesIndexes.get(key)));
+                    il.append(new ALOAD(valuesIndexes.get(secondCommand)));
+                    il.append(factory.createInvoke("org.cajuscript.parser.Operation", "append",
+                            Type.BOOLEAN, new Type[] { new ObjectType("org.cajuscript.Context"), Type.STRING
+                                , new ObjectType("org.cajuscript.Value")
+                                , new ObjectType("org.cajuscript.Value")},
+                            Constants.INVOKESTATIC));
+                    appended = il.append(new IFNE(null));
+                }
+                firstCommand = compileElement(cg, cp, il, mg, factory, valueKeys, operation.getFirstCommand(), nextLevel, onlyValues, gotosContinue, gotosBreak);
+            } else {
+                key = "o".concat(Integer.toString(level)).concat("_").concat(Long.toString(varCount++));
+                firstCommand = compileElement(cg, cp, il, mg, factory, valueKeys, operation.getFirstCommand(), nextLevel, onlyValues, gotosContinue, gotosBreak);
+                secondCommand = compileElement(cg, cp, il, mg, factory, valueKeys, operation.getSecondCommand(), nextLevel, onlyValues, gotosContinue, gotosBreak);
+            }
             if (!onlyValues) {
+                List<BranchHandle> specialized = specialization(cp, il, factory, operation,
+                        valuesIndexes.get(key), valuesIndexes.get(firstCommand), valuesIndexes.get(secondCommand));
                 il.append(factory.createFieldAccess("org.cajuscript.parser.Operation$Operator",
                         operation.getOperator().name(), new ObjectType("org.cajuscript.parser.Operation$Operator"),
                         Constants.GETSTATIC));
@@ -428,7 +669,62 @@ public class Compiler {
                             , new ObjectType("org.cajuscript.Value")
                             , new ObjectType("org.cajuscript.Value")},
                         Constants.INVOKEVIRTUAL));
+                InstructionHandle end = il.append(InstructionConstants.NOP);
+                for (BranchHandle branch : specialized) {
+                    branch.setTarget(end);
+                }
+                if (appended != null) {
+                    appended.setTarget(end);
+                }
             }
+        } else if (element instanceof Return && functionBody && ((Return) element).getTailCall() != null) {
+            compileElements(cg, cp, il, mg, factory, valueKeys, element, nextLevel, onlyValues, gotosContinue, gotosBreak);
+            Return _return = (Return) element;
+            Command command = (Command) _return.getValue();
+            int[] params = command.getCommandPath().getParams();
+            String[] paramsKeys = new String[params.length];
+            for (int i = 0; i < params.length; i++) {
+                paramsKeys[i] = compileElement(cg, cp, il, mg, factory, valueKeys, command.getArguments().get(params[i]), nextLevel, onlyValues, gotosContinue, gotosBreak);
+            }
+            lineDetail(cp, il, mg, factory, element.getLineDetail(), onlyValues);
+            if (!onlyValues) {
+                il.append(new ALOAD(2));
+                il.append(factory.createInvoke("org.cajuscript.Context", "getVars",
+                        new ObjectType("java.util.Map"), new Type[] { },
+                        Constants.INVOKEVIRTUAL));
+                il.append(factory.createInvoke("java.util.Map", "clear",
+                        Type.VOID, new Type[] { },
+                        Constants.INVOKEINTERFACE));
+                for (int i = 0; i < params.length; i++) {
+                    il.append(new ALOAD(2));
+                    il.append(new PUSH(cp, _return.getTailCall()[i]));
+                    il.append(factory.createNew(new ObjectType("org.cajuscript.Value")));
+                    il.append(new DUP());
+                    il.append(new ALOAD(1));
+                    il.append(new ALOAD(2));
+                    il.append(new ALOAD(3));
+                    il.append(factory.createInvoke("org.cajuscript.Value", "<init>",
+                        Type.VOID, new Type[] {
+                            new ObjectType("org.cajuscript.CajuScript"),
+                            new ObjectType("org.cajuscript.Context"),
+                            new ObjectType("org.cajuscript.Syntax")
+                        },
+                        Constants.INVOKESPECIAL));
+                    il.append(new DUP());
+                    il.append(new ALOAD(valuesIndexes.get(paramsKeys[i])));
+                    il.append(factory.createInvoke("org.cajuscript.Value", "getValue",
+                            Type.OBJECT, new Type[] { },
+                            Constants.INVOKEVIRTUAL));
+                    il.append(factory.createInvoke("org.cajuscript.Value", "setValue",
+                            Type.VOID, new Type[] { Type.OBJECT },
+                            Constants.INVOKEVIRTUAL));
+                    il.append(factory.createInvoke("org.cajuscript.Context", "setVar",
+                            Type.VOID, new Type[] { Type.STRING, new ObjectType("org.cajuscript.Value") },
+                            Constants.INVOKEVIRTUAL));
+                }
+                il.append(new GOTO(functionStart));
+            }
+            isReturn = true;
         } else if (element instanceof Return) {
             compileElements(cg, cp, il, mg, factory, valueKeys, element, nextLevel, onlyValues, gotosContinue, gotosBreak);
             Return _return = (Return) element;
@@ -450,7 +746,7 @@ public class Compiler {
                 Break _break = (Break) element;
                 GOTO gt = new GOTO(null);
                 il.append(gt);
-                gotosBreak.put("loop_".concat(_break.getLabel()), gt);
+                gotosBreak.put(loopGoto(_break.getLabel()), gt);
             }
             isBreak = true;
         } else if (element instanceof Continue) {
@@ -460,7 +756,7 @@ public class Compiler {
                 Continue _continue = (Continue) element;
                 GOTO gt = new GOTO(null);
                 il.append(gt);
-                gotosContinue.put("loop_".concat(_continue.getLabel()), gt);
+                gotosContinue.put(loopGoto(_continue.getLabel()), gt);
             }
             isContinue = true;
         } else if (element instanceof Import) {
@@ -543,12 +839,16 @@ public class Compiler {
                 InstructionHandle ifEnd = il.append(InstructionConstants.NOP);
                 ifBlock.setTarget(ifEnd);
             }
+        } else if (element instanceof Loop && ((Loop) element).getEachVar() != null) {
+            lineDetail(cp, il, mg, factory, element.getLineDetail(), onlyValues);
+            compileEach(cg, cp, il, mg, factory, valueKeys, (Loop) element, nextLevel, onlyValues, gotosContinue, gotosBreak);
         } else if (element instanceof Loop) {
             Loop loop = (Loop) element;
             InstructionHandle loopStart = null;
             if (!onlyValues) {
                 loopStart = il.append(new PUSH(cp, 1));
                 il.append(new ISTORE(valuesIndexes.get("i")));
+                budget(cp, il, factory, "iteration", loop.getElements().size());
             }
             lineDetail(cp, il, mg, factory, element.getLineDetail(), onlyValues);
             GOTO gotoLoopEnd = null;
@@ -572,18 +872,8 @@ public class Compiler {
                 InstructionHandle loopEnd = il.append(new PUSH(cp, 1));
                 il.append(new ISTORE(valuesIndexes.get("i")));
                 gotoLoopEnd.setTarget(loopEnd);
-                for (String keyContinue : gotosContinue.keySet()) {
-                    if (keyContinue.equals("loop_") || keyContinue.equals("loop_".concat(loop.getLabel()))) {
-                        gotosContinue.get(keyContinue).setTarget(loopStart);
-                        gotosContinue.remove(keyContinue);
-                    }
-                }
-                for (String keyBreak : gotosBreak.keySet()) {
-                    if (keyBreak.equals("loop_") || keyBreak.equals("loop_".concat(loop.getLabel()))) {
-                        gotosBreak.get(keyBreak).setTarget(loopEnd);
-                        gotosBreak.remove(keyBreak);
-                    }
-                }
+                loopGotos(gotosContinue, loop.getLabel(), loopStart);
+                loopGotos(gotosBreak, loop.getLabel(), loopEnd);
             }
         } else if (element instanceof TryCatch) {
             lineDetail(cp, il, mg, factory, element.getLineDetail(), onlyValues);
@@ -620,6 +910,9 @@ public class Compiler {
             }
             if (!onlyValues) {
                 tryHandlerStart = il.append(new ASTORE(throwIndex));
+                il.append(new ALOAD(throwIndex));
+                located(il, factory);
+                il.append(new POP());
             }
             if (!onlyValues) {
                 il.append(new ALOAD(valuesIndexes.get(key)));
@@ -681,6 +974,89 @@ public class Compiler {
         return key;
     }
 
+    private void compileEach(ClassGen cg, ConstantPoolGen cp, InstructionList il, MethodGen mg, InstructionFactory factory, List<String> valueKeys, Loop loop, int level, boolean onlyValues, Map<String, GOTO> gotosContinue, Map<String, GOTO> gotosBreak) {
+        String valuesKey = compileElement(cg, cp, il, mg, factory, valueKeys, loop.getEachValues(), level, onlyValues, gotosContinue, gotosBreak);
+        if (onlyValues) {
+            compileElements(cg, cp, il, mg, factory, valueKeys, loop, level, onlyValues, gotosContinue, gotosBreak);
+            return;
+        }
+        String var = loop.getEachVar();
+        int eachIndex = mg.addLocalVariable("each_".concat(var), new ObjectType("org.cajuscript.parser.Loop$Each"), null, null).getIndex();
+        int previousIndex = mg.addLocalVariable("previous_".concat(var), new ObjectType("org.cajuscript.parser.Loop$Each"), null, null).getIndex();
+        int valueIndex = mg.addLocalVariable("value_".concat(var), new ObjectType("org.cajuscript.Value"), null, null).getIndex();
+        il.append(factory.createNew(new ObjectType("org.cajuscript.parser.Loop$Each")));
+        il.append(new DUP());
+        il.append(new ALOAD(valuesIndexes.get(valuesKey)));
+        il.append(factory.createInvoke("org.cajuscript.Value", "getValue",
+            Type.OBJECT, new Type[] { },
+            Constants.INVOKEVIRTUAL));
+        il.append(factory.createInvoke("org.cajuscript.parser.Loop$Each", "<init>",
+            Type.VOID, new Type[] { Type.OBJECT },
+            Constants.INVOKESPECIAL));
+        il.append(new ASTORE(eachIndex));
+        il.append(new ALOAD(1));
+        il.append(new PUSH(cp, var));
+        il.append(factory.createInvoke("org.cajuscript.CajuScript", "getEach",
+            new ObjectType("org.cajuscript.parser.Loop$Each"), new Type[] { Type.STRING },
+            Constants.INVOKEVIRTUAL));
+        il.append(new ASTORE(previousIndex));
+        il.append(new ALOAD(1));
+        il.append(new ACONST_NULL());
+        il.append(new ALOAD(2));
+        il.append(new ALOAD(3));
+        il.append(factory.createInvoke("org.cajuscript.CajuScript", "toValue",
+            new ObjectType("org.cajuscript.Value"), new Type[] {
+                Type.OBJECT,
+                new ObjectType("org.cajuscript.Context"),
+                new ObjectType("org.cajuscript.Syntax")
+            },
+            Constants.INVOKEVIRTUAL));
+        il.append(new ASTORE(valueIndex));
+        InstructionHandle loopStart = il.append(new PUSH(cp, 1));
+        il.append(new ISTORE(valuesIndexes.get("i")));
+        budget(cp, il, factory, "iteration", loop.getElements().size());
+        il.append(new ALOAD(eachIndex));
+        il.append(factory.createInvoke("org.cajuscript.parser.Loop$Each", "next",
+            Type.BOOLEAN, new Type[] { },
+            Constants.INVOKEVIRTUAL));
+        BranchHandle ifEnd = il.append(new IFEQ(null));
+        il.append(new ALOAD(1));
+        il.append(new PUSH(cp, var));
+        il.append(new ALOAD(eachIndex));
+        il.append(factory.createInvoke("org.cajuscript.CajuScript", "setEach",
+            Type.VOID, new Type[] { Type.STRING, new ObjectType("org.cajuscript.parser.Loop$Each") },
+            Constants.INVOKEVIRTUAL));
+        il.append(new ALOAD(valueIndex));
+        il.append(new ALOAD(eachIndex));
+        il.append(factory.createInvoke("org.cajuscript.parser.Loop$Each", "getValue",
+            Type.OBJECT, new Type[] { },
+            Constants.INVOKEVIRTUAL));
+        il.append(factory.createInvoke("org.cajuscript.Value", "setValue",
+            Type.VOID, new Type[] { Type.OBJECT },
+            Constants.INVOKEVIRTUAL));
+        il.append(new ALOAD(2));
+        il.append(new PUSH(cp, var));
+        il.append(new ALOAD(valueIndex));
+        il.append(factory.createInvoke("org.cajuscript.Context", "setVar",
+            Type.VOID, new Type[] { Type.STRING, new ObjectType("org.cajuscript.Value") },
+            Constants.INVOKEVIRTUAL));
+        compileElements(cg, cp, il, mg, factory, valueKeys, loop, level, onlyValues, gotosContinue, gotosBreak);
+        GOTO gotoLoopStart = new GOTO(null);
+        gotoLoopStart.setTarget(loopStart);
+        il.append(gotoLoopStart);
+        InstructionHandle loopEnd = il.append(new PUSH(cp, 1));
+        il.append(new ISTORE(valuesIndexes.get("i")));
+        ifEnd.setTarget(loopEnd);
+        il.append(new ALOAD(1));
+        il.append(new PUSH(cp, var));
+        il.append(new ALOAD(previousIndex));
+        il.append(factory.createInvoke("org.cajuscript.CajuScript", "setEach",
+            Type.VOID, new Type[] { Type.STRING, new ObjectType("org.cajuscript.parser.Loop$Each") },
+            Constants.INVOKEVIRTUAL));
+        loopGotos(gotosContinue, loop.getLabel(), loopStart);
+        loopGotos(gotosBreak, loop.getLabel(), loopEnd);
+    }
+
     private String compileElements(ClassGen cg, ConstantPoolGen cp, InstructionList il, MethodGen mg, InstructionFactory factory, List<String> valueKeys, Element elements, int level, boolean onlyValues, Map<String, GOTO> gotosContinue, Map<String, GOTO> gotosBreak) {
         String key = "";
         int nextLevel = level + 1;
@@ -695,11 +1071,85 @@ public class Compiler {
         return key;
     }
 
+    private String loopGoto(String label) {
+        return "loop_".concat(label).concat(":").concat(Long.toString(gotoCount++));
+    }
+
+    private void loopGotos(Map<String, GOTO> gotos, String label, InstructionHandle target) {
+        Iterator<Map.Entry<String, GOTO>> iterator = gotos.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, GOTO> entry = iterator.next();
+            if (entry.getKey().startsWith("loop_:") || entry.getKey().startsWith("loop_".concat(label).concat(":"))) {
+                entry.getValue().setTarget(target);
+                iterator.remove();
+            }
+        }
+    }
+
     private String launchCompileElements(ClassGen cg, ConstantPoolGen cp, InstructionList il, MethodGen mg, InstructionFactory factory, List<String> valueKeys, Element elements, int level, boolean onlyValues) {
         varCount = 1;
+        appendCount = 1;
+        gotoCount = 1;
+        lastLiteDetail = null;
         return compileElements(cg, cp, il, mg, factory, valueKeys, elements, level, onlyValues, new HashMap<String, GOTO>(), new HashMap<String, GOTO>());
     }
 
+    private void constant(ConstantPoolGen cp, InstructionList il, InstructionFactory factory, Object constant) {
+        if (constant == null) {
+            il.append(InstructionConstants.ACONST_NULL);
+        } else if (constant instanceof Integer) {
+            il.append(new PUSH(cp, ((Integer) constant).intValue()));
+            il.append(factory.createInvoke("java.lang.Integer", "valueOf",
+                    new ObjectType("java.lang.Integer"), new Type[] { Type.INT },
+                    Constants.INVOKESTATIC));
+        } else if (constant instanceof Long) {
+            il.append(new PUSH(cp, ((Long) constant).longValue()));
+            il.append(factory.createInvoke("java.lang.Long", "valueOf",
+                    new ObjectType("java.lang.Long"), new Type[] { Type.LONG },
+                    Constants.INVOKESTATIC));
+        } else if (constant instanceof Float) {
+            il.append(new PUSH(cp, ((Float) constant).floatValue()));
+            il.append(factory.createInvoke("java.lang.Float", "valueOf",
+                    new ObjectType("java.lang.Float"), new Type[] { Type.FLOAT },
+                    Constants.INVOKESTATIC));
+        } else if (constant instanceof Double) {
+            il.append(new PUSH(cp, ((Double) constant).doubleValue()));
+            il.append(factory.createInvoke("java.lang.Double", "valueOf",
+                    new ObjectType("java.lang.Double"), new Type[] { Type.DOUBLE },
+                    Constants.INVOKESTATIC));
+        } else if (constant instanceof Boolean) {
+            il.append(new PUSH(cp, ((Boolean) constant).booleanValue()));
+            il.append(factory.createInvoke("java.lang.Boolean", "valueOf",
+                    new ObjectType("java.lang.Boolean"), new Type[] { Type.BOOLEAN },
+                    Constants.INVOKESTATIC));
+        } else {
+            il.append(new PUSH(cp, constant.toString()));
+        }
+    }
+
+    private void budget(ConstantPoolGen cp, InstructionList il, InstructionFactory factory, String method, int nodes) {
+        il.append(new ALOAD(1));
+        il.append(factory.createInvoke("org.cajuscript.CajuScript", "getBudget",
+                new ObjectType("org.cajuscript.Budget"), new Type[] {},
+                Constants.INVOKEVIRTUAL));
+        BranchHandle withoutBudget = il.append(new IFNULL(null));
+        il.append(new ALOAD(1));
+        il.append(factory.createInvoke("org.cajuscript.CajuScript", "getBudget",
+                new ObjectType("org.cajuscript.Budget"), new Type[] {},
+                Constants.INVOKEVIRTUAL));
+        il.append(new ALOAD(1));
+        il.append(new ALOAD(2));
+        il.append(new PUSH(cp, nodes));
+        il.append(factory.createInvoke("org.cajuscript.Budget", method,
+                Type.VOID, new Type[] {
+                    new ObjectType("org.cajuscript.CajuScript"),
+                    new ObjectType("org.cajuscript.Context"),
+                    Type.INT
+                },
+                Constants.INVOKEVIRTUAL));
+        withoutBudget.setTarget(il.append(InstructionConstants.NOP));
+    }
+
     private void lineDetail(ConstantPoolGen cp, InstructionList il, MethodGen mg, InstructionFactory factory, LineDetail lineDetail, boolean onlyValues) {
         if (lastLiteDetail != null
                 && lastLiteDetail.getNumber() == lineDetail.getNumber()
@@ -708,16 +1158,46 @@ public class Compiler {
         }
         lastLiteDetail = lineDetail;
         varCount = 1;
-        if (!onlyValues) {
-            il.append(new ALOAD(1));
-            il.append(factory.createInvoke("org.cajuscript.CajuScript", "getRunningLine",
-                    new ObjectType("org.cajuscript.parser.LineDetail"), new Type[] {},
-                    Constants.INVOKEVIRTUAL));
+        if (!onlyValues && lineDetail.getNumber() > 0) {
+            mg.addLineNumber(il.append(InstructionConstants.NOP), lineDetail.getNumber());
             il.append(new PUSH(cp, lineDetail.getNumber()));
+            il.append(new ISTORE(lineNumberIndex));
             il.append(new PUSH(cp, lineDetail.getContent()));
-            il.append(factory.createInvoke("org.cajuscript.parser.LineDetail", "set",
-                    Type.VOID, new Type[]{ Type.INT, Type.STRING },
-                    Constants.INVOKEVIRTUAL));
+            il.append(new ASTORE(lineContentIndex));
         }
     }
+
+    private InstructionHandle lineLocals(ConstantPoolGen cp, InstructionList il, MethodGen mg) {
+        lineNumberIndex = mg.addLocalVariable("line_number", Type.INT, null, null).getIndex();
+        lineContentIndex = mg.addLocalVariable("line_content", Type.STRING, null, null).getIndex();
+        il.append(new PUSH(cp, 0));
+        il.append(new ISTORE(lineNumberIndex));
+        il.append(InstructionConstants.ACONST_NULL);
+        il.append(new ASTORE(lineContentIndex));
+        return il.append(InstructionConstants.NOP);
+    }
+
+    private InstructionHandle located(InstructionList il, InstructionFactory factory) {
+        InstructionHandle start = il.append(new ALOAD(1));
+        il.append(new ALOAD(2));
+        il.append(new ILOAD(lineNumberIndex));
+        il.append(new ALOAD(lineContentIndex));
+        il.append(factory.createInvoke("org.cajuscript.compiler.Compiler", "located",
+            new ObjectType("java.lang.Throwable"), new Type[] {
+                new ObjectType("java.lang.Throwable"),
+                new ObjectType("org.cajuscript.CajuScript"),
+                new ObjectType("org.cajuscript.Context"),
+                Type.INT,
+                Type.STRING
+            },
+            Constants.INVOKESTATIC));
+        return start;
+    }
+
+    private void lineHandler(InstructionList il, MethodGen mg, InstructionFactory factory, InstructionHandle start) {
+        InstructionHandle end = il.getEnd();
+        InstructionHandle handler = located(il, factory);
+        il.append(new ATHROW());
+        mg.addExceptionHandler(start, end, handler, null);
+    }
 }
@@ -21,9 +21,12 @@ package org.cajuscript.parser;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.regex.Pattern;
 import org.cajuscript.CajuScript;
 import org.cajuscript.Context;
+import org.cajuscript.Profiler;
 import org.cajuscript.Syntax;
 import org.cajuscript.SyntaxPosition;
 import org.cajuscript.Value;
@@ -39,8 +42,11 @@ public class Base implements Element, java.io.Serializable, Cloneable {
     protected List<Element> elements = new ArrayList<Element>();
     protected LineDetail baseLineDetail = null;
     private static long varsGroupCounter = 0;
-    private static long varsMathCounter = 0;
     protected Executable executable = null;
+    private transient Map<String, Value> constants = null;
+    private transient List<Function> functions = null;
+    private transient Map<String, Element> groups = null;
+    private transient volatile Program program = null;
     
     /**
      * Base
@@ -96,7 +102,7 @@ public class Base implements Element, java.io.Serializable, Cloneable {
      * @return If element can return.
      */
     public boolean canElementReturn(Element element) {
-        if (!(element instanceof Command) && !(element instanceof Operation) && !(element instanceof Variable)) {
+        if (!(element instanceof Command) && !(element instanceof Constant) && !(element instanceof Operation) && !(element instanceof Variable)) {
             return true;
         }
         return false;
@@ -111,9 +117,11 @@ public class Base implements Element, java.io.Serializable, Cloneable {
      * @throws org.cajuscript.CajuScriptException Errors ocurred on execution
      */
     public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
-        caju.setRunningLine(getLineDetail());
+        if (caju.isVirtualMachine()) {
+            return getProgram().execute(caju, context, syntax);
+        }
         for (Element element : elements) {
-            Value v = element.execute(caju, context, syntax);
+            Value v = executeElement(caju, context, syntax, element);
             if (v != null && canElementReturn(element)) {
                 return v;
             }
@@ -121,6 +129,48 @@ public class Base implements Element, java.io.Serializable, Cloneable {
         return null;
     }
     
+    /**
+     * Get the program of the elements, lowered on the first use.
+     * <p>The elements can be shared by threads through the cache of
+     * parsers, the program is only published when is complete, and threads
+     * that lower it at the same time create equal programs.</p>
+     * @return Program
+     */
+    public Program getProgram() {
+        Program p = program;
+        if (p == null) {
+            p = new Program(elements);
+            program = p;
+        }
+        return p;
+    }
+
+    /**
+     * Execute a child element.
+     * <p>The running line is not defined by each element executed, the line
+     * of the child is given only to the profiler and to the errors thrown by
+     * it, then the execution not spend time with diagnostics.</p>
+     * @param caju CajuScript
+     * @param context Context
+     * @param syntax Syntax
+     * @param element Child element
+     * @return Value returned by execution
+     * @throws org.cajuscript.CajuScriptException Errors ocurred on execution
+     */
+    protected static Value executeElement(CajuScript caju, Context context, Syntax syntax, Element element) throws CajuScriptException {
+        Profiler profiler = caju.getProfiler();
+        if (profiler != null) {
+            profiler.line(element.getLineDetail());
+        }
+        try {
+            return element.execute(caju, context, syntax);
+        } catch (CajuScriptException e) {
+            throw caju.located(e, context, element.getLineDetail());
+        } catch (RuntimeException e) {
+            throw caju.located(e, context, element.getLineDetail());
+        }
+    }
+
     /**
      * Script parse.
      * @param caju CajuScript instance
@@ -129,7 +179,42 @@ public class Base implements Element, java.io.Serializable, Cloneable {
      * @throws org.cajuscript.CajuScriptException Errors ocurred on parsing
      */
     public void parse(CajuScript caju, String script, Syntax syntax) throws CajuScriptException {
-        parse(null, caju, null, script, syntax);
+        this.groups = new HashMap<String, Element>();
+        try {
+            parse(null, caju, null, script, syntax);
+        } finally {
+            this.groups = null;
+        }
+    }
+
+    /**
+     * Script parse, followed by the optimization of all elements and
+     * functions created.
+     * @param caju CajuScript instance
+     * @param script Script to be parsed
+     * @param syntax Syntax style of the script
+     * @param constants Values of the static strings by key, referenced
+     *                  directly by the elements
+     * @throws org.cajuscript.CajuScriptException Errors ocurred on parsing
+     */
+    public void parse(CajuScript caju, String script, Syntax syntax, Map<String, Value> constants) throws CajuScriptException {
+        this.constants = constants;
+        this.functions = new ArrayList<Function>();
+        this.groups = new HashMap<String, Element>();
+        try {
+            parse(null, caju, null, script, syntax);
+            Optimizer optimizer = new Optimizer(caju, syntax);
+            optimizer.optimize(this);
+            optimizer.infer(this);
+            for (Function function : functions) {
+                optimizer.optimize(function);
+                optimizer.infer(function);
+            }
+        } finally {
+            this.constants = null;
+            this.functions = null;
+            this.groups = null;
+        }
     }
     private LineDetail parseLastLineDetail = null;
     private void parse(Element base, CajuScript caju, LineDetail lineDetail, String script, Syntax syntax) throws CajuScriptException {
@@ -261,7 +346,7 @@ public class Base implements Element, java.io.Serializable, Cloneable {
                     String scriptFUNCline = originalFUNCline.trim();
                     LineDetail _lineDetail = loadLineDetail(scriptFUNCline);
                     scriptFUNCline = _lineDetail.getContent().trim();
-                    if (syntax.matcherPosition(scriptFUNCline, syntax.getFunction()).getStart() == 0) {
+                    if (syntax.matcherStarts(scriptFUNCline, syntax.getFunction())) {
                         funcLevel++;
                     } else if (isStatementBegins(scriptFUNCline, syntax)) {
                         funcLevel++;
@@ -282,6 +367,9 @@ public class Base implements Element, java.io.Serializable, Cloneable {
                 func.setDefinition(scriptFuncDef, syntax);
                 parse(func, caju, lineDetail, scriptFUNC.toString(), syntax);
                 caju.setFunc(func.getName(), func);
+                if (functions != null) {
+                    functions.add(func);
+                }
             } else if ((syntaxPosition = syntax.matcherPosition(line, syntax.getTry())).getStart() == 0) {
                 String scriptTRYCATCHerrorVar = syntaxPosition.getGroup();
                 StringBuilder scriptTRY = new StringBuilder();
@@ -298,12 +386,12 @@ public class Base implements Element, java.io.Serializable, Cloneable {
                     String scriptTRYCATCHline = originalTRYCATCHline.trim();
                     LineDetail _lineDetail = loadLineDetail(scriptTRYCATCHline);
                     scriptTRYCATCHline = _lineDetail.getContent().trim();
-                    if (tryLevel == 0 && syntax.matcherPosition(scriptTRYCATCHline, syntax.getTryCatch()).getStart() == 0) {
+                    if (tryLevel == 0 && syntax.matcherStarts(scriptTRYCATCHline, syntax.getTryCatch())) {
                         isTry = false;
                         isCatch = true;
                         isFinally = false;
                         continue;
-                    } else if (tryLevel == 0 && syntax.matcherPosition(scriptTRYCATCHline, syntax.getTryFinally()).getStart() == 0) {
+                    } else if (tryLevel == 0 && syntax.matcherStarts(scriptTRYCATCHline, syntax.getTryFinally())) {
                         isTry = false;
                         isCatch = false;
                         isFinally = true;
@@ -412,13 +500,13 @@ public class Base implements Element, java.io.Serializable, Cloneable {
     }
     
     private boolean isStatementBegins(String line, Syntax syntax) {
-        if (syntax.matcherPosition(line, syntax.getIf()).getStart() == 0) {
+        if (syntax.matcherStarts(line, syntax.getIf())) {
             return true;
-        } else if (syntax.matcherPosition(line, syntax.getLoop()).getStart() == 0) {
+        } else if (syntax.matcherStarts(line, syntax.getLoop())) {
             return true;
-        } else if (syntax.matcherPosition(line, syntax.getTry()).getStart() == 0) {
+        } else if (syntax.matcherStarts(line, syntax.getTry())) {
             return true;
-        } else if (syntax.matcherPosition(line, syntax.getFunction()).getStart() == 0) {
+        } else if (syntax.matcherStarts(line, syntax.getFunction())) {
             return true;
         }
         return false;
@@ -437,34 +525,6 @@ public class Base implements Element, java.io.Serializable, Cloneable {
         return false;
     }
     
-    private Element condition(Element base, CajuScript caju, LineDetail lineDetail, Syntax syntax, String script) throws CajuScriptException {
-        try {
-            script = script.trim();
-            SyntaxPosition syntaxPositionLogical = syntax.firstOperatorLogical(script);
-            if (syntaxPositionLogical.getStart() > -1) {
-                Operation o = new Operation(lineDetail);
-                o.setCommands(condition(base, caju, lineDetail, syntax, script.substring(0, syntaxPositionLogical.getStart())), syntaxPositionLogical.getOperator(), condition(base, caju, lineDetail, syntax, script.substring(syntaxPositionLogical.getEnd())));
-                return o;
-            } else if (script.length() != 0) {
-                SyntaxPosition syntaxPosition = syntax.firstOperatorConditional(script);
-                if (syntaxPosition.getStart() > -1) {
-                    Element e1 = evalValue(base, caju, lineDetail, syntax, script.substring(0, syntaxPosition.getStart()));
-                    Element e2 = evalValue(base, caju, lineDetail, syntax, script.substring(syntaxPosition.getEnd()));
-                    Operation o = new Operation(lineDetail);
-                    o.setCommands(e1, syntaxPosition.getOperator(), e2);
-                    return o;
-                } else {
-                    return evalValue(base, caju, lineDetail, syntax, script);
-                }
-            }
-            throw CajuScriptException.create(caju, caju.getContext(), "Sintax error");
-        } catch (CajuScriptException e) {
-            throw e;
-        } catch (Exception e) {
-            throw CajuScriptException.create(caju, caju.getContext(), "Sintax error", e);
-        }
-    }
-
     private Element evalValue(Element base, CajuScript caju, LineDetail lineDetail, Syntax syntax, String script) throws CajuScriptException {
         return evalValueGroup(base, caju, lineDetail, syntax, script, false);
     }
@@ -473,78 +533,39 @@ public class Base implements Element, java.io.Serializable, Cloneable {
         return evalValueGroup(base, caju, lineDetail, syntax, script, true);
     }
     
-    private Element evalValueSingle(Element base, CajuScript caju, LineDetail lineDetail, Syntax syntax, String script) throws CajuScriptException {
+    /**
+     * Expressions are parsed by precedence climbing over the operators found
+     * in one pass of the script. From the lowest to the highest precedence:
+     * logicals and conditionals, both associating to the right, then
+     * addition and subtraction, then multiplication, division and modules.
+     */
+    private Element expression(CajuScript caju, LineDetail lineDetail, Syntax syntax, String script) throws CajuScriptException {
         try {
-            script = script.trim();
-            SyntaxPosition firstOperator = syntax.firstOperatorMathematic(script);
-            if (firstOperator.getStart() > -1 && !syntax.matcherEquals(script, syntax.getNumber())) {
-                if (firstOperator.getStart() == 0) {
-                    firstOperator = syntax.firstOperatorMathematic(script.substring(firstOperator.getEnd()));
-                }
-                SyntaxPosition priorityOperator = syntax.firstOperator(script, syntax.getOperatorMultiplication(), syntax.getOperatorDivision(), syntax.getOperatorModules());
-                if (priorityOperator.getStart() > firstOperator.getStart()) {
-                    SyntaxPosition syntaxOperator1 = syntax.lastOperatorMathematic(script.substring(0, priorityOperator.getStart()));
-                    String script1 = syntaxOperator1.getStart() > -1 ? script.substring(0, syntaxOperator1.getStart()) : "";
-                    Operator operator1 = syntaxOperator1.getOperator();
-                    String scriptValue1 = script.substring(syntaxOperator1.getEnd() > -1 ? syntaxOperator1.getEnd() : 0, priorityOperator.getStart());
-                    Operation.Operator operator = priorityOperator.getOperator();
-                    SyntaxPosition syntaxOperator2 = syntax.firstOperatorMathematic(script.substring(priorityOperator.getEnd()));
-                    String scriptValue2 = script.substring(priorityOperator.getEnd(), syntaxOperator2.getStart() > -1 ? syntaxOperator2.getStart() : script.length());
-                    Operator operator2 = syntaxOperator2.getOperator();
-                    String script2 = syntaxOperator2.getEnd() > -1 ? script.substring(syntaxOperator2.getEnd()) : "";
-                    Command c1 = new Command(lineDetail);
-                    c1.setCommand(scriptValue1);
-                    Command c2 = new Command(lineDetail);
-                    c2.setCommand(scriptValue2);
-                    Operation o = new Operation(lineDetail);
-                    o.setCommands(c1, operator, c2);
-                    if (scriptValue1.length() == 0 && scriptValue2.length() == 0) {
-                        return o;
+            List<Element> operands = new ArrayList<Element>();
+            List<Operator> operators = new ArrayList<Operator>();
+            boolean negative = false;
+            int last = 0;
+            for (SyntaxPosition syntaxPosition : syntax.operators(script, syntax.getOperators())) {
+                String operand = script.substring(last, syntaxPosition.getStart()).trim();
+                last = syntaxPosition.getEnd();
+                if (operand.length() == 0) {
+                    if (syntaxPosition.getOperator() == Operator.SUBTRACTION) {
+                        negative = !negative;
+                    } else if (syntaxPosition.getOperator() != Operator.ADDITION) {
+                        throw CajuScriptException.create(caju, caju.getContext(), "Sintax error");
                     }
-                    Element e1 = o;
-                    if (operator1 != null) {
-                        Operation o1 = new Operation(lineDetail);
-                        o1.setCommands(evalValueSingle(base, caju, lineDetail, syntax, script1), operator1, o);
-                        if (operator2 == null) {
-                            return o1;
-                        }
-                        e1 = o1;
-                    }
-                    Operation o2 = new Operation(lineDetail);
-                    o2.setCommands(e1, operator2, evalValueSingle(base, caju, lineDetail, syntax, script2));
-                    return o2;
-                }
-                Command value1 = new Command(lineDetail);
-                value1.setCommand(script.substring(0, firstOperator.getStart()));
-                String scriptFinal = script.substring(firstOperator.getEnd());
-                SyntaxPosition value2Operator = syntax.firstOperatorMathematic(scriptFinal);
-                if (value2Operator.getStart() > -1) {
-                    Command value2 = new Command(lineDetail);
-                    value2.setCommand(scriptFinal.substring(0, value2Operator.getStart()));
-                    if (varsMathCounter == Long.MAX_VALUE) {
-                        varsMathCounter = 0;
-                    }
-                    Operation o = new Operation(lineDetail);
-                    o.setCommands(value1, firstOperator.getOperator(), value2);
-                    String varParamKey = CajuScript.CAJU_VARS_MATH.concat(caju.nextVarsCounter()).concat(Long.toString(varsMathCounter));
-                    varsMathCounter++;
-                    Variable varParam = new Variable(lineDetail);
-                    varParam.setKey(varParamKey);
-                    varParam.setValue(o);
-                    base.addElement(varParam);
-                    return evalValueSingle(base, caju, lineDetail, syntax, varParamKey.concat(scriptFinal.substring(value2Operator.getStart())));
-                } else {
-                    Operation operation = new Operation(lineDetail);
-                    Command value2 = new Command(lineDetail);
-                    value2.setCommand(script.substring(firstOperator.getEnd()));
-                    operation.setCommands(value1, firstOperator.getOperator(), value2);
-                    return operation;
+                    continue;
                 }
-            } else {
-                Command cmd = new Command(lineDetail);
-                cmd.setCommand(script.trim());
-                return cmd;
+                operands.add(operand(lineDetail, syntax, operand, negative));
+                operators.add(syntaxPosition.getOperator());
+                negative = false;
+            }
+            String operand = script.substring(last).trim();
+            if (operand.length() == 0) {
+                throw CajuScriptException.create(caju, caju.getContext(), "Sintax error");
             }
+            operands.add(operand(lineDetail, syntax, operand, negative));
+            return expression(lineDetail, operands, operators, new int[] {0}, 0);
         } catch (CajuScriptException e) {
             throw e;
         } catch (Exception e) {
@@ -552,6 +573,112 @@ public class Base implements Element, java.io.Serializable, Cloneable {
         }
     }
 
+    private Element expression(LineDetail lineDetail, List<Element> operands, List<Operator> operators, int[] index, int precedence) throws CajuScriptException {
+        Element element = operands.get(index[0]);
+        while (index[0] < operators.size() && precedence(operators.get(index[0])) >= precedence) {
+            Operator operator = operators.get(index[0]);
+            int nextPrecedence = precedence(operator);
+            if (operator == Operator.ADDITION || operator == Operator.SUBTRACTION
+                    || operator == Operator.MULTIPLICATION || operator == Operator.DIVISION || operator == Operator.MODULES) {
+                nextPrecedence++;
+            }
+            index[0]++;
+            Element second = expression(lineDetail, operands, operators, index, nextPrecedence);
+            Operation operation = new Operation(lineDetail);
+            operation.setCommands(element, operator, second);
+            element = operation;
+        }
+        return element;
+    }
+
+    private static int precedence(Operator operator) {
+        switch (operator) {
+            case AND:
+            case OR:
+                return 1;
+            case ADDITION:
+            case SUBTRACTION:
+                return 3;
+            case MULTIPLICATION:
+            case DIVISION:
+            case MODULES:
+                return 4;
+            default:
+                return 2;
+        }
+    }
+
+    private Element operand(LineDetail lineDetail, Syntax syntax, String script, boolean negative) throws CajuScriptException {
+        if (!negative) {
+            return command(lineDetail, script);
+        } else if (syntax.matcherEquals(script, syntax.getNumber())) {
+            return command(lineDetail, "-".concat(script));
+        }
+        Operation operation = new Operation(lineDetail);
+        operation.setCommands(command(lineDetail, "0"), Operator.SUBTRACTION, command(lineDetail, script));
+        return operation;
+    }
+
+    private Element command(LineDetail lineDetail, String script) {
+        script = script.trim();
+        if (constants != null) {
+            Value constant = constants.get(script);
+            if (constant != null) {
+                return new Constant(lineDetail, constant);
+            }
+        }
+        Element group = groups.get(script);
+        if (group != null) {
+            return group;
+        }
+        Command command = new Command(lineDetail);
+        command.setCommand(arguments(command, script));
+        return command;
+    }
+
+    /**
+     * Keys of groups used inside of the command are replaced by arguments,
+     * then the values of the groups are given directly to the command.
+     */
+    private String arguments(Command command, String script) {
+        int start = script.indexOf(CajuScript.CAJU_VARS_GROUP);
+        if (start == -1) {
+            return script;
+        }
+        StringBuilder result = new StringBuilder();
+        int last = 0;
+        while (start > -1) {
+            int end = start + CajuScript.CAJU_VARS_GROUP.length();
+            for (int separators = 0; end < script.length(); end++) {
+                char c = script.charAt(end);
+                if (c == '_' && separators < 2) {
+                    separators++;
+                } else if (!Character.isDigit(c) || separators == 0) {
+                    break;
+                }
+            }
+            Element group = groups.get(script.substring(start, end));
+            if (group != null) {
+                result.append(script, last, start);
+                result.append(CajuScript.CAJU_VARS_ARGUMENT);
+                result.append(command.getArguments().size());
+                command.addArgument(group);
+                last = end;
+            }
+            start = script.indexOf(CajuScript.CAJU_VARS_GROUP, end);
+        }
+        result.append(script, last, script.length());
+        return result.toString();
+    }
+
+    private static String replaceFirst(String script, String target, String replacement) {
+        int p = script.indexOf(target);
+        if (p == -1) {
+            return script;
+        }
+        return script.substring(0, p).concat(replacement).concat(script.substring(p + target.length()));
+    }
+
     private Element evalValueGroup(Element base, CajuScript caju, LineDetail lineDetail, Syntax syntax, String script) throws CajuScriptException {
         return evalValueGroup(base, caju, lineDetail, syntax, script, false);
     }
@@ -584,9 +711,6 @@ public class Base implements Element, java.io.Serializable, Cloneable {
             }
             String varKey = CajuScript.CAJU_VARS_GROUP.concat(caju.nextVarsCounter()).concat(Long.toString(varsGroupCounter));
             varsGroupCounter++;
-            Variable var = new Variable(lineDetail);
-            var.setKey(varKey);
-            Command c = new Command(lineDetail);
             String cmd = syntaxPosition.getGroup();
             String functionName = cmd.substring(0, syntax.matcherPosition(cmd, callParametersBegin).getStart());
             SyntaxPosition syntaxFixOperator = syntax.lastOperatorLogical(functionName);
@@ -625,15 +749,15 @@ public class Base implements Element, java.io.Serializable, Cloneable {
                         }
                         String varParamKey = CajuScript.CAJU_VARS_GROUP.concat(caju.nextVarsCounter()).concat(Long.toString(varsGroupCounter));
                         varsGroupCounter++;
-                        Variable varParam = new Variable(lineDetail);
                         String paramCmdContent = params.substring(0, lenParamSeparatorStart);
                         if ((syntaxPosition = syntax.matcherPosition(paramCmdContent, syntax.getLabel())).getStart() > -1) {
+                            Variable varParam = new Variable(lineDetail);
                             varParam.setType(syntaxPosition.getGroup());
-                            paramCmdContent = paramCmdContent.substring(syntaxPosition.getEnd()).trim();
+                            varParam.setValue(evalValueGroup(base, caju, lineDetail, syntax, paramCmdContent.substring(syntaxPosition.getEnd()).trim()));
+                            groups.put(varParamKey, varParam);
+                        } else {
+                            groups.put(varParamKey, evalValueGroup(base, caju, lineDetail, syntax, paramCmdContent));
                         }
-                        varParam.setKey(varParamKey);
-                        varParam.setValue(evalValueGroup(base, caju, lineDetail, syntax, paramCmdContent));
-                        base.addElement(varParam);
                         if (syntaxPositionParam.getStart() == -1) {
                             cmd = cmd.concat(varParamKey);
                         } else {
@@ -648,27 +772,18 @@ public class Base implements Element, java.io.Serializable, Cloneable {
                 }
                 cmd = cmd.concat(cmdBase.substring(syntaxParameterEnd.getStart()));
             }
-            c.setCommand(cmd);
-            var.setValue(c);
-            base.addElement(var);
-            return evalValueGroup(base, caju, lineDetail, syntax, script.replace((CharSequence)cmdBase, (CharSequence)varKey));
+            groups.put(varKey, command(lineDetail, cmd));
+            return evalValueGroup(base, caju, lineDetail, syntax, replaceFirst(script, cmdBase, varKey));
         } else if ((syntaxPosition = syntax.matcherPosition(script, syntax.getGroup())).getStart() > -1 || (syntaxPosition = syntax.matcherPosition(script, syntax.getArray())).getStart() > -1) {
             String varKey = CajuScript.CAJU_VARS_GROUP.concat(caju.nextVarsCounter()).concat(Long.toString(varsGroupCounter));
             varsGroupCounter++;
-            Variable var = new Variable(lineDetail);
-            var.setKey(varKey);
-            var.setValue(evalValue(base, caju, lineDetail, syntax, syntaxPosition.getGroup(), syntaxPosition.getPatternHashCode() == SyntaxPosition.getPatternHashCode(syntax.getArray())));
-            base.addElement(var);
-            return evalValueGroup(base, caju, lineDetail, syntax, script.replace((CharSequence)syntaxPosition.getAllContent(), (CharSequence)varKey));
+            groups.put(varKey, evalValue(base, caju, lineDetail, syntax, syntaxPosition.getGroup(), syntaxPosition.getPatternHashCode() == SyntaxPosition.getPatternHashCode(syntax.getArray())));
+            return evalValueGroup(base, caju, lineDetail, syntax, replaceFirst(script, syntaxPosition.getAllContent(), varKey));
         } else {
             if (isArray) {
                 script = scriptBackup;
             }
-            if ((syntaxPosition = syntax.firstOperatorConditional(script)).getStart() > -1
-                || (syntaxPosition = syntax.firstOperatorLogical(script)).getStart() > -1) {
-                return condition(base, caju, lineDetail, syntax, script);
-            }
-            return evalValueSingle(base, caju, lineDetail, syntax, script);
+            return expression(caju, lineDetail, syntax, script);
         }
     }
     
@@ -31,6 +31,7 @@ import org.cajuscript.CajuScriptException;
  */
 public class Break extends Base {
     private String label = "";
+    private transient volatile Signal signal = null;
     
     /**
      * Create new Break.
@@ -54,6 +55,7 @@ public class Break extends Base {
      */
     public void setLabel(String label) {
         this.label = label;
+        this.signal = null;
     }
     
     /**
@@ -66,13 +68,9 @@ public class Break extends Base {
      */
     @Override
     public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
-        caju.setRunningLine(getLineDetail());
-        Value v = new Value(caju, context, syntax);
-        if (getLabel().length() != 0) {
-            v.setFlag("break:".concat(getLabel()));
-        } else {
-            v.setFlag("break");
+        if (signal == null) {
+            signal = getLabel().length() != 0 ? new Signal(Signal.Action.BREAK, getLabel()) : Signal.BREAK;
         }
-        return v;
+        return signal;
     }
 }
@@ -19,21 +19,32 @@
 
 package org.cajuscript.parser;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 import org.cajuscript.CajuScript;
 import org.cajuscript.Context;
 import org.cajuscript.Value;
 import org.cajuscript.Syntax;
 import org.cajuscript.CajuScriptException;
+import org.cajuscript.cmd.CommandPath;
 
 /**
  * Script element of type command.
+ * <p>A call keeps the method invoked by his first execution, shared by all
+ * contexts, then the method is not searched again on each call of the
+ * function where is the command. If other method is invoked the call turns
+ * generic, and each context searches his own method. The method is
+ * published to the other threads by a volatile field.</p>
  * @author eduveks
  */
 public class Command extends Base {
     private String type = "";
     private String command = "";
-    private String contextsKey;
-    private String valueKey;
+    private List<Element> arguments = new ArrayList<Element>();
+    private CommandPath commandPath = null;
+    private transient volatile Method method = null;
+    private transient volatile boolean generic = false;
     
     /**
      * Create new Command.
@@ -41,8 +52,6 @@ public class Command extends Base {
      */
     public Command(LineDetail line) {
         super(line);
-        contextsKey = org.cajuscript.CajuScript.CAJU_VARS.concat("_contexts_").concat(Integer.toString(this.hashCode()));
-        valueKey = org.cajuscript.CajuScript.CAJU_VARS.concat("_value_").concat(Integer.toString(this.hashCode()));
     }
 
     /**
@@ -77,6 +86,49 @@ public class Command extends Base {
         command = c.trim();
     }
     
+    /**
+     * Get arguments, elements that give values used by the command. Inside
+     * of the command each argument is referenced by the name of arguments
+     * followed by the index.
+     * @return Elements of the arguments
+     */
+    public List<Element> getArguments() {
+        return arguments;
+    }
+    
+    /**
+     * Add argument.
+     * @param argument Element of the argument
+     */
+    public void addArgument(Element argument) {
+        arguments.add(argument);
+    }
+    
+    /**
+     * Replace argument.
+     * @param index Index of the argument
+     * @param argument Element of the argument
+     */
+    public void setArgument(int index, Element argument) {
+        arguments.set(index, argument);
+    }
+    
+    /**
+     * Get command path, the command split by the parse.
+     * @return Command path, or null if the command is loaded by the script.
+     */
+    public CommandPath getCommandPath() {
+        return commandPath;
+    }
+    
+    /**
+     * Set command path, the command split by the parse.
+     * @param commandPath Command path
+     */
+    public void setCommandPath(CommandPath commandPath) {
+        this.commandPath = commandPath;
+    }
+    
     /**
      * Executed this element.
      * @param caju CajuScript
@@ -85,25 +137,53 @@ public class Command extends Base {
      * @return Value returned by execution
      * @throws org.cajuscript.CajuScriptException Errors ocurred on execution
      */
-    @SuppressWarnings("unchecked")
     @Override
     public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
-        caju.setRunningLine(getLineDetail());
-        Value contextsValue = context.getVar(contextsKey);
-        if (contextsValue == null) {
-            contextsValue = caju.toValue(new java.util.ArrayList<Context>());
-            context.setVar(contextsKey, contextsValue);
-        }
-        java.util.ArrayList<Context> contexts = (java.util.ArrayList<Context>)contextsValue.getValue();
-        Value value = context.getVar(valueKey);
-        if (value == null || !contexts.contains(context)) {
-            contexts.add(context);
+        Value value = context.getElementValue(this);
+        boolean isNew = value == null;
+        if (isNew) {
             value = new Value(caju, context, syntax);
+        }
+        for (int i = 0; i < arguments.size(); i++) {
+            value.setArgument(i, arguments.get(i).execute(caju, context, syntax));
+        }
+        invoke(caju, context, value, isNew);
+        if (isNew) {
+            context.setElementValue(this, value);
+        }
+        return value;
+    }
+
+    /**
+     * Execute the command over a value, with the arguments already defined.
+     * @param caju CajuScript
+     * @param context Context
+     * @param value Value of the command
+     * @param isNew If the value was not used by the command before
+     * @throws org.cajuscript.CajuScriptException Errors ocurred on execution
+     */
+    void invoke(CajuScript caju, Context context, Value value, boolean isNew) throws CajuScriptException {
+        if (commandPath != null) {
+            if (type.length() != 0) {
+                value.setClassType(type);
+            }
+            if (commandPath.getType() == CommandPath.Type.CALL && !generic) {
+                Method cached = method;
+                Method invoked = value.setCommand(commandPath, cached);
+                if (cached == null) {
+                    method = invoked;
+                } else if (invoked != cached) {
+                    generic = true;
+                    method = null;
+                }
+            } else {
+                value.setCommand(commandPath);
+            }
+        } else if (isNew) {
             if (type.length() != 0) {
                 value.setClassType(type);
             }
             value.setScript(command);
-            context.setVar(valueKey, value);
         } else if (value.isCommand()) {
             if (type.length() != 0) {
                 value.setClassType(type);
@@ -111,6 +191,5 @@ public class Command extends Base {
             value.setContext(context);
             value.setCommand(command);
         }
-        return value;
     }
 }
@@ -0,0 +1,88 @@
+/*
+ * Constant.java
+ * 
+ * This file is part of CajuScript.
+ * 
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option) 
+ * any later version.
+ * 
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cajuscript.parser;
+
+import org.cajuscript.CajuScript;
+import org.cajuscript.Context;
+import org.cajuscript.Value;
+import org.cajuscript.Syntax;
+import org.cajuscript.CajuScriptException;
+
+/**
+ * Script element of type constant, a literal resolved when parsing.
+ * <p>The value is created only once and is shared by every execution,
+ * then is read only and the assignments use a copy.</p>
+ * @author eduveks
+ */
+public class Constant extends Base {
+    private Object constant = null;
+    private transient Value value = null;
+    
+    /**
+     * Create new Constant.
+     * @param line Line detail
+     * @param value Value of the constant
+     */
+    public Constant(LineDetail line, Value value) {
+        super(line);
+        this.constant = value.getValue();
+        this.value = value;
+        value.setReadOnly();
+    }
+
+    /**
+     * Get value.
+     * @return Value of the constant
+     */
+    public Value getValue() {
+        return value;
+    }
+    
+    /**
+     * Get the object of the value.
+     * @return Object of the constant
+     */
+    public Object getConstant() {
+        return constant;
+    }
+    
+    /**
+     * Executed this element.
+     * @param caju CajuScript
+     * @param context Context
+     * @param syntax Syntax
+     * @return Value of the constant
+     * @throws org.cajuscript.CajuScriptException Errors ocurred on execution
+     */
+    @Override
+    public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
+        return value;
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        value = new Value(null, null, null);
+        try {
+            value.setValue(constant);
+            value.setReadOnly();
+        } catch (CajuScriptException e) {
+            throw new java.io.InvalidObjectException(e.getMessage());
+        }
+    }
+}
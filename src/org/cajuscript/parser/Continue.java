@@ -31,6 +31,7 @@ import org.cajuscript.CajuScriptException;
  */
 public class Continue extends Base {
     private String label = "";
+    private transient volatile Signal signal = null;
     
     /**
      * Create new Continue.
@@ -54,6 +55,7 @@ public class Continue extends Base {
      */
     public void setLabel(String label) {
         this.label = label;
+        this.signal = null;
     }
     
     /**
@@ -66,13 +68,9 @@ public class Continue extends Base {
      */
     @Override
     public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
-        caju.setRunningLine(getLineDetail());
-        Value v = new Value(caju, context, syntax);
-        if (getLabel().length() != 0) {
-            v.setFlag("continue:".concat(getLabel()));
-        } else {
-            v.setFlag("continue");
+        if (signal == null) {
+            signal = getLabel().length() != 0 ? new Signal(Signal.Action.CONTINUE, getLabel()) : Signal.CONTINUE;
         }
-        return v;
+        return signal;
     }
 }
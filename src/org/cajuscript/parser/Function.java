@@ -19,12 +19,17 @@
 
 package org.cajuscript.parser;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+import org.cajuscript.Budget;
 import org.cajuscript.CajuScript;
 import org.cajuscript.Context;
 import org.cajuscript.Value;
 import org.cajuscript.Syntax;
 import org.cajuscript.CajuScriptException;
+import org.cajuscript.Profiler;
 import org.cajuscript.SyntaxPosition;
 import org.cajuscript.compiler.Executable;
 
@@ -35,6 +40,7 @@ import org.cajuscript.compiler.Executable;
 public class Function extends Base {
     private String name = "";
     private String[] paramKey = new String[0];
+    private transient int localsSize = -1;
     
     /**
      * Create new Function.
@@ -125,6 +131,44 @@ public class Function extends Base {
         this.paramKey = paramKey;
     }
 
+    /**
+     * Create the context where the function is executed, an activation frame
+     * sized by the local variables of the function.
+     * @param caju CajuScript instance
+     * @return Newly context
+     */
+    public Context createContext(CajuScript caju) {
+        if (localsSize == -1) {
+            Set<String> locals = new HashSet<String>();
+            for (String key : paramKey) {
+                locals.add(key);
+            }
+            locals(this, locals);
+            localsSize = locals.size();
+        }
+        return new Context(caju.getContext(), localsSize);
+    }
+
+    private static void locals(Element element, Set<String> locals) {
+        if (element == null) {
+            return;
+        }
+        if (element instanceof Variable && ((Variable) element).getKey().length() != 0) {
+            locals.add(((Variable) element).getKey());
+        } else if (element instanceof Loop && ((Loop) element).getEachVar() != null) {
+            locals.add(((Loop) element).getEachVar());
+        } else if (element instanceof TryCatch) {
+            TryCatch tryCatch = (TryCatch) element;
+            locals(tryCatch.getError(), locals);
+            locals(tryCatch.getTry(), locals);
+            locals(tryCatch.getCatch(), locals);
+            locals(tryCatch.getFinally(), locals);
+        }
+        for (Element child : element.getElements()) {
+            locals(child, locals);
+        }
+    }
+
     /**
      * Run function.
      * @param caju CajuScript instance
@@ -133,18 +177,52 @@ public class Function extends Base {
      * @throws org.cajuscript.CajuScriptException Errors ocurred on execution
      */
     public Value invoke(CajuScript caju, Context context, Syntax syntax, Value... paramValue) throws CajuScriptException {
-        if (executable == null) {
-            caju.setRunningLine(getLineDetail());
+        Profiler profiler = caju.getProfiler();
+        if (profiler == null) {
+            return run(caju, context, syntax, paramValue);
+        }
+        profiler.enter(name.length() == 0 ? "script" : name);
+        try {
+            return run(caju, context, syntax, paramValue);
+        } finally {
+            profiler.exit();
+        }
+    }
+
+    private Value run(CajuScript caju, Context context, Syntax syntax, Value... paramValue) throws CajuScriptException {
+        if (executable == null && caju.getProfiler() != null) {
+            caju.getProfiler().line(getLineDetail());
         }
         for (int i = 0; i < paramValue.length; i++) {
             context.setVar(paramKey[i], paramValue[i]);
         }
         if (executable == null) {
-            for (Element element : elements) {
-                Value v = element.execute(caju, context, syntax);
-                if (v != null && canElementReturn(element)) {
-                    return v;
+            body: while (true) {
+                Budget budget = caju.getBudget();
+                if (budget != null) {
+                    budget.call(caju, context, elements.size());
+                }
+                if (caju.isVirtualMachine()) {
+                    Value v = getProgram().execute(caju, context, syntax);
+                    if (v == Signal.TAIL_CALL) {
+                        continue body;
+                    } else if (v != null && !(v instanceof Signal)) {
+                        return v;
+                    }
+                    break;
+                }
+                for (Element element : elements) {
+                    Value v = executeElement(caju, context, syntax, element);
+                    if (v != null && canElementReturn(element)) {
+                        if (v == Signal.TAIL_CALL) {
+                            continue body;
+                        } else if (v instanceof Signal) {
+                            break body;
+                        }
+                        return v;
+                    }
                 }
+                break;
             }
         } else {
             if (name.length() == 0) {
@@ -159,6 +237,13 @@ public class Function extends Base {
                     if (v != null) {
                         return v;
                     }
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof CajuScriptException) {
+                        throw (CajuScriptException) e.getCause();
+                    } else if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new CajuScriptException(e.getCause());
                 } catch (Exception e) {
                     throw new CajuScriptException(e);
                 }
@@ -188,7 +273,6 @@ public class Function extends Base {
      */
     @Override
     public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
-        caju.setRunningLine(getLineDetail());
         return null;
     }
 }
@@ -66,17 +66,14 @@ public class If extends Base {
      */
     @Override
     public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
-        caju.setRunningLine(getLineDetail());
-        if (condition.execute(caju, context, syntax).getBooleanValue()) {
+        if (executeElement(caju, context, syntax, condition).getBooleanValue()) {
             for (Element element : elements) {
-                Value v = element.execute(caju, context, syntax);
+                Value v = executeElement(caju, context, syntax, element);
                 if (v != null && canElementReturn(element)) {
                     return v;
                 }
             }
-            Value v = caju.toValue(new Boolean(true), context, syntax);
-            v.setFlag("if");
-            return v;
+            return Signal.IF;
         } else {
             return null;
         }
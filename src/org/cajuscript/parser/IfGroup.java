@@ -49,11 +49,10 @@ public class IfGroup extends Base {
      */
     @Override
     public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
-        caju.setRunningLine(getLineDetail());
         for (Element element : elements) {
-            Value v = element.execute(caju, context, syntax);
+            Value v = executeElement(caju, context, syntax, element);
             if (v != null) {
-                if (!v.getFlag().equals("if")) {
+                if (v != Signal.IF) {
                     return v;
                 }
                 break;
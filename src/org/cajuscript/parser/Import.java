@@ -66,7 +66,6 @@ public class Import extends Base {
      */
     @Override
     public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
-        caju.setRunningLine(getLineDetail());
         for (Element element : elements) {
             element.execute(caju, context, syntax);
         }
@@ -19,6 +19,14 @@
 
 package org.cajuscript.parser;
 
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import org.cajuscript.Array;
+import org.cajuscript.Budget;
 import org.cajuscript.CajuScript;
 import org.cajuscript.Context;
 import org.cajuscript.Value;
@@ -32,6 +40,109 @@ import org.cajuscript.CajuScriptException;
 public class Loop extends Base {
     private Element condition = null;
     private String label = "";
+    private String eachVar = null;
+    private Element eachValues = null;
+
+    /**
+     * State of a "for each" loop in execution, is used to get the index and
+     * the key of the current interaction.
+     */
+    public static class Each {
+        private int index = -1;
+        private Object key = null;
+        private Object value = null;
+        private List<?> list = null;
+        private Object array = null;
+        private Array.Access access = null;
+        private int size = 0;
+        private Iterator<?> iterator = null;
+        private Enumeration<?> enumeration = null;
+        private boolean entries = false;
+
+        /**
+         * Create the state of a loop over the values.
+         * @param values Arrays, org.cajuscript.Array, java.util.Collection,
+         *               java.util.Enumeration or java.util.Map.
+         */
+        public Each(Object values) {
+            if (values instanceof List && values instanceof RandomAccess) {
+                list = (List<?>) values;
+            } else if (values instanceof Map) {
+                iterator = ((Map<?, ?>) values).entrySet().iterator();
+                entries = true;
+            } else if (values instanceof Collection) {
+                iterator = ((Collection<?>) values).iterator();
+            } else if (values instanceof Enumeration) {
+                enumeration = (Enumeration<?>) values;
+            } else if (values instanceof Array) {
+                array = values;
+                size = ((Array) values).size();
+            } else {
+                array = values;
+                access = Array.access(values);
+                size = Array.size(values);
+            }
+        }
+
+        /**
+         * Go to the next interaction.
+         * @return If has one more value.
+         */
+        public boolean next() {
+            if (list != null) {
+                if (index + 1 >= list.size()) {
+                    return false;
+                }
+                value = list.get(index + 1);
+            } else if (iterator != null) {
+                if (!iterator.hasNext()) {
+                    return false;
+                }
+                value = iterator.next();
+                if (entries) {
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) value;
+                    key = entry.getKey();
+                    value = entry.getValue();
+                }
+            } else if (enumeration != null) {
+                if (!enumeration.hasMoreElements()) {
+                    return false;
+                }
+                value = enumeration.nextElement();
+            } else {
+                if (index + 1 >= size) {
+                    return false;
+                }
+                value = access == null ? ((Array) array).get(index + 1) : access.get(array, index + 1);
+            }
+            index++;
+            return true;
+        }
+
+        /**
+         * Get the value of the current interaction.
+         * @return Value.
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * Get the index of the current interaction.
+         * @return Index.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Get the key of the current interaction over a java.util.Map.
+         * @return Key.
+         */
+        public Object getKey() {
+            return key;
+        }
+    }
     
     /**
      * Create new Loop.
@@ -73,6 +184,35 @@ public class Loop extends Base {
         this.label = label;
     }
     
+    /**
+     * Get the variable of the "for each".
+     * @return Variable name, or null if is not a "for each".
+     */
+    public String getEachVar() {
+        return eachVar;
+    }
+
+    /**
+     * Get the element of the values of the "for each".
+     * @return Element of values, or null if is not a "for each".
+     */
+    public Element getEachValues() {
+        return eachValues;
+    }
+
+    /**
+     * Define the loop like a "for each", then the condition is not executed
+     * and the values are interacted directly.
+     * @param var Variable to receive the values.
+     * @param values Element of the values, supports arrays,
+     *               java.util.Collection, java.util.Enumeration and
+     *               java.util.Map.
+     */
+    public void setEach(String var, Element values) {
+        this.eachVar = var;
+        this.eachValues = values;
+    }
+
     /**
      * Executed this element and all childs elements.
      * @param caju CajuScript
@@ -83,42 +223,64 @@ public class Loop extends Base {
      */
     @Override
     public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
-        caju.setRunningLine(getLineDetail());
-        loop: while (true) {
-            if (condition.execute(caju, context, syntax).getBooleanValue()) {
-                for (Element element : elements) {
-                    Value v = element.execute(caju, context, syntax);
-                    if (v != null && canElementReturn(element)) {
-                        if (element instanceof Break && v.getFlag().length() == 0) {
-                            break loop;
-                        } else if (element instanceof Continue && v.getFlag().length() == 0) {
-                            continue loop;
-                        } else if (v.getFlag().length() != 0) {
-                            String act, lbl = "";
-                            int f = v.getFlag().indexOf(':');
-                            if (f > -1) {
-                                act = v.getFlag().substring(0, f);
-                                lbl = v.getFlag().substring(f+1);
-                            } else {
-                                act = v.getFlag();
-                            }
-                            if (!lbl.equals(getLabel())) {
-                                return v;
-                            } else {
-                                v.setFlag("");
-                            }
-                            if (act.equals("break")) {
-                                break loop;
-                            } else if (act.equals("continue")) {
-                                continue loop;
-                            }
-                        } else {
-                            return v;
-                        }
+        if (eachVar != null) {
+            return executeEach(caju, context, syntax);
+        }
+        while (executeElement(caju, context, syntax, condition).getBooleanValue()) {
+            Value v = executeElements(caju, context, syntax);
+            if (v == Signal.BREAK) {
+                break;
+            } else if (v != null) {
+                return v;
+            }
+        }
+        return null;
+    }
+
+    private Value executeEach(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
+        Each each = new Each(executeElement(caju, context, syntax, eachValues).getValue());
+        Each previous = caju.getEach(eachVar);
+        caju.setEach(eachVar, each);
+        Value value = caju.toValue(null, context, syntax);
+        try {
+            while (each.next()) {
+                value.setValue(each.getValue());
+                context.setVar(eachVar, value);
+                Value v = executeElements(caju, context, syntax);
+                if (v == Signal.BREAK) {
+                    break;
+                } else if (v != null) {
+                    return v;
+                }
+            }
+            return null;
+        } finally {
+            caju.setEach(eachVar, previous);
+        }
+    }
+
+    private Value executeElements(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
+        Budget budget = caju.getBudget();
+        if (budget != null) {
+            budget.iteration(caju, context, elements.size());
+        }
+        for (Element element : elements) {
+            Value v = executeElement(caju, context, syntax, element);
+            if (v != null && canElementReturn(element)) {
+                if (v instanceof Signal) {
+                    Signal signal = (Signal) v;
+                    if (signal.getLabel().length() != 0 && !signal.getLabel().equals(label)) {
+                        return v;
+                    } else if (signal.getAction() == Signal.Action.BREAK) {
+                        return Signal.BREAK;
+                    } else if (signal.getAction() == Signal.Action.CONTINUE) {
+                        return null;
+                    } else if (signal.getAction() == Signal.Action.TAIL_CALL) {
+                        return v;
                     }
+                } else {
+                    return v;
                 }
-            } else {
-                break;
             }
         }
         return null;
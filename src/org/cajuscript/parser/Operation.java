@@ -36,8 +36,9 @@ public class Operation extends Base {
 	private Element firstCommand = null;
 	private Element secondCommand = null;
 	private Operator operator = null;
-	private String contextsKey;
-	private String valueKey;
+	private volatile Specialization specialization = null;
+	private volatile boolean generic = false;
+	private String append = null;
 
 	/**
 	 * Create new Operation.
@@ -47,10 +48,6 @@ public class Operation extends Base {
 	 */
 	public Operation(LineDetail line) {
 		super(line);
-		contextsKey = org.cajuscript.CajuScript.CAJU_VARS.concat("_contexts_")
-				.concat(Integer.toString(this.hashCode()));
-		valueKey = org.cajuscript.CajuScript.CAJU_VARS.concat("_value_")
-				.concat(Integer.toString(this.hashCode()));
 	}
 
 	/**
@@ -99,6 +96,61 @@ public class Operation extends Base {
 		this.secondCommand = secondCommand;
 	}
 
+	/**
+	 * Get the specialization of the operation, defined by the types
+	 * inferred to the commands or by the types of the values of the first
+	 * execution.
+	 * 
+	 * @return Specialization, or null if is generic
+	 */
+	public Specialization getSpecialization() {
+		return specialization;
+	}
+
+	/**
+	 * Set the specialization of the operation, the types of the values are
+	 * still checked before the specialized execution.
+	 * 
+	 * @param specialization
+	 *            Specialization, or null to be generic
+	 */
+	public void setSpecialization(Specialization specialization) {
+		this.specialization = specialization;
+		this.generic = false;
+	}
+
+	/**
+	 * Get the variable appended by the operation, when the operation is the
+	 * addition assigned to the same variable of the first command.
+	 * 
+	 * @return Key of the variable, or null if the operation is not an append
+	 */
+	public String getAppend() {
+		return append;
+	}
+
+	/**
+	 * Set the variable appended by the operation, then while the variable
+	 * is the string of the last execution the second command is appended
+	 * to the string without create a new string.
+	 * 
+	 * @param append
+	 *            Key of the variable, or null to not append
+	 */
+	public void setAppend(String append) {
+		this.append = append;
+	}
+
+	/**
+	 * If the operation is generic, because the values of the commands were
+	 * not of the types of the specialization.
+	 * 
+	 * @return Is generic
+	 */
+	public boolean isGeneric() {
+		return generic;
+	}
+
 	/**
 	 * Executed this element and all childs elements.
 	 * 
@@ -115,29 +167,274 @@ public class Operation extends Base {
 	@Override
 	public Value execute(CajuScript caju, Context context, Syntax syntax)
 			throws CajuScriptException {
-		caju.setRunningLine(getLineDetail());
 		for (Element element : elements) {
 			element.execute(caju, context, syntax);
 		}
-		Value contextsValue = context.getVar(contextsKey);
-		if (contextsValue == null) {
-			contextsValue = caju.toValue(new java.util.ArrayList<Context>());
-			context.setVar(contextsKey, contextsValue);
-		}
-		java.util.ArrayList<Context> contexts = (java.util.ArrayList<Context>) contextsValue
-				.getValue();
-		Value v = context.getVar(valueKey);
-		if (v == null || !contexts.contains(context)) {
-			contexts.add(context);
+		Value v = context.getElementValue(this);
+		if (v == null) {
 			v = new Value(caju, context, syntax);
-			context.setVar(valueKey, v);
+			context.setElementValue(this, v);
+		}
+		if (append != null) {
+			Value v2 = secondCommand.execute(caju, context, syntax);
+			if (append(context, append, v, v2)) {
+				return v;
+			}
+			return operate(v, firstCommand.execute(caju, context, syntax), v2);
 		}
 		Value v1 = firstCommand.execute(caju, context, syntax);
 		Value v2 = secondCommand.execute(caju, context, syntax);
+		return operate(v, v1, v2);
+	}
+
+	/**
+	 * Append the value of the second command to the string of the variable,
+	 * only if the variable is still the value of the operation.
+	 * 
+	 * @param context
+	 *            Context
+	 * @param key
+	 *            Key of the variable
+	 * @param v
+	 *            Value of the result
+	 * @param v2
+	 *            Value of the second command
+	 * @return If was appended, false if the generic operation is needed
+	 * @throws org.cajuscript.CajuScriptException
+	 *             Errors ocurred on execution
+	 */
+	public static boolean append(Context context, String key, Value v, Value v2)
+			throws CajuScriptException {
+		if (v == null || v.getType() != Value.Type.STRING || context.getVar(key) != v
+				|| !(v2.getType() == Value.Type.STRING || v2.getType() == Value.Type.NUMBER
+						|| v2.getType() == Value.Type.OBJECT)) {
+			return false;
+		}
+		return v.appendValue(v2.getStringValue());
+	}
+
+	/**
+	 * Execute the operation over the values of the commands.
+	 * 
+	 * @param v
+	 *            Value of the result
+	 * @param v1
+	 *            Value of the first command
+	 * @param v2
+	 *            Value of the second command
+	 * @return Value of the result
+	 * @throws org.cajuscript.CajuScriptException
+	 *             Errors ocurred on execution
+	 */
+	Value operate(Value v, Value v1, Value v2) throws CajuScriptException {
+		Specialization s = specialization;
+		if (s != null) {
+			if (s.execute(operator, v, v1, v2)) {
+				return v;
+			}
+			generic = true;
+			specialization = null;
+		}
 		operator.compare(v, v1, v2);
+		if (!generic) {
+			s = Specialization.observe(operator, v1, v2);
+			if (s == null) {
+				generic = true;
+			} else {
+				specialization = s;
+			}
+		}
 		return v;
 	}
 
+	/**
+	 * Specializations of the operations by the types of the commands, when
+	 * the values are not of the types the generic operator is used.
+	 * <p>An operation not inferred is specialized by the values of his
+	 * first execution, and when the values of the commands change of type
+	 * the operation turns generic forever, then the types are not checked
+	 * twice.</p>
+	 * <p>The state is shared by all contexts of the parsed script, and each
+	 * specialization checks the types before executing, then a state
+	 * changed by other thread only costs a failed check.</p>
+	 */
+	public static enum Specialization {
+		INTEGER {
+			@Override
+			public boolean execute(Operator operator, Value v, Value v1, Value v2) {
+				if (v1.getType() != Value.Type.NUMBER || v2.getType() != Value.Type.NUMBER
+						|| v1.getTypeNumber() != Value.TypeNumber.INTEGER
+						|| v2.getTypeNumber() != Value.TypeNumber.INTEGER) {
+					return false;
+				}
+				int n1 = v1.getNumberIntegerValue();
+				int n2 = v2.getNumberIntegerValue();
+				switch (operator) {
+				case ADDITION:
+					v.setNumberValue(n1 + n2);
+					return true;
+				case SUBTRACTION:
+					v.setNumberValue(n1 - n2);
+					return true;
+				case MULTIPLICATION:
+					v.setNumberValue(n1 * n2);
+					return true;
+				case DIVISION:
+					v.setNumberValue(n1 / n2);
+					return true;
+				case MODULES:
+					v.setNumberValue(n1 % n2);
+					return true;
+				case LESS:
+					return bool(v, n1 < n2);
+				case GREATER:
+					return bool(v, n1 > n2);
+				case LESS_EQUAL:
+					return bool(v, n1 <= n2);
+				case GREATER_EQUAL:
+					return bool(v, n1 >= n2);
+				case EQUAL:
+					return bool(v, n1 == n2);
+				case NOT_EQUAL:
+					return bool(v, n1 != n2);
+				default:
+					return false;
+				}
+			}
+		},
+		LONG {
+			@Override
+			public boolean execute(Operator operator, Value v, Value v1, Value v2) {
+				Value.TypeNumber t1 = v1.getTypeNumber();
+				Value.TypeNumber t2 = v2.getTypeNumber();
+				if (v1.getType() != Value.Type.NUMBER || v2.getType() != Value.Type.NUMBER
+						|| (t1 != Value.TypeNumber.LONG && t1 != Value.TypeNumber.INTEGER)
+						|| (t2 != Value.TypeNumber.LONG && t2 != Value.TypeNumber.INTEGER)
+						|| (t1 == Value.TypeNumber.INTEGER && t2 == Value.TypeNumber.INTEGER)) {
+					return false;
+				}
+				long n1 = v1.getNumberLongValue();
+				long n2 = v2.getNumberLongValue();
+				switch (operator) {
+				case ADDITION:
+					v.setNumberValue(n1 + n2);
+					return true;
+				case SUBTRACTION:
+					v.setNumberValue(n1 - n2);
+					return true;
+				case MULTIPLICATION:
+					v.setNumberValue(n1 * n2);
+					return true;
+				case DIVISION:
+					v.setNumberValue(n1 / n2);
+					return true;
+				case MODULES:
+					v.setNumberValue(n1 % n2);
+					return true;
+				default:
+					return false;
+				}
+			}
+		},
+		STRING {
+			@Override
+			public boolean execute(Operator operator, Value v, Value v1, Value v2) {
+				if (operator != Operator.ADDITION
+						|| !((v1.getType() == Value.Type.STRING && isText(v2)) || (v2.getType() == Value.Type.STRING && isText(v1)))) {
+					return false;
+				}
+				try {
+					v.setValue(v1.getStringValue().concat(v2.getStringValue()));
+				} catch (CajuScriptException e) {
+					return false;
+				}
+				return true;
+			}
+		};
+
+		/**
+		 * Execute the operation specialized.
+		 * 
+		 * @param operator
+		 *            Operator
+		 * @param v
+		 *            Value of the result
+		 * @param v1
+		 *            Value of the first command
+		 * @param v2
+		 *            Value of the second command
+		 * @return If was executed, false if the values are not of the types
+		 *         of the specialization
+		 */
+		public abstract boolean execute(Operator operator, Value v, Value v1, Value v2);
+
+		/**
+		 * Specialization to the values of the commands.
+		 * 
+		 * @param operator
+		 *            Operator
+		 * @param v1
+		 *            Value of the first command
+		 * @param v2
+		 *            Value of the second command
+		 * @return Specialization, or null if the operation is generic to
+		 *         these values
+		 */
+		public static Specialization observe(Operator operator, Value v1, Value v2) {
+			Value.TypeNumber t1 = v1.getType() == Value.Type.NUMBER ? v1.getTypeNumber() : null;
+			Value.TypeNumber t2 = v2.getType() == Value.Type.NUMBER ? v2.getTypeNumber() : null;
+			switch (operator) {
+			case ADDITION:
+				if ((v1.getType() == Value.Type.STRING && isText(v2))
+						|| (v2.getType() == Value.Type.STRING && isText(v1))) {
+					return STRING;
+				}
+				return arithmetic(t1, t2);
+			case SUBTRACTION:
+			case MULTIPLICATION:
+			case DIVISION:
+			case MODULES:
+				return arithmetic(t1, t2);
+			case LESS:
+			case GREATER:
+			case LESS_EQUAL:
+			case GREATER_EQUAL:
+			case EQUAL:
+			case NOT_EQUAL:
+				if (t1 == Value.TypeNumber.INTEGER && t2 == Value.TypeNumber.INTEGER) {
+					return INTEGER;
+				}
+				return null;
+			default:
+				return null;
+			}
+		}
+
+		private static Specialization arithmetic(Value.TypeNumber t1, Value.TypeNumber t2) {
+			if (t1 == Value.TypeNumber.INTEGER && t2 == Value.TypeNumber.INTEGER) {
+				return INTEGER;
+			} else if ((t1 == Value.TypeNumber.INTEGER || t1 == Value.TypeNumber.LONG)
+					&& (t2 == Value.TypeNumber.INTEGER || t2 == Value.TypeNumber.LONG)) {
+				return LONG;
+			}
+			return null;
+		}
+
+		private static boolean bool(Value v, boolean b) {
+			try {
+				v.setValue(b);
+			} catch (CajuScriptException e) {
+				return false;
+			}
+			return true;
+		}
+
+		private static boolean isText(Value v) {
+			return v.getType() == Value.Type.STRING || v.getType() == Value.Type.NUMBER
+					|| v.getType() == Value.Type.OBJECT;
+		}
+	}
+
 	/**
 	 * Operators.
 	 */
@@ -150,7 +447,7 @@ public class Operation extends Base {
 						&& v2.getType() == Value.Type.NUMBER) {
 					if (v1.getTypeNumber() == Value.TypeNumber.INTEGER
 							&& v2.getTypeNumber() == Value.TypeNumber.INTEGER) {
-						v.setValue(new Integer(v1.getNumberIntegerValue()
+						v.setNumberValue((v1.getNumberIntegerValue()
 								+ v2.getNumberIntegerValue()));
 					} else if ((v1.getTypeNumber() == Value.TypeNumber.INTEGER || v1
 							.getTypeNumber() == Value.TypeNumber.FLOAT)
@@ -162,7 +459,7 @@ public class Operation extends Base {
 							.getTypeNumber() == Value.TypeNumber.LONG)
 							&& (v2.getTypeNumber() == Value.TypeNumber.INTEGER || v2
 									.getTypeNumber() == Value.TypeNumber.LONG)) {
-						v.setValue(new Long(v1.getNumberLongValue()
+						v.setNumberValue((v1.getNumberLongValue()
 								+ v2.getNumberLongValue()));
 					} else {
 						v.setValue(new Double(v1.getNumberDoubleValue()
@@ -189,7 +486,7 @@ public class Operation extends Base {
 						&& v2.getType() == Value.Type.NUMBER) {
 					if (v1.getTypeNumber() == Value.TypeNumber.INTEGER
 							&& v2.getTypeNumber() == Value.TypeNumber.INTEGER) {
-						v.setValue(new Integer(v1.getNumberIntegerValue()
+						v.setNumberValue((v1.getNumberIntegerValue()
 								- v2.getNumberIntegerValue()));
 					} else if ((v1.getTypeNumber() == Value.TypeNumber.INTEGER || v1
 							.getTypeNumber() == Value.TypeNumber.FLOAT)
@@ -201,7 +498,7 @@ public class Operation extends Base {
 							.getTypeNumber() == Value.TypeNumber.LONG)
 							&& (v2.getTypeNumber() == Value.TypeNumber.INTEGER || v2
 									.getTypeNumber() == Value.TypeNumber.LONG)) {
-						v.setValue(new Long(v1.getNumberLongValue()
+						v.setNumberValue((v1.getNumberLongValue()
 								- v2.getNumberLongValue()));
 					} else {
 						v.setValue(new Double(v1.getNumberDoubleValue()
@@ -224,7 +521,7 @@ public class Operation extends Base {
 						&& v2.getType() == Value.Type.NUMBER) {
 					if (v1.getTypeNumber() == Value.TypeNumber.INTEGER
 							&& v2.getTypeNumber() == Value.TypeNumber.INTEGER) {
-						v.setValue(new Integer(v1.getNumberIntegerValue()
+						v.setNumberValue((v1.getNumberIntegerValue()
 								* v2.getNumberIntegerValue()));
 					} else if ((v1.getTypeNumber() == Value.TypeNumber.INTEGER || v1
 							.getTypeNumber() == Value.TypeNumber.FLOAT)
@@ -236,7 +533,7 @@ public class Operation extends Base {
 							.getTypeNumber() == Value.TypeNumber.LONG)
 							&& (v2.getTypeNumber() == Value.TypeNumber.INTEGER || v2
 									.getTypeNumber() == Value.TypeNumber.LONG)) {
-						v.setValue(new Long(v1.getNumberLongValue()
+						v.setNumberValue((v1.getNumberLongValue()
 								* v2.getNumberLongValue()));
 					} else {
 						v.setValue(new Double(v1.getNumberDoubleValue()
@@ -259,7 +556,7 @@ public class Operation extends Base {
 						&& v2.getType() == Value.Type.NUMBER) {
 					if (v1.getTypeNumber() == Value.TypeNumber.INTEGER
 							&& v2.getTypeNumber() == Value.TypeNumber.INTEGER) {
-						v.setValue(new Integer(v1.getNumberIntegerValue()
+						v.setNumberValue((v1.getNumberIntegerValue()
 								/ v2.getNumberIntegerValue()));
 					} else if ((v1.getTypeNumber() == Value.TypeNumber.INTEGER || v1
 							.getTypeNumber() == Value.TypeNumber.FLOAT)
@@ -271,7 +568,7 @@ public class Operation extends Base {
 							.getTypeNumber() == Value.TypeNumber.LONG)
 							&& (v2.getTypeNumber() == Value.TypeNumber.INTEGER || v2
 									.getTypeNumber() == Value.TypeNumber.LONG)) {
-						v.setValue(new Long(v1.getNumberLongValue()
+						v.setNumberValue((v1.getNumberLongValue()
 								/ v2.getNumberLongValue()));
 					} else {
 						v.setValue(new Double(v1.getNumberDoubleValue()
@@ -294,7 +591,7 @@ public class Operation extends Base {
 						&& v2.getType() == Value.Type.NUMBER) {
 					if (v1.getTypeNumber() == Value.TypeNumber.INTEGER
 							&& v2.getTypeNumber() == Value.TypeNumber.INTEGER) {
-						v.setValue(new Integer(v1.getNumberIntegerValue()
+						v.setNumberValue((v1.getNumberIntegerValue()
 								% v2.getNumberIntegerValue()));
 					} else if ((v1.getTypeNumber() == Value.TypeNumber.INTEGER || v1
 							.getTypeNumber() == Value.TypeNumber.FLOAT)
@@ -306,7 +603,7 @@ public class Operation extends Base {
 							.getTypeNumber() == Value.TypeNumber.LONG)
 							&& (v2.getTypeNumber() == Value.TypeNumber.INTEGER || v2
 									.getTypeNumber() == Value.TypeNumber.LONG)) {
-						v.setValue(new Long(v1.getNumberLongValue()
+						v.setNumberValue((v1.getNumberLongValue()
 								% v2.getNumberLongValue()));
 					} else {
 						v.setValue(new Double(v1.getNumberDoubleValue()
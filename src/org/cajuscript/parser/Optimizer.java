@@ -0,0 +1,483 @@
+/*
+ * Optimizer.java
+ * 
+ * This file is part of CajuScript.
+ * 
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option) 
+ * any later version.
+ * 
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cajuscript.parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.cajuscript.CajuScript;
+import org.cajuscript.Value;
+import org.cajuscript.Syntax;
+import org.cajuscript.CajuScriptException;
+import org.cajuscript.cmd.CommandPath;
+
+/**
+ * Optimizations done over the elements created by the parse, before the
+ * execution or the compilation.
+ * <p>Replaces literals by constants, folds operations that only use
+ * constants, removes the "if" branches that never can be executed,
+ * splits the path of the commands, turns the loops over "caju.each"
+ * in native "for each" loops and marks the returns that call the same
+ * function, to be executed without a new call.</p>
+ * <p>Marks the additions inside of loops assigned to the same variable of
+ * the first command, like "s += x", to append the strings in a builder.</p>
+ * <p>Infers the types of the variables of each script and function by the
+ * literals, the operations and the labels of the assignments, and
+ * specializes the operations over integers, longs and strings.</p>
+ * @author eduveks
+ */
+public class Optimizer {
+    private static enum Inferred {
+        INTEGER, LONG, FLOAT, DOUBLE, STRING, BOOLEAN, UNKNOWN
+    }
+    private CajuScript caju = null;
+    private Syntax syntax = null;
+    private int loops = 0;
+    
+    /**
+     * Create new Optimizer.
+     * @param caju CajuScript
+     * @param syntax Syntax
+     */
+    public Optimizer(CajuScript caju, Syntax syntax) {
+        this.caju = caju;
+        this.syntax = syntax;
+    }
+    
+    /**
+     * Optimize the element and all childs elements.
+     * @param element Element
+     * @return Element optimized, to be used in place of the original
+     * @throws org.cajuscript.CajuScriptException Errors ocurred on optimization
+     */
+    public Element optimize(Element element) throws CajuScriptException {
+        if (element == null) {
+            return null;
+        } else if (element instanceof Command) {
+            Command command = (Command) element;
+            for (int i = 0; i < command.getArguments().size(); i++) {
+                command.setArgument(i, optimize(command.getArguments().get(i)));
+            }
+            return literal(command);
+        } else if (element instanceof Operation) {
+            Operation operation = (Operation) element;
+            optimizeElements(operation.getElements());
+            Element first = optimize(operation.getFirstCommand());
+            Element second = optimize(operation.getSecondCommand());
+            operation.setCommands(first, operation.getOperator(), second);
+            if (operation.getElements().isEmpty() && first instanceof Constant && second instanceof Constant) {
+                Value v = new Value(caju, null, syntax);
+                try {
+                    operation.getOperator().compare(v, ((Constant) first).getValue(), ((Constant) second).getValue());
+                } catch (Exception e) {
+                    return operation;
+                }
+                return new Constant(operation.getLineDetail(), v);
+            }
+        } else if (element instanceof Variable) {
+            Variable variable = (Variable) element;
+            optimizeElements(variable.getElements());
+            variable.setValue(optimize(variable.getValue()));
+            if (loops > 0) {
+                append(variable);
+            }
+        } else if (element instanceof Return) {
+            Return _return = (Return) element;
+            optimizeElements(_return.getElements());
+            _return.setValue(optimize(_return.getValue()));
+        } else if (element instanceof If) {
+            If _if = (If) element;
+            _if.setCondition(optimize(_if.getCondition()));
+            optimizeElements(_if.getElements());
+        } else if (element instanceof Loop) {
+            Loop loop = (Loop) element;
+            loop.setCondition(optimize(loop.getCondition()));
+            each(loop);
+            loops++;
+            optimizeElements(loop.getElements());
+            loops--;
+        } else if (element instanceof TryCatch) {
+            TryCatch tryCatch = (TryCatch) element;
+            tryCatch.setTry(optimize(tryCatch.getTry()));
+            tryCatch.setCatch(optimize(tryCatch.getCatch()));
+            tryCatch.setFinally(optimize(tryCatch.getFinally()));
+        } else if (element instanceof IfGroup) {
+            optimizeElements(element.getElements());
+            List<Element> ifs = element.getElements();
+            for (int i = 0; i < ifs.size();) {
+                Value condition = constant(((If) ifs.get(i)).getCondition());
+                if (condition == null) {
+                    i++;
+                } else if (condition.getBooleanValue()) {
+                    ifs.subList(i + 1, ifs.size()).clear();
+                    break;
+                } else {
+                    ifs.remove(i);
+                }
+            }
+        } else if (element instanceof Function) {
+            int _loops = loops;
+            loops = 0;
+            optimizeElements(element.getElements());
+            loops = _loops;
+            tailCalls((Function) element, element.getElements());
+        } else {
+            optimizeElements(element.getElements());
+        }
+        return element;
+    }
+    
+    private void optimizeElements(List<Element> elements) throws CajuScriptException {
+        for (int i = 0; i < elements.size();) {
+            Element element = optimize(elements.get(i));
+            if (element instanceof IfGroup && element.getElements().isEmpty()) {
+                elements.remove(i);
+                continue;
+            } else if (element instanceof Loop) {
+                Value condition = constant(((Loop) element).getCondition());
+                if (condition != null && !condition.getBooleanValue()) {
+                    elements.remove(i);
+                    continue;
+                }
+            }
+            elements.set(i, element);
+            i++;
+        }
+    }
+
+    private Element literal(Command command) throws CajuScriptException {
+        String script = command.getCommand();
+        command.setCommandPath(CommandPath.create(script, syntax));
+        if (command.getType().length() != 0 || !command.getArguments().isEmpty()) {
+            return command;
+        }
+        if (Value.parseNumber(script) != null || script.equalsIgnoreCase("true") || script.equalsIgnoreCase("false")
+                || syntax.matcherEquals(script, syntax.getNull())) {
+            Value v = new Value(caju, null, syntax);
+            v.setScript(script);
+            if (!v.isCommand()) {
+                return new Constant(command.getLineDetail(), v);
+            }
+        }
+        return command;
+    }
+
+    private void tailCalls(Function function, List<Element> elements) {
+        for (Element element : elements) {
+            if (element instanceof Return) {
+                Return _return = (Return) element;
+                if (_return.getElements().isEmpty() && isCall(function, _return.getValue())) {
+                    _return.setTailCall(function.getParameters());
+                }
+            } else if (element instanceof IfGroup || element instanceof If || element instanceof Loop) {
+                tailCalls(function, element.getElements());
+            }
+        }
+    }
+
+    private boolean isCall(Function function, Element value) {
+        if (!(value instanceof Command) || function.getName().length() == 0) {
+            return false;
+        }
+        Command command = (Command) value;
+        CommandPath path = command.getCommandPath();
+        return path != null && path.getType() == CommandPath.Type.CALL && !path.isRootContext()
+                && path.getPath().equals(function.getName())
+                && path.getParams().length == function.getParameters().length
+                && command.getType().length() == 0 && command.getElements().isEmpty();
+    }
+
+    private void append(Variable variable) {
+        if (!(variable.getValue() instanceof Operation) || variable.getType().length() != 0
+                || variable.getKey().length() == 0 || variable.isKeyRootContext(syntax)) {
+            return;
+        }
+        Operation operation = (Operation) variable.getValue();
+        if (operation.getOperator() != Operation.Operator.ADDITION || !operation.getElements().isEmpty()
+                || !(operation.getFirstCommand() instanceof Command)) {
+            return;
+        }
+        Command command = (Command) operation.getFirstCommand();
+        CommandPath path = command.getCommandPath();
+        if (path != null && path.getType() == CommandPath.Type.VARIABLE && !path.isRootContext()
+                && path.getNameArgument() == -1 && path.getPath().equals(variable.getKey())
+                && command.getType().length() == 0 && command.getElements().isEmpty()) {
+            operation.setAppend(variable.getKey());
+        }
+    }
+
+    private void each(Loop loop) {
+        if (!(loop.getCondition() instanceof Variable)) {
+            return;
+        }
+        Variable variable = (Variable) loop.getCondition();
+        if (variable.getKey().length() != 0 || !variable.getElements().isEmpty()
+                || !(variable.getValue() instanceof Command)) {
+            return;
+        }
+        Command command = (Command) variable.getValue();
+        CommandPath path = command.getCommandPath();
+        if (path == null || path.isRootContext() || !path.getPath().equals("caju.each")
+                || path.getParams() == null || path.getParams().length != 2
+                || command.getType().length() != 0 || !command.getElements().isEmpty()) {
+            return;
+        }
+        Element var = command.getArguments().get(path.getParams()[0]);
+        if (var instanceof Constant && ((Constant) var).getConstant() instanceof String) {
+            loop.setEach(((String) ((Constant) var).getConstant()).trim(), command.getArguments().get(path.getParams()[1]));
+        }
+    }
+
+    private Value constant(Element condition) {
+        if (condition instanceof Variable) {
+            Variable variable = (Variable) condition;
+            if (variable.getKey().length() != 0 || !variable.getElements().isEmpty()) {
+                return null;
+            }
+            condition = variable.getValue();
+        }
+        if (condition instanceof Constant) {
+            return ((Constant) condition).getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Infer the types of the variables assigned by the script or function
+     * and specialize the operations where the types of both commands are
+     * known.
+     * <p>Variables assigned outside, like the parameters, are unknown. The
+     * specializations still check the types of the values, then a wrong
+     * inference only loses the specialization.</p>
+     * @param scope Script or function
+     */
+    public void infer(Element scope) {
+        Map<String, List<Variable>> assignments = new HashMap<String, List<Variable>>();
+        Map<String, Inferred> types = new HashMap<String, Inferred>();
+        assignments(scope, assignments, types);
+        if (scope instanceof Function) {
+            for (String param : ((Function) scope).getParameters()) {
+                types.put(param, Inferred.UNKNOWN);
+            }
+        }
+        for (String key : assignments.keySet()) {
+            if (!types.containsKey(key)) {
+                types.put(key, null);
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, List<Variable>> entry : assignments.entrySet()) {
+                Inferred type = types.get(entry.getKey());
+                if (type == Inferred.UNKNOWN) {
+                    continue;
+                }
+                for (Variable variable : entry.getValue()) {
+                    type = join(type, assigned(variable, types));
+                }
+                if (type != types.get(entry.getKey())) {
+                    types.put(entry.getKey(), type);
+                    changed = true;
+                }
+            }
+        }
+        specialize(scope, types);
+    }
+
+    private void assignments(Element element, Map<String, List<Variable>> assignments, Map<String, Inferred> types) {
+        for (Element child : children(element)) {
+            if (child instanceof Function) {
+                continue;
+            }
+            if (child instanceof Variable) {
+                Variable variable = (Variable) child;
+                String key = variable.getKey();
+                if (key.length() != 0) {
+                    if (variable.isKeyRootContext(syntax)) {
+                        types.put(variable.getKeyRootContext(syntax), Inferred.UNKNOWN);
+                    } else {
+                        List<Variable> list = assignments.get(key);
+                        if (list == null) {
+                            list = new ArrayList<Variable>();
+                            assignments.put(key, list);
+                        }
+                        list.add(variable);
+                    }
+                }
+            } else if (child instanceof Loop && ((Loop) child).getEachVar() != null) {
+                types.put(((Loop) child).getEachVar(), Inferred.UNKNOWN);
+            } else if (child instanceof TryCatch) {
+                types.put(((TryCatch) child).getError().getKey(), Inferred.UNKNOWN);
+            }
+            assignments(child, assignments, types);
+        }
+    }
+
+    private List<Element> children(Element element) {
+        List<Element> children = new ArrayList<Element>(element.getElements());
+        if (element instanceof Variable) {
+            children.add(((Variable) element).getValue());
+        } else if (element instanceof Operation) {
+            children.add(((Operation) element).getFirstCommand());
+            children.add(((Operation) element).getSecondCommand());
+        } else if (element instanceof Command) {
+            children.addAll(((Command) element).getArguments());
+        } else if (element instanceof Return) {
+            children.add(((Return) element).getValue());
+        } else if (element instanceof If) {
+            children.add(((If) element).getCondition());
+        } else if (element instanceof Loop) {
+            children.add(((Loop) element).getCondition());
+            children.add(((Loop) element).getEachValues());
+        } else if (element instanceof TryCatch) {
+            children.add(((TryCatch) element).getTry());
+            children.add(((TryCatch) element).getCatch());
+            children.add(((TryCatch) element).getFinally());
+        }
+        while (children.remove(null)) { }
+        return children;
+    }
+
+    private Inferred assigned(Variable variable, Map<String, Inferred> types) {
+        Inferred type = type(variable.getValue(), types);
+        if (type == Inferred.UNKNOWN) {
+            String label = variable.getType();
+            if (label.equals("Integer") || label.equals("java.lang.Integer")) {
+                return Inferred.INTEGER;
+            } else if (label.equals("Long") || label.equals("java.lang.Long")) {
+                return Inferred.LONG;
+            } else if (label.equals("String") || label.equals("java.lang.String")) {
+                return Inferred.STRING;
+            }
+        }
+        return type;
+    }
+
+    private static Inferred join(Inferred t1, Inferred t2) {
+        if (t1 == null) {
+            return t2;
+        } else if (t2 == null || t1 == t2) {
+            return t1;
+        }
+        return Inferred.UNKNOWN;
+    }
+
+    private Inferred type(Element element, Map<String, Inferred> types) {
+        if (element instanceof Constant) {
+            Object constant = ((Constant) element).getConstant();
+            if (constant instanceof Integer) {
+                return Inferred.INTEGER;
+            } else if (constant instanceof Long) {
+                return Inferred.LONG;
+            } else if (constant instanceof Float) {
+                return Inferred.FLOAT;
+            } else if (constant instanceof Double) {
+                return Inferred.DOUBLE;
+            } else if (constant instanceof String) {
+                return Inferred.STRING;
+            } else if (constant instanceof Boolean) {
+                return Inferred.BOOLEAN;
+            }
+        } else if (element instanceof Command) {
+            Command command = (Command) element;
+            CommandPath path = command.getCommandPath();
+            if (path != null && path.getType() == CommandPath.Type.VARIABLE && !path.isRootContext()
+                    && path.getNameArgument() == -1 && command.getType().length() == 0
+                    && command.getElements().isEmpty()) {
+                if (!types.containsKey(path.getPath())) {
+                    return Inferred.UNKNOWN;
+                }
+                return types.get(path.getPath());
+            }
+        } else if (element instanceof Variable) {
+            Variable variable = (Variable) element;
+            if (variable.getElements().isEmpty()) {
+                return type(variable.getValue(), types);
+            }
+        } else if (element instanceof Operation && element.getElements().isEmpty()) {
+            Operation operation = (Operation) element;
+            Inferred t1 = type(operation.getFirstCommand(), types);
+            Inferred t2 = type(operation.getSecondCommand(), types);
+            switch (operation.getOperator()) {
+                case AND:
+                case OR:
+                case EQUAL:
+                case NOT_EQUAL:
+                case LESS:
+                case GREATER:
+                case LESS_EQUAL:
+                case GREATER_EQUAL:
+                    return Inferred.BOOLEAN;
+                default:
+                    if (t1 == null || t2 == null) {
+                        return null;
+                    } else if (operation.getOperator() == Operation.Operator.ADDITION
+                            && ((t1 == Inferred.STRING && isNumberOrString(t2)) || (t2 == Inferred.STRING && isNumberOrString(t1)))) {
+                        return Inferred.STRING;
+                    } else if (!isNumber(t1) || !isNumber(t2)) {
+                        return Inferred.UNKNOWN;
+                    } else if (t1 == Inferred.INTEGER && t2 == Inferred.INTEGER) {
+                        return Inferred.INTEGER;
+                    } else if ((t1 == Inferred.INTEGER || t1 == Inferred.FLOAT) && (t2 == Inferred.INTEGER || t2 == Inferred.FLOAT)) {
+                        return Inferred.FLOAT;
+                    } else if ((t1 == Inferred.INTEGER || t1 == Inferred.LONG) && (t2 == Inferred.INTEGER || t2 == Inferred.LONG)) {
+                        return Inferred.LONG;
+                    }
+                    return Inferred.DOUBLE;
+            }
+        }
+        return Inferred.UNKNOWN;
+    }
+
+    private static boolean isNumber(Inferred type) {
+        return type == Inferred.INTEGER || type == Inferred.LONG || type == Inferred.FLOAT || type == Inferred.DOUBLE;
+    }
+
+    private static boolean isNumberOrString(Inferred type) {
+        return type == Inferred.STRING || isNumber(type);
+    }
+
+    private void specialize(Element element, Map<String, Inferred> types) {
+        for (Element child : children(element)) {
+            if (child instanceof Function) {
+                continue;
+            }
+            if (child instanceof Operation && child.getElements().isEmpty()) {
+                Operation operation = (Operation) child;
+                Inferred t1 = type(operation.getFirstCommand(), types);
+                Inferred t2 = type(operation.getSecondCommand(), types);
+                Operation.Operator operator = operation.getOperator();
+                if (operator == Operation.Operator.AND || operator == Operation.Operator.OR) {
+                    operation.setSpecialization(null);
+                } else if (t1 == Inferred.INTEGER && t2 == Inferred.INTEGER) {
+                    operation.setSpecialization(Operation.Specialization.INTEGER);
+                } else if ((t1 == Inferred.LONG && (t2 == Inferred.LONG || t2 == Inferred.INTEGER))
+                        || (t2 == Inferred.LONG && t1 == Inferred.INTEGER)) {
+                    operation.setSpecialization(Operation.Specialization.LONG);
+                } else if (operator == Operation.Operator.ADDITION
+                        && ((t1 == Inferred.STRING && isNumberOrString(t2)) || (t2 == Inferred.STRING && isNumberOrString(t1)))) {
+                    operation.setSpecialization(Operation.Specialization.STRING);
+                }
+            }
+            specialize(child, types);
+        }
+    }
+}
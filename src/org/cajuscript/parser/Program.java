@@ -0,0 +1,402 @@
+/*
+ * Program.java
+ *
+ * This file is part of CajuScript.
+ *
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option)
+ * any later version.
+ *
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cajuscript.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.cajuscript.Budget;
+import org.cajuscript.CajuScript;
+import org.cajuscript.CajuScriptException;
+import org.cajuscript.Context;
+import org.cajuscript.Profiler;
+import org.cajuscript.Syntax;
+import org.cajuscript.Value;
+
+/**
+ * Elements of a script or function lowered to an array of instructions,
+ * executed by a single loop of the virtual machine.
+ * <p>The values of the commands and operations are kept in registers of
+ * each execution, and the conditions, loops, breaks and continues are
+ * jumps, then the execution not walk the elements neither search the
+ * values of the elements in the context.</p>
+ * <p>Elements without instructions, like try catch and loops of each, are
+ * executed by the elements, and the signals returned are jumps to the
+ * loops of the program.</p>
+ * @author eduveks
+ */
+public class Program {
+    private static final int LINE = 0;
+    private static final int COMMAND = 1;
+    private static final int OPERATION = 2;
+    private static final int ASSIGN = 3;
+    private static final int EVALUATE = 4;
+    private static final int EXECUTE = 5;
+    private static final int JUMP = 6;
+    private static final int JUMP_FALSE = 7;
+    private static final int ITERATION = 8;
+    private static final int RETURN = 9;
+    private static final int RETURN_NEW = 10;
+    private static final int SIGNAL = 11;
+    private static final int END = 12;
+    private static final int APPEND = 13;
+    private int[] code = new int[64];
+    private int size = 0;
+    private LineDetail[] lines = new LineDetail[64];
+    private List<Object> pool = new ArrayList<Object>();
+    private Object[] constants = null;
+    private int registers = 0;
+    private LineDetail line = null;
+
+    private static class Target {
+        private String label = "";
+        private int breakIndex = -1;
+        private int continueIndex = -1;
+        private List<Integer> breaks = new ArrayList<Integer>();
+    }
+
+    /**
+     * Lower elements to a new program.
+     * @param elements Elements of the script or function
+     */
+    public Program(List<Element> elements) {
+        statements(elements, new Target[0]);
+        emit(END);
+        constants = pool.toArray();
+        pool = null;
+    }
+
+    /**
+     * Get the number of instructions and operands.
+     * @return Size of the code
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of registers used by each execution.
+     * @return Registers
+     */
+    public int getRegisters() {
+        return registers;
+    }
+
+    /**
+     * Execute the program.
+     * @param caju CajuScript
+     * @param context Context
+     * @param syntax Syntax
+     * @return Value returned by the elements, or null if none element
+     *         returned
+     * @throws org.cajuscript.CajuScriptException Errors ocurred on execution
+     */
+    public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
+        int[] code = this.code;
+        Object[] constants = this.constants;
+        Value[] values = new Value[registers];
+        int index = 0;
+        int instruction = 0;
+        try {
+            while (true) {
+                instruction = index;
+                switch (code[index]) {
+                    case LINE: {
+                        Profiler profiler = caju.getProfiler();
+                        if (profiler != null) {
+                            profiler.line((LineDetail) constants[code[index + 1]]);
+                        }
+                        index += 2;
+                        break;
+                    }
+                    case COMMAND: {
+                        int count = code[index + 3];
+                        Value value = values[code[index + 1]];
+                        boolean isNew = value == null;
+                        if (isNew) {
+                            value = new Value(caju, context, syntax);
+                            values[code[index + 1]] = value;
+                        }
+                        for (int i = 0; i < count; i++) {
+                            value.setArgument(i, value(values, constants, code[index + 4 + i]));
+                        }
+                        ((Command) constants[code[index + 2]]).invoke(caju, context, value, isNew);
+                        index += 4 + count;
+                        break;
+                    }
+                    case OPERATION: {
+                        Value value = values[code[index + 1]];
+                        if (value == null) {
+                            value = new Value(caju, context, syntax);
+                            values[code[index + 1]] = value;
+                        }
+                        ((Operation) constants[code[index + 2]]).operate(value,
+                                value(values, constants, code[index + 3]), value(values, constants, code[index + 4]));
+                        index += 5;
+                        break;
+                    }
+                    case APPEND:
+                        if (Operation.append(context, ((Operation) constants[code[index + 2]]).getAppend(),
+                                values[code[index + 1]], value(values, constants, code[index + 3]))) {
+                            index = code[index + 4];
+                        } else {
+                            index += 5;
+                        }
+                        break;
+                    case ASSIGN:
+                        ((Variable) constants[code[index + 1]]).assign(caju, context, syntax, value(values, constants, code[index + 2]));
+                        index += 3;
+                        break;
+                    case EVALUATE:
+                        values[code[index + 1]] = ((Element) constants[code[index + 2]]).execute(caju, context, syntax);
+                        index += 3;
+                        break;
+                    case EXECUTE: {
+                        Value v = ((Element) constants[code[index + 1]]).execute(caju, context, syntax);
+                        Target[] targets = (Target[]) constants[code[index + 2]];
+                        index += 3;
+                        if (v == null) {
+                            break;
+                        } else if (!(v instanceof Signal)) {
+                            return v;
+                        }
+                        Signal signal = (Signal) v;
+                        Target target = null;
+                        for (Target t : targets) {
+                            if (signal.getLabel().length() == 0 || signal.getLabel().equals(t.label)) {
+                                target = t;
+                                break;
+                            }
+                        }
+                        if (target == null || signal.getAction() == Signal.Action.TAIL_CALL) {
+                            return v;
+                        } else if (signal.getAction() == Signal.Action.BREAK) {
+                            index = target.breakIndex;
+                        } else if (signal.getAction() == Signal.Action.CONTINUE) {
+                            index = target.continueIndex;
+                        }
+                        break;
+                    }
+                    case JUMP:
+                        index = code[index + 1];
+                        break;
+                    case JUMP_FALSE:
+                        if (value(values, constants, code[index + 1]).getBooleanValue()) {
+                            index += 3;
+                        } else {
+                            index = code[index + 2];
+                        }
+                        break;
+                    case ITERATION: {
+                        Budget budget = caju.getBudget();
+                        if (budget != null) {
+                            budget.iteration(caju, context, code[index + 1]);
+                        }
+                        index += 2;
+                        break;
+                    }
+                    case RETURN: {
+                        Value v = value(values, constants, code[index + 1]);
+                        if (v != null) {
+                            return v;
+                        }
+                        index += 2;
+                        break;
+                    }
+                    case RETURN_NEW:
+                        return new Value(caju, context, syntax);
+                    case SIGNAL:
+                        return ((Element) constants[code[index + 1]]).execute(caju, context, syntax);
+                    case END:
+                        return null;
+                    default:
+                        throw new Error("Invalid instruction ".concat(Integer.toString(code[index])));
+                }
+            }
+        } catch (CajuScriptException e) {
+            throw caju.located(e, context, lines[instruction]);
+        } catch (RuntimeException e) {
+            throw caju.located(e, context, lines[instruction]);
+        }
+    }
+
+    private static Value value(Value[] values, Object[] constants, int reference) {
+        return reference < 0 ? (Value) constants[-reference - 1] : values[reference];
+    }
+
+    private void statements(List<Element> elements, Target[] targets) {
+        for (Element element : elements) {
+            LineDetail previous = line;
+            line(element);
+            statement(element, targets);
+            line = previous;
+        }
+    }
+
+    private void statement(Element element, Target[] targets) {
+        if (element instanceof Command || element instanceof Constant || element instanceof Operation
+                || element instanceof Variable) {
+            expression(element);
+        } else if (element instanceof IfGroup) {
+            List<Integer> ends = new ArrayList<Integer>();
+            for (Element _if : element.getElements()) {
+                LineDetail previous = line;
+                line(_if);
+                int next = condition(((If) _if).getCondition());
+                statements(_if.getElements(), targets);
+                line = previous;
+                emit(JUMP, -1);
+                ends.add(size - 1);
+                code[next] = size;
+            }
+            for (int end : ends) {
+                code[end] = size;
+            }
+        } else if (element instanceof Loop && ((Loop) element).getEachVar() == null) {
+            Loop loop = (Loop) element;
+            Target target = new Target();
+            target.label = loop.getLabel();
+            target.continueIndex = size;
+            int end = condition(loop.getCondition());
+            emit(ITERATION, loop.getElements().size());
+            Target[] _targets = new Target[targets.length + 1];
+            _targets[0] = target;
+            System.arraycopy(targets, 0, _targets, 1, targets.length);
+            statements(loop.getElements(), _targets);
+            emit(JUMP, target.continueIndex);
+            target.breakIndex = size;
+            code[end] = size;
+            for (int operand : target.breaks) {
+                code[operand] = size;
+            }
+        } else if (element instanceof Break || element instanceof Continue) {
+            String label = element instanceof Break ? ((Break) element).getLabel() : ((Continue) element).getLabel();
+            Target target = null;
+            for (Target t : targets) {
+                if (label.length() == 0 || label.equals(t.label)) {
+                    target = t;
+                    break;
+                }
+            }
+            if (target == null) {
+                emit(SIGNAL, constant(element));
+            } else if (element instanceof Break) {
+                emit(JUMP, -1);
+                target.breaks.add(size - 1);
+            } else {
+                emit(JUMP, target.continueIndex);
+            }
+        } else if (element instanceof Return && ((Return) element).getTailCall() == null) {
+            Element value = ((Return) element).getValue();
+            if (value == null) {
+                emit(RETURN_NEW);
+            } else {
+                emit(RETURN, expression(value));
+            }
+        } else {
+            emit(EXECUTE, constant(element), constant(targets));
+        }
+    }
+
+    private int condition(Element condition) {
+        LineDetail previous = line;
+        line(condition);
+        int reference = expression(condition);
+        emit(JUMP_FALSE, reference, -1);
+        line = previous;
+        return size - 1;
+    }
+
+    private int expression(Element element) {
+        if (element instanceof Constant) {
+            return -constant(((Constant) element).getValue()) - 1;
+        } else if (element instanceof Command) {
+            Command command = (Command) element;
+            int[] arguments = new int[command.getArguments().size()];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = expression(command.getArguments().get(i));
+            }
+            int register = registers++;
+            emit(COMMAND, register, constant(command), arguments.length);
+            for (int argument : arguments) {
+                emit(argument);
+            }
+            return register;
+        } else if (element instanceof Operation) {
+            Operation operation = (Operation) element;
+            for (Element child : operation.getElements()) {
+                expression(child);
+            }
+            if (operation.getAppend() != null) {
+                int register = registers++;
+                int second = expression(operation.getSecondCommand());
+                emit(APPEND, register, constant(operation), second, -1);
+                int end = size - 1;
+                int first = expression(operation.getFirstCommand());
+                emit(OPERATION, register, constant(operation), first, second);
+                code[end] = size;
+                return register;
+            }
+            int first = expression(operation.getFirstCommand());
+            int second = expression(operation.getSecondCommand());
+            int register = registers++;
+            emit(OPERATION, register, constant(operation), first, second);
+            return register;
+        } else if (element instanceof Variable && ((Variable) element).getValue() != null) {
+            Variable variable = (Variable) element;
+            for (Element child : variable.getElements()) {
+                expression(child);
+            }
+            int reference = expression(variable.getValue());
+            if (variable.getType().length() != 0 || variable.getKey().length() != 0) {
+                emit(ASSIGN, constant(variable), reference);
+            }
+            return reference;
+        }
+        int register = registers++;
+        emit(EVALUATE, register, constant(element));
+        return register;
+    }
+
+    private void line(Element element) {
+        line = element.getLineDetail();
+        emit(LINE, constant(line));
+    }
+
+    private int constant(Object o) {
+        pool.add(o);
+        return pool.size() - 1;
+    }
+
+    private void emit(int... operands) {
+        if (size + operands.length > code.length) {
+            int length = Math.max(code.length * 2, size + operands.length);
+            int[] _code = new int[length];
+            System.arraycopy(code, 0, _code, 0, size);
+            code = _code;
+            LineDetail[] _lines = new LineDetail[length];
+            System.arraycopy(lines, 0, _lines, 0, size);
+            lines = _lines;
+        }
+        for (int operand : operands) {
+            lines[size] = line;
+            code[size++] = operand;
+        }
+    }
+}
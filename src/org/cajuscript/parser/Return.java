@@ -31,6 +31,7 @@ import org.cajuscript.CajuScriptException;
  */
 public class Return extends Base {
     private Element value = null;
+    private String[] tailCall = null;
     
     /**
      * Create new Return.
@@ -56,6 +57,24 @@ public class Return extends Base {
         value = v;
     }
     
+    /**
+     * Get parameters of the function when the value is a call of the same
+     * function, then the call is done in the same execution of the
+     * function, without the local variables of the previous call.
+     * @return Parameters of the function, or null if is not a tail call
+     */
+    public String[] getTailCall() {
+        return tailCall;
+    }
+    
+    /**
+     * Define the value like a call of the same function.
+     * @param parameters Parameters of the function
+     */
+    public void setTailCall(String[] parameters) {
+        tailCall = parameters;
+    }
+    
     /**
      * Executed this element.
      * @param caju CajuScript
@@ -66,7 +85,21 @@ public class Return extends Base {
      */
     @Override
     public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
-        caju.setRunningLine(getLineDetail());
+        if (tailCall != null) {
+            Command command = (Command) value;
+            int[] params = command.getCommandPath().getParams();
+            Object[] values = new Object[params.length];
+            for (int i = 0; i < params.length; i++) {
+                values[i] = command.getArguments().get(params[i]).execute(caju, context, syntax).getValue();
+            }
+            context.getVars().clear();
+            for (int i = 0; i < params.length; i++) {
+                Value v = new Value(caju, context, syntax);
+                v.setValue(values[i]);
+                context.setVar(tailCall[i], v);
+            }
+            return Signal.TAIL_CALL;
+        }
         if (value != null) {
             return value.execute(caju, context, syntax);
         }
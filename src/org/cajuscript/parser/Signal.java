@@ -0,0 +1,90 @@
+/*
+ * Signal.java
+ * 
+ * This file is part of CajuScript.
+ * 
+ * CajuScript is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3, or (at your option) 
+ * any later version.
+ * 
+ * CajuScript is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CajuScript.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.cajuscript.parser;
+
+import org.cajuscript.Value;
+
+/**
+ * Value returned by the elements to change the flow of the execution, like
+ * "break", "continue", the end of an "if" branch and the tail calls.
+ * <p>Signals are created only once, without label are shared and with label
+ * are kept by the element, then the flow is changed without allocations.
+ * Signals are read only and never returned as the result of the script.</p>
+ * @author eduveks
+ */
+public class Signal extends Value {
+    /**
+     * Actions of the signals.
+     */
+    public static enum Action {
+        BREAK, CONTINUE, IF, TAIL_CALL
+    }
+    /**
+     * Break the nearest loop.
+     */
+    public static final Signal BREAK = new Signal(Action.BREAK, "");
+    /**
+     * Continue the nearest loop.
+     */
+    public static final Signal CONTINUE = new Signal(Action.CONTINUE, "");
+    /**
+     * An "if" branch was executed.
+     */
+    public static final Signal IF = new Signal(Action.IF, "");
+    /**
+     * The function calls itself again, with the parameters already defined.
+     */
+    public static final Signal TAIL_CALL = new Signal(Action.TAIL_CALL, "");
+    private final Action action;
+    private final String label;
+
+    /**
+     * Create new Signal.
+     * @param action Action.
+     * @param label Label of the loop, or empty to the nearest loop.
+     */
+    public Signal(Action action, String label) {
+        this.action = action;
+        this.label = label;
+        String flag = action.name().toLowerCase();
+        if (label.length() != 0) {
+            flag = flag.concat(":").concat(label);
+        }
+        setFlag(flag);
+        setReadOnly();
+    }
+
+    /**
+     * Get action.
+     * @return Action.
+     */
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * Get label.
+     * @return Label of the loop, or empty to the nearest loop.
+     */
+    public String getLabel() {
+        return label;
+    }
+}
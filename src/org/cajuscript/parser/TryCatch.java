@@ -35,7 +35,6 @@ public class TryCatch extends Base {
 	private Element _try = null;
 	private Element _catch = null;
 	private Element _finally = null;
-	private String errorValueKey;
 
 	/**
 	 * Create new TryCatch.
@@ -45,8 +44,6 @@ public class TryCatch extends Base {
 	 */
 	public TryCatch(LineDetail line) {
 		super(line);
-		errorValueKey = org.cajuscript.CajuScript.CAJU_VARS.concat("_value_")
-				.concat(Integer.toString(this.hashCode()));
 	}
 
 	/**
@@ -138,27 +135,30 @@ public class TryCatch extends Base {
 	 * @throws org.cajuscript.CajuScriptException
 	 *             Errors ocurred on execution
 	 */
-	@SuppressWarnings("finally")
 	@Override
 	public Value execute(CajuScript caju, Context context, Syntax syntax)
 			throws CajuScriptException {
-		caju.setRunningLine(getLineDetail());
-		Value errorValue = context.getVar(errorValueKey);
+		Value errorValue = context.getElementValue(this);
 		if (errorValue != null) {
 			errorValue.setValue(null);
 		}
+		Value v = null;
 		try {
-			return _try.execute(caju, context, syntax);
+			v = _try.execute(caju, context, syntax);
 		} catch (Exception e) {
 			if (errorValue == null) {
 				errorValue = caju.toValue(e, context, syntax);
-				context.setVar(errorValueKey, errorValue);
+				context.setElementValue(this, errorValue);
 			}
 			errorValue.setValue(e);
 			context.setVar(_error.getKey(), errorValue);
-			return _catch.execute(caju, context, syntax);
+			v = _catch.execute(caju, context, syntax);
 		} finally {
-			return _finally.execute(caju, context, syntax);
+			Value f = _finally.execute(caju, context, syntax);
+			if (f != null) {
+				v = f;
+			}
 		}
+		return v;
 	}
-}
\ No newline at end of file
+}
@@ -22,7 +22,7 @@ package org.cajuscript.parser;
 import org.cajuscript.CajuScript;
 import org.cajuscript.Context;
 import org.cajuscript.Value;
-import org.cajuscript.SyntaxPosition;
+import org.cajuscript.SyntaxMatcher;
 import org.cajuscript.Syntax;
 import org.cajuscript.CajuScriptException;
 
@@ -98,12 +98,10 @@ public class Variable extends Base {
      */
     public Boolean isKeyRootContext(Syntax syntax) {
         if (key.length() != 0) {
-            SyntaxPosition syntaxPosition = syntax.matcherPosition(key, syntax.getRootContext());
-            if (syntaxPosition.getStart() == 0) {
-                return true;
-            } else {
-                return false;
-            }
+            SyntaxMatcher matcher = syntax.matcher(key, syntax.getRootContext());
+            boolean root = matcher.lookingAt();
+            matcher.release();
+            return root;
         }
         return false;
     }
@@ -115,9 +113,11 @@ public class Variable extends Base {
      */
     public String getKeyRootContext(Syntax syntax) {
         if (key.length() != 0) {
-            SyntaxPosition syntaxPosition = syntax.matcherPosition(key, syntax.getRootContext());
-            if (syntaxPosition.getStart() == 0) {
-                return key.substring(syntaxPosition.getEnd());
+            SyntaxMatcher matcher = syntax.matcher(key, syntax.getRootContext());
+            int end = matcher.lookingAt() ? matcher.getEnd() : -1;
+            matcher.release();
+            if (end > -1) {
+                return key.substring(end);
             }
         }
         return "";
@@ -133,18 +133,41 @@ public class Variable extends Base {
      */
     @Override
     public Value execute(CajuScript caju, Context context, Syntax syntax) throws CajuScriptException {
-        caju.setRunningLine(getLineDetail());
         for (Element element : elements) {
             element.execute(caju, context, syntax);
         }
-        Value v = value.execute(caju, context, syntax);
+        return assign(caju, context, syntax, value.execute(caju, context, syntax));
+    }
+
+    /**
+     * Assign the value executed to the variable.
+     * @param caju CajuScript
+     * @param context Context
+     * @param syntax Syntax
+     * @param v Value
+     * @return Value assigned
+     * @throws org.cajuscript.CajuScriptException Errors ocurred on execution
+     */
+    Value assign(CajuScript caju, Context context, Syntax syntax, Value v) throws CajuScriptException {
+        if (v.isReadOnly()) {
+            Value _v = context.getElementValue(this);
+            if (_v == null) {
+                _v = new Value(caju, context, syntax);
+                context.setElementValue(this, _v);
+            }
+            _v.copyValue(v);
+            _v.setClassType(v.getClassType());
+            v = _v;
+        }
         if (type.length() != 0) {
             v.setClassType(type);
         }
         if (key.length() != 0) {
-            SyntaxPosition syntaxPosition = syntax.matcherPosition(key, syntax.getRootContext());
-            if (syntaxPosition.getStart() == 0) {
-                caju.setVar(key.substring(syntaxPosition.getEnd()), v);
+            SyntaxMatcher matcher = syntax.matcher(key, syntax.getRootContext());
+            int end = matcher.lookingAt() ? matcher.getEnd() : -1;
+            matcher.release();
+            if (end > -1) {
+                caju.setVar(key.substring(end), v);
             } else {
                 context.setVar(key, v);
             }
@@ -21,6 +21,7 @@ package org.cajuscript;
 
 import java.util.Set;
 import org.cajuscript.parser.Function;
+import org.cajuscript.parser.Signal;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -1917,6 +1918,32 @@ public class CajuScriptTest {
         }
     }
     
+    /**
+     * Test of eval method, of class CajuScript, with the precedence of the
+     * operators.
+     */
+    @Test
+    public void evalMathPrecedence() throws Exception {
+        System.out.println("evalMathPrecedence");
+        CajuScript caju = new CajuScript();
+        caju.eval("a = 2 * 3 - 4 * 5 + 6 * 7; b = 1 + 2 * 3 * 4 - 10 / 5 % 3; c = -5 + 3 * -2; x = 3; d = -x * 2 - -x; e = 1 + 2 < 2 * 2 & 8 % 5 = 3;");
+        if (((Integer)caju.get("a")).intValue() != 28) {
+            fail("a is "+ caju.get("a") +". Need be 28!");
+        }
+        if (((Integer)caju.get("b")).intValue() != 23) {
+            fail("b is "+ caju.get("b") +". Need be 23!");
+        }
+        if (((Integer)caju.get("c")).intValue() != -11) {
+            fail("c is "+ caju.get("c") +". Need be -11!");
+        }
+        if (((Integer)caju.get("d")).intValue() != -3) {
+            fail("d is "+ caju.get("d") +". Need be -3!");
+        }
+        if (!((Boolean)caju.get("e")).booleanValue()) {
+            fail("e is "+ caju.get("e") +". Need be true!");
+        }
+    }
+    
     
     /**
      * Test of eval method, of class CajuScript.
@@ -2310,6 +2337,1044 @@ public class CajuScriptTest {
         }
     }
 
+    @Test
+    public void profiler() throws CajuScriptException {
+        System.out.println("profiler");
+        CajuScript caju = new CajuScript();
+        Profiler profiler = new Profiler();
+        caju.setProfiler(profiler);
+        String script = "";
+        script += "sum(a, b) # ~ a + b; #;";
+        script += "x = 0;";
+        script += "i = 0;";
+        script += "i < 10 @;";
+        script += "  x = sum(x, i);";
+        script += "  i += 1;";
+        script += "@;";
+        caju.eval(script);
+        assertEquals(45, ((Integer)caju.get("x")).intValue());
+        String report = profiler.getReport();
+        if (!report.matches("(?s).*\\s10 +[0-9.]+ +[0-9.]+  sum\\R.*")) {
+            fail("Calls of the function not counted:\n".concat(report));
+        }
+        if (!report.matches("(?s).*\\s10 +[0-9.]+ +[0-9.]+  1: i \\+= 1\\R.*")) {
+            fail("Hits of the line not counted:\n".concat(report));
+        }
+        caju.setProfiler(null);
+        profiler.reset();
+        caju.eval(script);
+        if (profiler.getCollapsedStacks().length() != 0) {
+            fail("Profiled without profiler.");
+        }
+    }
+
+    @Test
+    public void metrics() throws CajuScriptException {
+        System.out.println("metrics");
+        Metrics metrics = CajuScript.getMetrics();
+        metrics.reset();
+        CajuScript caju = new CajuScript();
+        String script = "caju.cache metricsTest;";
+        script += "x = 'metrics';";
+        script += "l = x.length();";
+        caju.eval(script);
+        caju.eval(script);
+        try {
+            caju.eval("y = x.notExists();");
+            fail("Exception not thrown.");
+        } catch (CajuScriptException e) { }
+        assertEquals(3, metrics.getEvals());
+        assertEquals(1, metrics.getCacheHits());
+        assertEquals(1, metrics.getCacheMisses());
+        assertEquals(0.5d, metrics.getCacheHitRate(), 0d);
+        assertEquals(1, metrics.getExceptions());
+        if (metrics.getReflectionMisses() == 0) {
+            fail("Reflection misses not counted.");
+        }
+        if (metrics.getParseTime() == 0 || metrics.getExecuteTime() == 0) {
+            fail("Time not measured.");
+        }
+    }
+
+    @Test
+    public void budget() throws CajuScriptException {
+        System.out.println("budget");
+        CajuScript caju = new CajuScript();
+        Budget budget = new Budget();
+        budget.setMaxIterations(1000);
+        caju.setBudget(budget);
+        String script = "";
+        script += "x = 0;";
+        script += "true @;";
+        script += "  x += 1;";
+        script += "@;";
+        String[] prefixes = new String[] {
+            "", "caju.compile.classPath: dist/cajuscript.jar;caju.compile: test.TestBudget;"
+        };
+        for (String prefix : prefixes) {
+            try {
+                caju.eval(prefix.concat(script));
+                fail("Iterations limit not checked.");
+            } catch (CajuScriptException e) { }
+            assertEquals(1000, ((Integer)caju.get("x")).intValue());
+        }
+        budget.setMaxIterations(-1);
+        budget.setMaxTime(100);
+        script = "";
+        script += "loop() # true @; @; #;";
+        script += "loop();";
+        for (String prefix : prefixes) {
+            long time = System.currentTimeMillis();
+            try {
+                caju.eval(prefix.concat(script));
+                fail("Time limit not checked.");
+            } catch (CajuScriptException e) { }
+            if (System.currentTimeMillis() - time > 5000) {
+                fail("Time limit exceeded too late.");
+            }
+        }
+        caju.setBudget(null);
+        caju.eval("x = 0; x < 2000 @; x += 1; @;");
+        assertEquals(2000, ((Integer)caju.get("x")).intValue());
+    }
+
+    /**
+     * Test of the operations specialized by the inferred types.
+     */
+    @Test
+    public void typeInference() throws CajuScriptException {
+        System.out.println("typeInference");
+        CajuScript caju = new CajuScript();
+        String script = "";
+        script += "x = 0;";
+        script += "s = \"\";";
+        script += "i = 0;";
+        script += "i < 10 @;";
+        script += "  x += i * 2 - i / 3 + i % 4;";
+        script += "  s += i;";
+        script += "  i += 1;";
+        script += "@;";
+        script += "$java.lang;";
+        script += "Integer: y = Math.sqrt(16);";
+        script += "z = y + 1;";
+        script += "q = 2147483647 + i - 10;";
+        script += "r = q + 1;";
+        String[] prefixes = new String[] {
+            "", "caju.compile.classPath: dist/cajuscript.jar;caju.compile: test.TestTypeInference;"
+        };
+        for (String prefix : prefixes) {
+            caju.eval(prefix.concat(script));
+            assertEquals(91, caju.get("x"));
+            assertEquals("0123456789", caju.get("s"));
+            assertEquals(5.0d, caju.get("z"));
+            assertEquals(Integer.MIN_VALUE, caju.get("r"));
+        }
+    }
+
+    /**
+     * Test of operations and calls specialized by the values of the first
+     * execution.
+     */
+    @Test
+    public void selfSpecialization() throws CajuScriptException {
+        System.out.println("selfSpecialization");
+        CajuScript caju = new CajuScript();
+        String script = "";
+        script += "$java.lang;";
+        script += "f(a, b) # ~ a + b; #;";
+        script += "r1 = f(1, 2);";
+        script += "r2 = f(\"a\", 2);";
+        script += "r3 = f(1, 2);";
+        script += "g(o) # ~ o.size(); #;";
+        script += "l = java.util.ArrayList();";
+        script += "l.add(1);";
+        script += "x = 0;";
+        script += "x < 1000 @;";
+        script += "  y1 = g(l);";
+        script += "  x += 1;";
+        script += "@;";
+        script += "y2 = g(java.util.HashMap());";
+        script += "y3 = g(l);";
+        CajuScript.getMetrics().reset();
+        caju.eval(script);
+        assertEquals(3, caju.get("r1"));
+        assertEquals("a2", caju.get("r2"));
+        assertEquals(3, caju.get("r3"));
+        assertEquals(1, caju.get("y1"));
+        assertEquals(0, caju.get("y2"));
+        assertEquals(1, caju.get("y3"));
+        if (CajuScript.getMetrics().getReflectionMisses() > 100) {
+            fail("Method not cached by the call.");
+        }
+    }
+
+    /**
+     * Test of the virtual machine, the same script executed by the elements
+     * and by the programs.
+     */
+    @Test
+    public void virtualMachine() throws CajuScriptException {
+        System.out.println("virtualMachine");
+        String script = "";
+        script += "sum = 0;";
+        script += "skipped = 0;";
+        script += "x = -1;";
+        script += "outer: x < 4 @;";
+        script += "  x += 1;";
+        script += "  y = 0;";
+        script += "  y < 5 @;";
+        script += "    y += 1;";
+        script += "    y = 2 ?";
+        script += "      skipped += 1;";
+        script += "      . .;";
+        script += "    ? y = 4 & x = 3 ?";
+        script += "      !! outer;";
+        script += "    ? y = 4 ?";
+        script += "      .. outer;";
+        script += "    ??";
+        script += "      sum += x * y;";
+        script += "    ?;";
+        script += "  @;";
+        script += "@;";
+        script += "fact(n, acc) #";
+        script += "  n <= 1 ?";
+        script += "    ~ acc;";
+        script += "  ?;";
+        script += "  ~ fact(n - 1, acc * n);";
+        script += "#;";
+        script += "f = fact(10, 1);";
+        script += "errors = 0;";
+        script += "i = 0;";
+        script += "i < 3 @;";
+        script += "  i += 1;";
+        script += "  e ^";
+        script += "    caju.error();";
+        script += "  ^^";
+        script += "    errors += 1;";
+        script += "    i = 2 ?";
+        script += "      !!;";
+        script += "    ?;";
+        script += "  ^;";
+        script += "@;";
+        script += "list = java.util.ArrayList();";
+        script += "list.add(1);";
+        script += "list.add(2);";
+        script += "list.add(3);";
+        script += "items = 0;";
+        script += "caju.each('item', list) @";
+        script += "  item = 2 ?";
+        script += "    . .;";
+        script += "  ?;";
+        script += "  items += item;";
+        script += "@;";
+        String[] keys = new String[] {"sum", "skipped", "f", "errors", "i", "items"};
+        CajuScript caju = new CajuScript();
+        caju.eval(script);
+        CajuScript vm = new CajuScript();
+        vm.setVirtualMachine(true);
+        vm.eval(script);
+        for (String key : keys) {
+            assertEquals(key, caju.get(key), vm.get(key));
+        }
+        assertEquals(3628800, vm.get("f"));
+        assertEquals(2, vm.get("errors"));
+        assertEquals(4, vm.get("items"));
+    }
+
+    /**
+     * Test of the strings appended by loops to the same variable.
+     */
+    @Test
+    public void stringAppend() throws CajuScriptException {
+        System.out.println("stringAppend");
+        String script = "";
+        script += "s = \"\";";
+        script += "i = 0;";
+        script += "i < 20000 @;";
+        script += "  s += i % 10;";
+        script += "  i = 5 ?";
+        script += "    t = s;";
+        script += "  ?;";
+        script += "  s += \"\";";
+        script += "  i += 1;";
+        script += "@;";
+        script += "l = s.length();";
+        String[] prefixes = new String[] {
+            "", "caju.compile.classPath: dist/cajuscript.jar;caju.compile: test.TestStringAppend;"
+        };
+        for (String prefix : prefixes) {
+            for (int i = 0; i < 2; i++) {
+                CajuScript caju = new CajuScript();
+                caju.setVirtualMachine(i == 1);
+                caju.eval(prefix.concat(script));
+                assertEquals(20000, caju.get("l"));
+                assertEquals("012345", caju.get("t"));
+                assertTrue(caju.get("s").toString().startsWith("0123456789012"));
+            }
+        }
+    }
+
+    /**
+     * Test of typed assignments from literals, the constants are not changed.
+     */
+    @Test
+    public void typedConstants() throws CajuScriptException {
+        System.out.println("typedConstants");
+        CajuScript caju = new CajuScript();
+        String script = "";
+        script += "Integer: x = \"5\";";
+        script += "Long: l = 5;";
+        script += "y = \"5\";";
+        script += "z = 5;";
+        caju.eval(script);
+        assertEquals("5", caju.get("x"));
+        assertEquals(Integer.class, caju.getContext().getVar("x").getClassType());
+        assertEquals(Long.class, caju.getContext().getVar("l").getClassType());
+        caju.eval("i = 0; i < 3 @; s = \"a\"; s += i; i += 1; @;");
+        assertEquals("a2", caju.get("s"));
+        caju.eval("t = \"a\";");
+        assertEquals("a", caju.get("t"));
+    }
+
+    /**
+     * Test of typed assignments from literals loaded by the cache.
+     */
+    @Test
+    public void typedConstantsCache() throws CajuScriptException {
+        System.out.println("typedConstantsCache");
+        String script = "";
+        script += "caju.cache: typedConstantsCache;";
+        script += "Long: l = 5;";
+        script += "Boolean: b = true;";
+        script += "Integer: x = \"5\";";
+        for (int i = 0; i < 3; i++) {
+            CajuScript caju = new CajuScript();
+            caju.eval(script);
+            caju.eval(script);
+            assertEquals(5, caju.get("l"));
+            assertEquals(Long.class, caju.getContext().getVar("l").getClassType());
+            assertEquals(true, caju.get("b"));
+            assertEquals(Integer.class, caju.getContext().getVar("x").getClassType());
+        }
+    }
+
+    /**
+     * Test of nested matches of the same pattern, each one with his cursor.
+     */
+    @Test
+    public void syntaxMatcherNested() throws CajuScriptException {
+        System.out.println("syntaxMatcherNested");
+        CajuScript caju = new CajuScript();
+        Syntax syntax = caju.getSyntax();
+        SyntaxMatcher outer = syntax.matcher("a.b.c", syntax.getFunctionCallPathSeparator());
+        assertTrue(outer.find());
+        assertEquals(1, outer.getStart());
+        SyntaxMatcher inner = syntax.matcher("xx.y", syntax.getFunctionCallPathSeparator());
+        assertNotSame(outer, inner);
+        assertTrue(inner.find());
+        assertEquals(2, inner.getStart());
+        assertEquals(1, syntax.matcherStart("a.b", syntax.getFunctionCallPathSeparator()));
+        assertEquals(2, syntax.matcherPosition("ab.c", syntax.getFunctionCallPathSeparator()).getStart());
+        assertEquals(1, outer.getStart());
+        assertTrue(outer.find());
+        assertEquals(3, outer.getStart());
+        inner.release();
+        outer.release();
+        assertEquals(-1, outer.getStart());
+        SyntaxMatcher reused = syntax.matcher("a", syntax.getFunctionCallPathSeparator());
+        assertTrue(reused == outer || reused == inner);
+        assertFalse(reused.find());
+        reused.release();
+        caju.eval("s = \"x.y\"; l = s.substring(s.indexOf(\".\") + 1).length();");
+        assertEquals(1, caju.get("l"));
+    }
+
+    public int max(int a, int b) {
+        return 100;
+    }
+
+    /**
+     * Test of commands split by the parse, executed without match the
+     * syntax, and of the binding changed by a variable defined after.
+     */
+    @Test
+    public void commandPaths() throws CajuScriptException {
+        System.out.println("commandPaths");
+        CajuScript caju = new CajuScript();
+        caju.set("tester", this);
+        String script = "";
+        script += "$java.lang;";
+        script += "f(a) # ~ a * 2; #;";
+        script += "l = java.util.ArrayList();";
+        script += "l.add(\"abc\");";
+        script += "s = l.get(0).substring(1).length();";
+        script += "m = Integer.MAX_VALUE;";
+        script += "c = caju.cast(65, \"c\");";
+        script += "n = 0;";
+        script += "i = 0;";
+        script += "i < 2 @;";
+        script += "  n += Math.max(i, 5) + f(i);";
+        script += "  Math = tester;";
+        script += "  i += 1;";
+        script += "@;";
+        CajuScript.getMetrics().reset();
+        caju.eval(script);
+        assertEquals(0, CajuScript.getMetrics().getScriptCommands());
+        assertEquals(2, caju.get("s"));
+        assertEquals(Integer.MAX_VALUE, caju.get("m"));
+        assertEquals('A', caju.get("c"));
+        assertEquals(107, caju.get("n"));
+    }
+
+    @Test
+    public void arrayStorage() {
+        System.out.println("arrayStorage");
+        Array ints = new Array();
+        for (int i = 0; i < 20; i++) {
+            ints.add(i * 2);
+        }
+        assertEquals(20, ints.size());
+        assertEquals(Integer.valueOf(38), ints.get(19));
+        assertEquals(Integer.valueOf(10), ints.get((Object)5));
+        ints.set(3, "x");
+        assertEquals("x", ints.get(3));
+        assertEquals(Integer.valueOf(4), ints.get(2));
+        assertEquals(Integer.valueOf(38), ints.get(19));
+        Array longs = new Array();
+        longs.add(1L);
+        longs.add(2L);
+        assertEquals(Long.valueOf(2L), longs.get(1));
+        longs.add(3);
+        assertEquals(Long.valueOf(1L), longs.get(0));
+        assertEquals(Integer.valueOf(3), longs.get(2));
+        Array doubles = new Array();
+        for (int i = 0; i < 10; i++) {
+            doubles.set(i, (Object)Double.valueOf(i / 2d));
+        }
+        assertEquals(Double.valueOf(4.5d), doubles.get(9));
+        Array sparse = new Array();
+        sparse.set(2, "c");
+        sparse.set("k", "v");
+        assertEquals(0, sparse.size());
+        assertEquals(null, sparse.get(1));
+        assertEquals("c", sparse.get(2));
+        assertEquals("v", sparse.get("k"));
+        sparse.add("a");
+        sparse.add("b");
+        assertEquals(3, sparse.size());
+        assertEquals("c", sparse.get(2));
+        try {
+            sparse.get(3);
+            fail("Index out of bounds expected.");
+        } catch (IndexOutOfBoundsException e) {
+        }
+        try {
+            sparse.get(-1);
+            fail("Index out of bounds expected.");
+        } catch (IndexOutOfBoundsException e) {
+        }
+        assertEquals(null, sparse.get((Object)3));
+    }
+
+    @Test
+    public void arrayBulk() throws CajuScriptException {
+        System.out.println("arrayBulk");
+        int[] ints = (int[])Array.create("i", 5);
+        Array.fill(ints, 7);
+        assertArrayEquals(new int[] {7, 7, 7, 7, 7}, ints);
+        Array.fill(ints, 1, 3, 2);
+        assertArrayEquals(new int[] {7, 2, 2, 7, 7}, ints);
+        Array.set(ints, 0, 1);
+        assertEquals(Array.Access.INT, Array.access(ints));
+        assertEquals(Integer.valueOf(1), Array.get(ints, 0));
+        long[] longs = (long[])Array.create("l", 3);
+        Array.fill(longs, 5);
+        assertArrayEquals(new long[] {5L, 5L, 5L}, longs);
+        byte[] bytes = new byte[] {1, 2, 3, 4};
+        byte[] copy = (byte[])Array.create("bt", 4);
+        Array.copy(bytes, 1, copy, 0, 3);
+        assertArrayEquals(new byte[] {2, 3, 4, 0}, copy);
+        assertArrayEquals(new byte[] {2, 3}, (byte[])Array.slice(bytes, 1, 3));
+        String[] strings = new String[] {"a", "b", "c"};
+        Object slice = Array.slice(strings, 1, 3);
+        assertTrue(slice instanceof String[]);
+        assertArrayEquals(new String[] {"b", "c"}, (String[])slice);
+        Array.fill(strings, "z");
+        assertArrayEquals(new String[] {"z", "z", "z"}, strings);
+        CajuScript caju = new CajuScript();
+        String script = "";
+        script += "a = array.create(\"d\", 4);";
+        script += "array.fill(a, 0, 2, 1.5);";
+        script += "b = array.slice(a, 1, 3);";
+        script += "c = array.create(\"d\", 4);";
+        script += "array.copy(a, 0, c, 2, 2);";
+        script += "s = 0;";
+        script += "caju.each('d', c) @;";
+        script += "  s += d;";
+        script += "@;";
+        caju.eval(script);
+        assertArrayEquals(new double[] {1.5d, 0d}, (double[])caju.get("b"), 0d);
+        assertArrayEquals(new double[] {0d, 0d, 1.5d, 1.5d}, (double[])caju.get("c"), 0d);
+        assertEquals(3d, ((Number)caju.get("s")).doubleValue(), 0d);
+    }
+
+    @Test
+    public void eachCompiled() throws CajuScriptException {
+        System.out.println("eachCompiled");
+        String script = "";
+        script += "list = java.util.ArrayList();";
+        script += "list.add(1);";
+        script += "list.add(2);";
+        script += "a = array.create('i', 2);";
+        script += "array.set(a, 0, 20);";
+        script += "array.set(a, 1, 21);";
+        script += "map = java.util.TreeMap();";
+        script += "map.put('k1', 300);";
+        script += "map.put('k2', 301);";
+        script += "l = '';";
+        script += "caju.each('x', list) @";
+        script += "  caju.each('x', a) @";
+        script += "    l += caju.index('x') + '|' + x + ';';";
+        script += "  @;";
+        script += "  l += caju.index('x') + '/' + x + ';';";
+        script += "@;";
+        script += "m = '';";
+        script += "caju.each('e', map) @";
+        script += "  m += caju.index('e') + caju.key('e') + '=' + e + ';';";
+        script += "@;";
+        script += "n = 0;";
+        script += "caju.each('y', list) @";
+        script += "  y = 2 ?";
+        script += "    !!;";
+        script += "  ?;";
+        script += "  n += y;";
+        script += "@;";
+        for (int i = 0; i < 3; i++) {
+            CajuScript caju = new CajuScript();
+            caju.eval((i == 0 ? "" : "caju.compile.classPath: dist/cajuscript.jar;caju.compile: test.TestEach;") + script);
+            assertEquals("0|20;1|21;0/21;0|20;1|21;1/21;", caju.get("l"));
+            assertEquals("0k1=300;1k2=301;", caju.get("m"));
+            assertEquals(1, caju.get("n"));
+        }
+    }
+
+    @Test
+    public void labelledSignals() throws CajuScriptException {
+        System.out.println("labelledSignals");
+        String script = "";
+        script += "s = '';";
+        script += "x = 0;";
+        script += "outer: x < 4 @;";
+        script += "  x += 1;";
+        script += "  y = 0;";
+        script += "  inner: y < 4 @;";
+        script += "    y += 1;";
+        script += "    z = 0;";
+        script += "    z < 4 @;";
+        script += "      z += 1;";
+        script += "      z = 2 ?";
+        script += "        .. inner;";
+        script += "      ?;";
+        script += "      y = 3 ?";
+        script += "        .. outer;";
+        script += "      ?;";
+        script += "      x = 3 ?";
+        script += "        !! outer;";
+        script += "      ?;";
+        script += "      s += x + '' + y + '' + z + ';';";
+        script += "    @;";
+        script += "  @;";
+        script += "@;";
+        script += "list = java.util.ArrayList();";
+        script += "list.add(1);";
+        script += "list.add(2);";
+        script += "n = 0;";
+        script += "items: caju.each('i', list) @";
+        script += "  caju.each('j', list) @";
+        script += "    j = 2 ?";
+        script += "      .. items;";
+        script += "    ?;";
+        script += "    i = 2 ?";
+        script += "      !! items;";
+        script += "    ?;";
+        script += "    n += i * 10 + j;";
+        script += "  @;";
+        script += "@;";
+        for (int i = 0; i < 3; i++) {
+            CajuScript caju = new CajuScript();
+            caju.eval((i == 0 ? "" : "caju.compile.classPath: dist/cajuscript.jar;caju.compile: test.TestLabelledSignals;") + script);
+            assertEquals("111;121;211;221;", caju.get("s"));
+            assertEquals(3, caju.get("x"));
+            assertEquals(11, caju.get("n"));
+        }
+        CajuScript caju = new CajuScript();
+        assertNull(caju.eval("x = 1;x = 1 ?;  . .;?;"));
+        assertTrue(Signal.BREAK.isReadOnly());
+        assertTrue(Signal.CONTINUE.isReadOnly());
+        assertTrue(Signal.IF.isReadOnly());
+        assertTrue(Signal.TAIL_CALL.isReadOnly());
+    }
+
+    @Test
+    public void tryFinallyReturn() throws CajuScriptException {
+        System.out.println("tryFinallyReturn");
+        String script = "";
+        script += "calls = java.util.ArrayList();";
+        script += "f(n) #";
+        script += "  e ^";
+        script += "    n = 1 ?";
+        script += "      caju.error();";
+        script += "    ?;";
+        script += "    ~ 'try';";
+        script += "  ^^";
+        script += "    ~ 'catch';";
+        script += "  ^~^";
+        script += "    calls.add(n);";
+        script += "  ^;";
+        script += "#;";
+        script += "g() #";
+        script += "  e ^";
+        script += "    ~ 'try';";
+        script += "  ^~^";
+        script += "    ~ 'finally';";
+        script += "  ^;";
+        script += "#;";
+        script += "h() #";
+        script += "  e ^";
+        script += "    caju.error();";
+        script += "  ^^";
+        script += "    x = undefinedVar;";
+        script += "  ^~^";
+        script += "    calls.add('h');";
+        script += "  ^;";
+        script += "#;";
+        script += "a = f(0);";
+        script += "b = f(1);";
+        script += "c = g();";
+        script += "d = '';";
+        script += "err ^";
+        script += "  h();";
+        script += "^^";
+        script += "  d = err.getMessage();";
+        script += "^;";
+        CajuScript caju = new CajuScript();
+        caju.eval(script);
+        assertEquals("try", caju.get("a"));
+        assertEquals("catch", caju.get("b"));
+        assertEquals("finally", caju.get("c"));
+        assertTrue(((String)caju.get("d")).startsWith("undefinedVar is not defined > "));
+        assertEquals(java.util.Arrays.asList(0, 1, "h"), caju.get("calls"));
+    }
+
+    @Test
+    public void tailCall() throws CajuScriptException {
+        System.out.println("tailCall");
+        String script = "";
+        script += "sum(n, acc) #";
+        script += "  n = 0 ?";
+        script += "    ~ acc;";
+        script += "  ?;";
+        script += "  ~ sum(n - 1, acc + 2);";
+        script += "#;";
+        script += "s = sum(100000, 0);";
+        script += "f(n) #";
+        script += "  n > 1 ?";
+        script += "    x = n;";
+        script += "  ?;";
+        script += "  n = 0 ?";
+        script += "    e ^";
+        script += "      ~ x;";
+        script += "    ^^";
+        script += "      ~ -1;";
+        script += "    ^;";
+        script += "  ?;";
+        script += "  ~ f(n - 1);";
+        script += "#;";
+        script += "r = f(3);";
+        for (int i = 0; i < 3; i++) {
+            CajuScript caju = new CajuScript();
+            caju.eval((i == 0 ? "" : "caju.compile.classPath: dist/cajuscript.jar;caju.compile: test.TestTailCall;") + script);
+            assertEquals(200000, caju.get("s"));
+            assertEquals(-1, caju.get("r"));
+        }
+        CajuScript caju = new CajuScript();
+        try {
+            caju.eval("f(n) #;  n > 1 ?;    x = n;  ?;  n = 0 ?;    ~ x;  ?;  ~ f(n - 1);#;r = f(3);");
+            fail("x is defined.");
+        } catch (CajuScriptException e) {
+            assertTrue(e.getMessage().startsWith("x is not defined > "));
+        }
+    }
+
+    @Test
+    public void errorLines() throws CajuScriptException {
+        System.out.println("errorLines");
+        String loopCondition = "i = 0;\ni < undefinedVar @;\n  i += 1;\n@;\n";
+        String functionBody = "f(a) #\n  b = a + 1;\n  ~ b + undefinedVar;\n#;\nx = f(1);\n";
+        String caughtTry = "x = 0;\ne ^\n  x = 1;\n  y = undefinedVar;\n^^\n  z = e.getMessage();\n^;\nw = undefinedVar;\n";
+        for (int i = 0; i < 2; i++) {
+            CajuScript caju = new CajuScript();
+            caju.setVirtualMachine(i == 1);
+            try {
+                caju.eval(loopCondition);
+                fail("Error in the loop condition not thrown.");
+            } catch (CajuScriptException e) {
+                assertEquals("undefinedVar is not defined > 2: i < undefinedVar @", e.getMessage());
+            }
+            try {
+                caju.eval(functionBody);
+                fail("Error in the function body not thrown.");
+            } catch (CajuScriptException e) {
+                assertEquals("undefinedVar is not defined > 3: ~ b + undefinedVar", e.getMessage());
+            }
+            try {
+                caju.eval(caughtTry);
+                fail("Error after the try not thrown.");
+            } catch (CajuScriptException e) {
+                assertEquals("undefinedVar is not defined > 4: y = undefinedVar", caju.get("z"));
+                assertEquals("undefinedVar is not defined > 8: w = undefinedVar", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void errorLinesCompiled() throws CajuScriptException {
+        System.out.println("errorLinesCompiled");
+        String compile = "caju.compile.classPath: dist/cajuscript.jar;caju.compile: test.TestErrorLines;";
+        String functionBody = compile + "\nf(a) #\n  b = a + 1;\n  ~ b + undefinedVar;\n#;\nx = f(1);\n";
+        String caughtTry = compile + "\nx = 0;\ne ^\n  x = 1;\n  w = x; y = undefinedVar;\n^^\n  z = e.getMessage();\n^;\n";
+        for (int i = 0; i < 2; i++) {
+            CajuScript caju = new CajuScript();
+            try {
+                caju.eval(functionBody);
+                fail("Error in the function body not thrown.");
+            } catch (CajuScriptException e) {
+                assertEquals("undefinedVar is not defined > 4: ~ b + undefinedVar", e.getMessage());
+                if (i == 1) {
+                    assertTrue(compiledFrame(e, "f0_f", 4));
+                    assertTrue(compiledFrame(e, "execute", 6));
+                }
+            }
+        }
+        for (int i = 0; i < 2; i++) {
+            CajuScript caju = new CajuScript();
+            caju.eval(caughtTry);
+            assertEquals("undefinedVar is not defined > 5: y = undefinedVar", caju.get("z"));
+        }
+    }
+
+    private boolean compiledFrame(Throwable t, String method, int line) {
+        for (; t != null; t = t.getCause()) {
+            for (StackTraceElement element : t.getStackTrace()) {
+                if (element.getClassName().equals("test.TestErrorLines")
+                        && element.getMethodName().equals(method)
+                        && "TestErrorLines.cj".equals(element.getFileName())
+                        && element.getLineNumber() == line) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void specializationThreads() throws Exception {
+        System.out.println("specializationThreads");
+        final String script = "caju.cache: specializationThreads;r = a + b;";
+        final Object[][] operands = {
+            {1, 2, 3},
+            {"x", 2, "x2"},
+            {5L, 2, 7L},
+            {1.5d, 1, 2.5d}
+        };
+        final Throwable[] errors = new Throwable[operands.length];
+        Thread[] threads = new Thread[operands.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int t = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        CajuScript caju = new CajuScript();
+                        for (int j = 0; j < 500; j++) {
+                            caju.set("a", operands[t][0]);
+                            caju.set("b", operands[t][1]);
+                            caju.eval(script);
+                            assertEquals(operands[t][2], caju.get("r"));
+                        }
+                    } catch (Throwable e) {
+                        errors[t] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            if (errors[i] != null) {
+                throw new AssertionError(errors[i]);
+            }
+        }
+    }
+
+    @Test
+    public void virtualMachineThreads() throws Exception {
+        System.out.println("virtualMachineThreads");
+        String script = "caju.cache: virtualMachineThreads;";
+        script += "sum(n) #";
+        script += "  s = 0;";
+        script += "  i = 0;";
+        script += "  i < n @;";
+        script += "    i += 1;";
+        script += "    s += i;";
+        script += "  @;";
+        script += "  ~ s;";
+        script += "#;";
+        script += "r = sum(n);";
+        final String cached = script;
+        final Throwable[] errors = new Throwable[4];
+        Thread[] threads = new Thread[errors.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int t = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        CajuScript caju = new CajuScript();
+                        caju.setVirtualMachine(true);
+                        for (int j = 0; j < 200; j++) {
+                            caju.set("n", t * 10 + j % 10);
+                            caju.eval(cached);
+                            int n = t * 10 + j % 10;
+                            assertEquals(n * (n + 1) / 2, caju.get("r"));
+                        }
+                    } catch (Throwable e) {
+                        errors[t] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            if (errors[i] != null) {
+                throw new AssertionError(errors[i]);
+            }
+        }
+    }
+
+    @Test
+    public void profilerStop() throws Exception {
+        System.out.println("profilerStop");
+        CajuScript caju = new CajuScript();
+        Profiler profiler = new Profiler();
+        caju.setProfiler(profiler);
+        caju.eval("x = 1;\ny = x + 1;");
+        String report = profiler.getReport();
+        String stacks = profiler.getCollapsedStacks();
+        Thread.sleep(50);
+        assertEquals(report, profiler.getReport());
+        assertEquals(stacks, profiler.getCollapsedStacks());
+        assertEquals(stacks, profiler.getCollapsedStacks());
+        if (!report.matches("(?s).*\\s1 +[0-9.]+ +[0-9.]+  2: y = x \\+ 1\\R.*")) {
+            fail("Last line not counted:\n".concat(report));
+        }
+    }
+
+    @Test
+    public void readOnlyValue() throws CajuScriptException {
+        System.out.println("readOnlyValue");
+        CajuScript caju = new CajuScript();
+        Value value = new Value(caju, caju.getContext(), caju.getSyntax());
+        value.setValue(1);
+        value.setReadOnly();
+        try {
+            value.setValue(2);
+            fail("Read only value changed.");
+        } catch (IllegalStateException e) {
+            assertEquals(1, value.getValue());
+        }
+    }
+
+    @Test
+    public void constantFolding() throws CajuScriptException {
+        System.out.println("constantFolding");
+        String script = "";
+        script += "s = 60 * 60 * 24;";
+        script += "t = \"a\" + \"b\";";
+        script += "x = 0;";
+        script += "1 = 2 ? x = 1; ? false ? x = 2; ?? x = 3; ?;";
+        script += "false ? x = x + 10; ?;";
+        script += "y = 0;";
+        script += "true ? y = 1; ?? y = 2; ?;";
+        script += "z = 0;";
+        script += "false @ z = 1; @;";
+        String compile = "caju.compile.classPath: dist/cajuscript.jar;caju.compile: test.TestConstantFolding;";
+        String[] scripts = {script, "caju.cache: constantFolding;".concat(script), compile.concat(script)};
+        for (String s : scripts) {
+            for (int i = 0; i < 3; i++) {
+                CajuScript caju = new CajuScript();
+                caju.eval(s);
+                assertEquals(86400, caju.get("s"));
+                assertEquals("ab", caju.get("t"));
+                assertEquals(3, caju.get("x"));
+                assertEquals(1, caju.get("y"));
+                assertEquals(0, caju.get("z"));
+            }
+        }
+    }
+
+    @Test
+    public void eachEnd() throws CajuScriptException {
+        System.out.println("eachEnd");
+        String script = "";
+        script += "list = java.util.ArrayList();";
+        script += "list.add(1);";
+        script += "list.add(2);";
+        script += "list.add(3);";
+        script += "map = java.util.TreeMap();";
+        script += "map.put('k1', 10);";
+        script += "map.put('k2', 20);";
+        script += "v = 'x';";
+        script += "s = 0;";
+        script += "caju.each(v, list) @";
+        script += "  s += x * caju.index('x');";
+        script += "@;";
+        script += "caju.each(v, list) @";
+        script += "  s += x;";
+        script += "@;";
+        script += "i = caju.index('x');";
+        script += "k = '';";
+        script += "e = 'y';";
+        script += "caju.each(e, map) @";
+        script += "  k += caju.key('y') + '=' + y + ';';";
+        script += "@;";
+        script += "caju.each('z', list) @";
+        script += "  s += z;";
+        script += "@;";
+        script += "j = caju.index('z');";
+        for (int i = 0; i < 3; i++) {
+            CajuScript caju = new CajuScript();
+            caju.eval((i == 0 ? "" : "caju.compile.classPath: dist/cajuscript.jar;caju.compile: test.TestEachEnd;") + script);
+            assertEquals(20, caju.get("s"));
+            assertEquals(2, caju.get("i"));
+            assertEquals(2, caju.get("j"));
+            assertEquals("k1=10;k2=20;", caju.get("k"));
+            assertNull(caju.getEach("x"));
+            assertNull(caju.getEach("y"));
+            assertNull(caju.getEach("z"));
+        }
+    }
+
+    @Test
+    public void scannerLines() throws CajuScriptException {
+        System.out.println("scannerLines");
+        String[] breaks = {"\n", "\r\n", "\r"};
+        for (String n : breaks) {
+            CajuScript caju = new CajuScript();
+            try {
+                caju.eval("x = 1;" + n + n + "y = x + 1;" + n + "z = undefinedVar;");
+                fail("Undefined variable not thrown.");
+            } catch (CajuScriptException e) {
+                assertEquals("undefinedVar is not defined > 4: z = undefinedVar", e.getMessage());
+            }
+            assertEquals(2, caju.get("y"));
+            caju.eval("s = 'a;b';" + n + "t = \"c'd;\"; u = s + t;" + n + "v = '\"?@#';");
+            assertEquals("a;b", caju.get("s"));
+            assertEquals("c'd;", caju.get("t"));
+            assertEquals("a;bc'd;", caju.get("u"));
+            assertEquals("\"?@#", caju.get("v"));
+            try {
+                caju.eval("x = 1;" + n + n + "y = 'abc;" + n + "z = 2;");
+                fail("String not closed not thrown.");
+            } catch (CajuScriptException e) {
+                assertEquals("String not closed > 3: y = 'abc;", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void parseNumber() {
+        System.out.println("parseNumber");
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), Value.parseNumber("2147483647"));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), Value.parseNumber("-2147483648"));
+        assertEquals(Long.valueOf(2147483648L), Value.parseNumber("2147483648"));
+        assertEquals(Long.valueOf(-2147483649L), Value.parseNumber("-2147483649"));
+        assertEquals(Integer.valueOf(5), Value.parseNumber("+5"));
+        assertEquals(Long.valueOf(1234567890123456789L), Value.parseNumber("1234567890123456789"));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), Value.parseNumber("9223372036854775807"));
+        assertEquals(Long.valueOf(Long.MIN_VALUE), Value.parseNumber("-9223372036854775808"));
+        assertEquals(Double.valueOf(1e20), Value.parseNumber("100000000000000000000"));
+        assertEquals(Double.valueOf(-1e20), Value.parseNumber("-100000000000000000000"));
+        assertEquals(Float.valueOf(1.5f), Value.parseNumber("1.5"));
+        assertEquals(Float.valueOf(0.5f), Value.parseNumber(".5"));
+        assertEquals(Double.valueOf(-1.5), Value.parseNumber("-1.5"));
+        assertEquals(Double.valueOf(1e39), Value.parseNumber("1e39"));
+        assertEquals(Integer.valueOf(100000), Value.parseNumber("1e5"));
+        assertTrue(Double.isNaN(Value.parseNumber("NaN").doubleValue()));
+        assertEquals(Double.valueOf(Double.POSITIVE_INFINITY), Value.parseNumber("Infinity"));
+        assertEquals(Double.valueOf(Double.NEGATIVE_INFINITY), Value.parseNumber("-Infinity"));
+        assertNull(Value.parseNumber("1abc"));
+        assertNull(Value.parseNumber("true"));
+        assertNull(Value.parseNumber("NaNx"));
+        assertNull(Value.parseNumber("-"));
+        assertNull(Value.parseNumber(""));
+    }
+
+    @Test
+    public void syntheticVars() throws CajuScriptException {
+        System.out.println("syntheticVars");
+        String script = "";
+        script += "f(x, y) # ~ (x + y) * 2; #;";
+        script += "a = 1;";
+        script += "b = 2;";
+        script += "r = f(a + 1, b * 2);";
+        script += "s = (a + 1) * (b - 3) + f(a, (b + 1) * 2);";
+        String compile = "caju.compile.classPath: dist/cajuscript.jar;caju.compile: test.TestSyntheticVars;";
+        for (int i = 0; i < 5; i++) {
+            CajuScript caju = new CajuScript();
+            caju.setVirtualMachine(i == 1);
+            caju.eval(i < 2 ? script : compile.concat(script));
+            assertEquals(12, caju.get("r"));
+            assertEquals(12, caju.get("s"));
+            for (String key : caju.getContext().getAllKeys(true)) {
+                if (key.startsWith(CajuScript.CAJU_VARS_GROUP) || key.startsWith(CajuScript.CAJU_VARS_MATH)) {
+                    fail("Synthetic variable left in the context: ".concat(key));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void contextFrames() throws CajuScriptException {
+        System.out.println("contextFrames");
+        String script = "x = 1; f(a) # x = 5; y = a; ~ y + x; #; r = f(2);";
+        String compile = "caju.compile.classPath: dist/cajuscript.jar;caju.compile: test.TestContextFrames;";
+        for (int i = 0; i < 5; i++) {
+            CajuScript caju = new CajuScript();
+            caju.setVirtualMachine(i == 1);
+            caju.eval(i < 2 ? script : compile.concat(script));
+            assertEquals(7, caju.get("r"));
+            assertEquals(1, caju.get("x"));
+            assertNull(caju.getVar("y"));
+            assertNull(caju.getVar("a"));
+        }
+        CajuScript caju = new CajuScript();
+        Context root = caju.getContext();
+        for (int size = 0; size < 20; size += 5) {
+            Context frame = new Context(root, size);
+            for (int i = 0; i < 20; i++) {
+                frame.setVar("v" + i, caju.toValue(i));
+            }
+            for (int i = 0; i < 20; i++) {
+                assertEquals(i, frame.getVar("v" + i).getValue());
+                assertNull(root.getVar("v" + i));
+            }
+            assertSame(root.getFuncs(), frame.getFuncs());
+            assertSame(root.getImports(), frame.getImports());
+        }
+    }
+
     public enum Enum {
         TEST1,
         TEST2,